@@ -0,0 +1,72 @@
+package lv.sergluka.ib_client.impl.utils;
+
+import lv.sergluka.ib_client.types.IbRtVolume;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares RT_VOLUME parsing by {@link TickStringParser} with the usual {@link String#split} approach.
+ *
+ * <p>Run with `gradlew jmh`, allocation rate per operation is reported by GC profiler as `gc.alloc.rate.norm`.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = TickStringParserBenchmark.WARMUP_ITERATIONS, time = 1)
+@Measurement(iterations = TickStringParserBenchmark.MEASUREMENT_ITERATIONS, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TickStringParserBenchmark {
+
+    static final int WARMUP_ITERATIONS = 3;
+    static final int MEASUREMENT_ITERATIONS = 5;
+
+    // Fields of RT_VOLUME
+    private static final int PRICE = 0;
+    private static final int SIZE = 1;
+    private static final int TIME = 2;
+    private static final int TOTAL_VOLUME = 3;
+    private static final int VWAP = 4;
+    private static final int SINGLE_TRADE = 5;
+
+    private final String[] values = {
+        "701.28;1;1348075471534;67854;701.46918464;true",
+        "701.3;300;1348075471601;68154;701.46931527;false",
+        ";0;1348075471650;68154;701.46931527;false",
+        "701.25;12;1348075471702;68166;701.46927669;true",
+    };
+    private final IbRtVolume volume = new IbRtVolume();
+
+    private int next;
+
+    @Benchmark
+    public IbRtVolume parser() {
+        TickStringParser.parseRtVolume(nextValue(), volume);
+        return volume;
+    }
+
+    @Benchmark
+    public IbRtVolume split() {
+        String[] fields = nextValue().split(";");
+        volume.update(fields[PRICE].isEmpty() ? Double.NaN : Double.parseDouble(fields[PRICE]),
+                      fields[SIZE].isEmpty() ? 0 : Long.parseLong(fields[SIZE]),
+                      Long.parseLong(fields[TIME]),
+                      Long.parseLong(fields[TOTAL_VOLUME]),
+                      fields[VWAP].isEmpty() ? Double.NaN : Double.parseDouble(fields[VWAP]),
+                      Boolean.parseBoolean(fields[SINGLE_TRADE]));
+        return volume;
+    }
+
+    private String nextValue() {
+        next = (next + 1) % values.length;
+        return values[next];
+    }
+}
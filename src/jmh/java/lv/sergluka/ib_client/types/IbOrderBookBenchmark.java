@@ -0,0 +1,93 @@
+package lv.sergluka.ib_client.types;
+
+import lv.sergluka.ib_client.impl.cache.DirectBookStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares order books kept on the heap with books kept in direct memory, for a universe of many contracts.
+ *
+ * <p>Run with `gradlew jmh`. GC profiler reports allocations per operation as `gc.alloc.rate.norm` and GC work as
+ * `gc.count` and `gc.time`, which grows with the heap taken by the books.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx512m"})
+@State(Scope.Thread)
+@SuppressWarnings("MagicNumber")
+public class IbOrderBookBenchmark {
+
+    private static final int ROWS = 20;
+    private static final int UPDATES = 1 << 16;
+
+    @Param({"heap", "direct"})
+    private String storage;
+
+    @Param({"500"})
+    private int books;
+
+    private final IbOrderBookSnapshot snapshot = new IbOrderBookSnapshot(ROWS);
+    private final int[] positions = new int[UPDATES];
+    private final int[] operations = new int[UPDATES];
+    private final double[] prices = new double[UPDATES];
+
+    private IbOrderBook[] universe;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < UPDATES; i++) {
+            positions[i] = random.nextInt(ROWS);
+            operations[i] = random.nextInt(10) == 0 ? IbOrderBook.OPERATION_INSERT : IbOrderBook.OPERATION_UPDATE;
+            prices[i] = 100 + random.nextInt(100) * 0.01;
+        }
+
+        DirectBookStore store = "direct".equals(storage) ? new DirectBookStore(ROWS) : null;
+        universe = new IbOrderBook[books];
+        for (int i = 0; i < books; i++) {
+            universe[i] = store != null ? store.create(null, false) : new IbOrderBook(null, ROWS);
+            for (int level = 0; level < ROWS; level++) {
+                universe[i].update(level, IbOrderBook.OPERATION_INSERT, 0, 100 + level, 100, null);
+                universe[i].update(level, IbOrderBook.OPERATION_INSERT, 1, 99 - level, 100, null);
+            }
+        }
+    }
+
+    @Benchmark
+    public IbOrderBook update() {
+        int index = nextIndex();
+        IbOrderBook book = universe[index % books];
+        book.update(positions[index], operations[index], index & 1, prices[index], 100, null);
+        if (operations[index] == IbOrderBook.OPERATION_INSERT) {
+            book.update(ROWS, IbOrderBook.OPERATION_DELETE, index & 1, 0, 0, null);
+        }
+        return book;
+    }
+
+    @Benchmark
+    public IbOrderBookSnapshot copy() {
+        universe[nextIndex() % books].copyTo(snapshot);
+        return snapshot;
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (UPDATES - 1);
+        return next;
+    }
+}
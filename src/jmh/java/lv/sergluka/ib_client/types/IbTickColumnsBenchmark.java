@@ -0,0 +1,105 @@
+package lv.sergluka.ib_client.types;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ticks applied to {@link IbTickColumns} and cross-section samples of it, alone and while ticks are
+ * applied from another thread, like the reader thread does.
+ *
+ * <p>Run with `gradlew jmh`.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+@SuppressWarnings("MagicNumber")
+public class IbTickColumnsBenchmark {
+
+    private static final int TICKS = 1 << 16;
+    private static final int FIRST_TICKER_ID = 1000;
+
+    @Param({"5000"})
+    private int rows;
+
+    private final IbTickColumns tickColumns = new IbTickColumns();
+    private final int[] tickerIds = new int[TICKS];
+    private final int[] tickTypes = new int[TICKS];
+    private final double[] values = new double[TICKS];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < rows; i++) {
+            tickColumns.add(FIRST_TICKER_ID + i, i + 1);
+        }
+
+        Random random = new Random(1);
+        IbTickColumns.Column[] columns = IbTickColumns.Column.values();
+        for (int i = 0; i < TICKS; i++) {
+            tickerIds[i] = FIRST_TICKER_ID + random.nextInt(rows);
+            tickTypes[i] = columns[random.nextInt(columns.length)].getTickType().getValue();
+            values[i] = 100 + random.nextInt(100) * 0.01;
+        }
+    }
+
+    @Benchmark
+    @Group("update")
+    public void update(Writer writer) {
+        int index = writer.nextIndex();
+        tickColumns.update(tickerIds[index], tickTypes[index], values[index]);
+    }
+
+    @Benchmark
+    @Group("copy")
+    public long copy(Reader reader) {
+        return tickColumns.copyTo(reader.target);
+    }
+
+    @Benchmark
+    @Group("copyWhileUpdated")
+    @GroupThreads
+    public long copyWhileUpdated(Reader reader) {
+        return tickColumns.copyTo(reader.target);
+    }
+
+    @Benchmark
+    @Group("copyWhileUpdated")
+    @GroupThreads
+    public void updateWhileCopied(Writer writer) {
+        update(writer);
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+
+        private final IbCrossSection target = new IbCrossSection();
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private int next;
+
+        private int nextIndex() {
+            next = (next + 1) & (TICKS - 1);
+            return next;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package lv.sergluka.ib_client;
+
+import com.ib.client.Contract;
+import com.ib.client.EClientSocket;
+import lv.sergluka.ib_client.impl.Validators;
+import lv.sergluka.ib_client.impl.bars.BarAggregator;
+import lv.sergluka.ib_client.impl.cache.CacheRepositoryImpl;
+import lv.sergluka.ib_client.impl.request.RequestRepository;
+import lv.sergluka.ib_client.types.IbAggregatedBar;
+import lv.sergluka.ib_client.types.IbBar;
+import lv.sergluka.ib_client.types.IbBarWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Bar subscriptions of {@link IbClient}, which keep state on the client side or share TWS requests.
+ */
+class BarSubscriptions {
+
+    private static final Logger log = LoggerFactory.getLogger(BarSubscriptions.class);
+    private static final int REALTIME_BAR_SIZE_S = 5; // The only size supported by TWS
+
+    private final RequestRepository requests;
+    private final Supplier<EClientSocket> socket;
+    private final Supplier<CacheRepositoryImpl> cache;
+    private final Map<List<Object>, Flux<IbBar>> realtimeBars = new ConcurrentHashMap<>();
+    private final Map<List<Object>, BarAggregator> barAggregators = new ConcurrentHashMap<>();
+
+    BarSubscriptions(RequestRepository requests, Supplier<EClientSocket> socket, Supplier<CacheRepositoryImpl> cache) {
+        this.requests = requests;
+        this.socket = socket;
+        this.cache = cache;
+    }
+
+    Flux<IbBarWindow> subscribeOnBarWindow(Contract contract,
+                                           int duration, IbClient.DurationUnit durationUnit,
+                                           IbClient.BarSize size,
+                                           IbClient.Type type, IbClient.TradingHours tradingHours,
+                                           int windowSize) {
+        Validators.contractWithIdShouldExist(contract);
+        Validators.intShouldBePositive(windowSize, "Window size should be positive");
+        if (size == IbClient.BarSize.SEC_1) {
+            return Flux.error(new Exception("Too small bar size. Must be >= 5 sec"));
+        }
+
+        log.debug("Subscribing to bar window: contract={}, size={}, type={}, hours={}, window={}",
+                  contract.description(), size, type, tradingHours, windowSize);
+
+        return requests.<IbBarWindow>builder()
+                .type(RequestRepository.Type.EVENT_BAR_WINDOW)
+                .register(id -> {
+                    cache.get().addBarWindow(id, new IbBarWindow(windowSize));
+                    socket.get().reqHistoricalData(id, contract, null,
+                                                   String.format("%d %s", duration, durationUnit.toString()),
+                                                   size.toString(), type.toString(),
+                                                   tradingHours == IbClient.TradingHours.Within ? 1 : 0, 1, true,
+                                                   null);
+                })
+                .unregister(id -> socket.get().cancelHistoricalData(id))
+                .release(id -> cache.get().removeBarWindow(id))
+                .subscribe();
+    }
+
+    Flux<IbBar> subscribeOnRealtimeBars(Contract contract, IbClient.Type type, IbClient.TradingHours tradingHours) {
+        Validators.contractWithIdShouldExist(contract);
+        Validators.shouldNotBeNull(type, "Type should be defined");
+        Validators.shouldNotBeNull(tradingHours, "Trading hours should be defined");
+
+        if (type != IbClient.Type.TRADES && type != IbClient.Type.MIDPOINT
+            && type != IbClient.Type.BID && type != IbClient.Type.ASK) {
+            return Flux.error(new IllegalArgumentException(
+                    String.format("Real time bars don't support '%s' type", type)));
+        }
+
+        List<Object> key = Arrays.asList(contract.conid(), type, tradingHours);
+        return realtimeBars.computeIfAbsent(key, unused -> {
+            log.debug("Subscribing to real time bars: contract={}, type={}, hours={}",
+                      contract.description(), type, tradingHours);
+
+            // The entry is dropped with the last subscriber, so the next one sends a new request
+            AtomicReference<Flux<IbBar>> shared = new AtomicReference<>();
+            shared.set(requests.<IbBar>builder()
+                               .type(RequestRepository.Type.EVENT_REALTIME_BARS)
+                               .register(id -> socket.get().reqRealTimeBars(
+                                       id, contract, REALTIME_BAR_SIZE_S, type.toString(),
+                                       tradingHours == IbClient.TradingHours.Within, null))
+                               .unregister(id -> socket.get().cancelRealTimeBars(id))
+                               .subscribe()
+                               .doFinally(signal -> realtimeBars.remove(key, shared.get()))
+                               .publish()
+                               .refCount());
+            return shared.get();
+        });
+    }
+
+    Flux<IbAggregatedBar> subscribeOnAggregatedBars(Contract contract,
+                                                    IbClient.TradeSource source,
+                                                    Set<IbClient.BarSize> sizes) {
+        Validators.contractWithIdShouldExist(contract);
+        Validators.shouldNotBeNull(source, "Source should be defined");
+        Validators.collectionShouldNotBeEmpty(sizes, "Bar sizes should be defined");
+
+        for (IbClient.BarSize size : sizes) {
+            if (!BarAggregator.isSupported(size)) {
+                return Flux.error(new IllegalArgumentException(String.format("Bar size '%s' is not supported", size)));
+            }
+        }
+
+        List<Object> key = Arrays.asList(contract.conid(), source);
+        BarAggregator aggregator = barAggregators.computeIfAbsent(key, unused -> new BarAggregator(newAggregator -> {
+            log.debug("Subscribing to trades for bars: contract={}, source={}", contract.description(), source);
+
+            boolean tickByTick = source == IbClient.TradeSource.TICK_BY_TICK;
+            return requests.<IbAggregatedBar>builder()
+                    .type(RequestRepository.Type.EVENT_AGGREGATED_BARS)
+                    .register(id -> {
+                        newAggregator.bind(bar -> requests.onNext(RequestRepository.Type.EVENT_AGGREGATED_BARS,
+                                                                  id, bar, false));
+                        cache.get().addBarAggregator(id, newAggregator);
+                        if (tickByTick) {
+                            socket.get().reqTickByTickData(id, contract, "AllLast", 0, false);
+                        } else {
+                            socket.get().reqMktData(id, contract, "", false, false, null);
+                        }
+                    })
+                    .unregister(id -> {
+                        if (tickByTick) {
+                            socket.get().cancelTickByTickData(id);
+                        } else {
+                            socket.get().cancelMktData(id);
+                        }
+                    })
+                    .release(id -> cache.get().removeBarAggregator(id))
+                    .subscribe()
+                    .doFinally(signal -> barAggregators.remove(key, newAggregator));
+        }));
+
+        return aggregator.subscribe(EnumSet.copyOf(sizes));
+    }
+
+    // Shared requests are disposed along with all requests, so the next subscriber sends a new one
+    void clear() {
+        realtimeBars.clear();
+        barAggregators.clear();
+    }
+}
@@ -1,29 +1,236 @@
 package lv.sergluka.ib_client;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
-import lv.sergluka.ib_client.types.IbMarketDepth;
+import lv.sergluka.ib_client.types.IbArchivedExecution;
+import lv.sergluka.ib_client.types.IbArchivedOrder;
+import lv.sergluka.ib_client.types.IbCacheChange;
+import lv.sergluka.ib_client.types.IbCrossSection;
+import lv.sergluka.ib_client.types.IbExecutionJoinStats;
+import lv.sergluka.ib_client.types.IbExecutionReport;
+import lv.sergluka.ib_client.types.IbOrderBook;
 import lv.sergluka.ib_client.types.IbOrder;
 import lv.sergluka.ib_client.types.IbPortfolio;
 import lv.sergluka.ib_client.types.IbPosition;
+import lv.sergluka.ib_client.types.IbPositionKey;
+import lv.sergluka.ib_client.types.IbPriceGrid;
 import lv.sergluka.ib_client.types.IbTick;
+import lv.sergluka.ib_client.types.IbTickColumns;
 import com.ib.client.Contract;
+import reactor.core.publisher.Flux;
 
 @SuppressWarnings("unused")
 public interface CacheRepository {
+
+    /** Max number of changes, which are buffered for a subscriber of a change stream. */
+    int CHANGES_BUFFER_SIZE = 65_536;
+
+    /**
+     * Returns all known orders.
+     *
+     * @return live read-only view by order ID, copy it to get a snapshot
+     */
     Map<Integer, IbOrder> getOrders();
 
-    Map<IbMarketDepth.Key, IbMarketDepth> getOrderBook(Contract contract);
+    IbOrder getOrder(int orderId);
+
+    /**
+     * Returns orders at the stage of their lifecycle. Indexes are maintained on every order or status update, so no
+     * scan is needed.
+     *
+     * @param stage Lifecycle stage
+     * @return live read-only view
+     */
+    Collection<IbOrder> getOrders(IbOrder.Stage stage);
+
+    Collection<IbOrder> getOrdersByAccount(String account);
+
+    /**
+     * Returns orders of the contract, matched by its conid.
+     *
+     * @param contract IB contract
+     * @return live read-only view
+     */
+    Collection<IbOrder> getOrdersByContract(Contract contract);
+
+    Collection<IbOrder> getOrdersByRef(String orderRef);
+
+    /**
+     * Searches orders evicted from the cache by the retention policy.
+     *
+     * @param condition Filter of records
+     * @return matching records in order of eviction, empty if there is no archive
+     * @see lv.sergluka.ib_client.params.IbClientOptions#archiveTo
+     */
+    List<IbArchivedOrder> findArchivedOrders(Predicate<IbArchivedOrder> condition);
+
+    /**
+     * Searches executions evicted from the cache by the retention policy.
+     *
+     * @param condition Filter of records
+     * @return matching records in order of eviction, empty if there is no archive
+     * @see lv.sergluka.ib_client.params.IbClientOptions#archiveTo
+     */
+    List<IbArchivedExecution> findArchivedExecutions(Predicate<IbArchivedExecution> condition);
+
+    /**
+     * Checks whether all orders, positions and portfolio entries, restored from the snapshot, are confirmed or dropped
+     * by TWS replies to the requests of open orders, positions and account updates.
+     *
+     * @return true if there are no unconfirmed entries
+     * @see lv.sergluka.ib_client.params.IbClientOptions#cacheSnapshot
+     */
+    boolean isReconciled();
+
+    /**
+     * Returns prices of market data subscriptions of the previous session, restored from the snapshot.
+     *
+     * @return copy of the columns with the old subscription IDs or null if there is no snapshot
+     */
+    IbCrossSection getRestoredTicks();
+
+    /**
+     * Returns counters of matching executions with commission reports, which arrive separately.
+     *
+     * @return snapshot of counters
+     */
+    IbExecutionJoinStats getExecutionJoinStats();
+
+    /**
+     * Changes of orders: new orders, statuses, evictions.
+     *
+     * <p>Like other change streams, it's hot: only changes after the subscription are published, so the subscriber
+     * should read the current state by {@link #getOrders()} after subscribing. Changes are published mostly by the
+     * thread, which reads TWS messages, and are buffered for slow subscribers up to {@value #CHANGES_BUFFER_SIZE}
+     * changes. A subscriber, which falls further behind, gets an overflow error and should resubscribe and read the
+     * current state again.
+     *
+     * @return Flux with changes by order ID
+     */
+    Flux<IbCacheChange<Integer, IbOrder>> orderChanges();
+
+    /**
+     * Changes of positions: updates from TWS and restored positions, which TWS hasn't confirmed after connection.
+     *
+     * @return Flux with changes by position key
+     */
+    Flux<IbCacheChange<IbPositionKey, IbPosition>> positionChanges();
+
+    /**
+     * Changes of portfolio.
+     *
+     * @return Flux with changes by conid
+     */
+    Flux<IbCacheChange<Integer, IbPortfolio>> portfolioChanges();
+
+    /**
+     * Changes of execution reports: executions matched with commissions or expired without them, late commissions,
+     * evictions.
+     *
+     * @return Flux with changes by execution ID
+     */
+    Flux<IbCacheChange<String, IbExecutionReport>> executionChanges();
+
+    /**
+     * Changes of order books. Updates of a book are coalesced to a change per batch of TWS messages, the change
+     * carries the live book.
+     *
+     * @return Flux with changes by market depth subscription ID
+     */
+    Flux<IbCacheChange<Integer, IbOrderBook>> orderBookChanges();
+
+    /**
+     * Returns order book of the contract, built from {@link IbClient#subscribeOnMarketDepth} updates.
+     *
+     * <p>Every subscription has its own book. If there are several subscriptions to the contract, the latest
+     * subscription wins: the book of the latest one is returned, and after it's disposed, the book of the latest
+     * remaining one.
+     *
+     * @param contract IB contract
+     * @return order book or null if there is no market depth subscription to the contract
+     */
+    IbOrderBook getOrderBook(Contract contract);
 
     IbTick getTick(int tickerId);
 
+    /**
+     * Returns prices and sizes of all {@link IbClient#subscribeOnMarketData} subscriptions as primitive columns.
+     *
+     * @return columns with a row per subscription
+     * @see IbClient#subscribeOnCrossSection
+     */
+    IbTickColumns getTickColumns();
+
+    /**
+     * Returns market rule, received by {@link IbClient#reqMarketRule}.
+     *
+     * @param marketRuleId Market rule ID
+     * @return price bands or null if the rule hasn't been requested
+     */
+    IbPriceGrid getMarketRule(int marketRuleId);
+
+    /**
+     * Returns valid prices of the contract. The market rule of the contract is used if it has been requested by
+     * {@link IbClient#reqMarketRule} after {@link IbClient#reqContractDetails}, otherwise the minimal tick from
+     * contract details or from a market data subscription.
+     *
+     * @param conid Contract ID
+     * @return grid or null if neither the market rule nor the minimal tick is known
+     */
+    IbPriceGrid getPriceGrid(int conid);
+
+    /**
+     * Rounds the price to a valid price of the contract. Loops over many prices of the same contract may use
+     * {@link #getPriceGrid} once instead.
+     *
+     * @param conid     Contract ID
+     * @param price     Price
+     * @param direction Rounding direction
+     * @return valid price
+     * @throws IllegalArgumentException if neither the market rule nor the minimal tick of the contract is known
+     */
+    double roundToTick(int conid, double price, IbPriceGrid.Direction direction);
+
     Collection<IbPortfolio> getPortfolio();
 
     Collection<IbPosition> getPositions();
 
+    /**
+     * Returns position of the account in the contract. Lookup doesn't allocate memory.
+     *
+     * @param account  Account
+     * @param contract IB contract with conid
+     * @return position or null
+     */
     IbPosition getPosition(String account, Contract contract);
 
+    /**
+     * Returns positions of the account. Indexes are maintained on every position update, so no scan is needed.
+     *
+     * @param account Account
+     * @return live read-only view
+     */
+    Collection<IbPosition> getPositionsByAccount(String account);
+
+    /**
+     * Returns positions in the contract across accounts, matched by its conid.
+     *
+     * @param contract IB contract
+     * @return live read-only view
+     */
+    Collection<IbPosition> getPositionsByContract(Contract contract);
+
+    /**
+     * Returns positions by the symbol of the contract, i.e. positions in the underlying and its derivatives.
+     *
+     * @param symbol Underlying symbol
+     * @return live read-only view
+     */
+    Collection<IbPosition> getPositionsByUnderlying(String symbol);
+
     IbPortfolio getPortfolio(Contract contract);
 
     void clear();
@@ -0,0 +1,96 @@
+package lv.sergluka.ib_client;
+
+import com.ib.client.Contract;
+import com.ib.client.ContractDetails;
+import com.ib.client.EClientSocket;
+import lv.sergluka.ib_client.impl.Validators;
+import lv.sergluka.ib_client.impl.cache.CacheRepositoryImpl;
+import lv.sergluka.ib_client.impl.cache.ContractDetailsCache;
+import lv.sergluka.ib_client.impl.request.RequestRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Contract details requests of {@link IbClient}, which are answered from the cache of contract details, if it's
+ * enabled.
+ */
+class ContractDetailsRequests {
+
+    private static final Logger log = LoggerFactory.getLogger(ContractDetailsRequests.class);
+
+    private final RequestRepository requests;
+    private final ContractDetailsCache contractDetails;
+    private final Supplier<EClientSocket> socket;
+    private final Supplier<CacheRepositoryImpl> cache;
+
+    ContractDetailsRequests(RequestRepository requests, ContractDetailsCache contractDetails,
+                            Supplier<EClientSocket> socket, Supplier<CacheRepositoryImpl> cache) {
+        this.requests = requests;
+        this.contractDetails = contractDetails;
+        this.socket = socket;
+        this.cache = cache;
+    }
+
+    Flux<ContractDetails> get(Contract contract) {
+        Validators.shouldNotBeNull(contract, "Contract should be defined");
+
+        if (contractDetails == null) {
+            return request(contract);
+        }
+
+        return Flux.defer(() -> {
+            Optional<List<ContractDetails>> cached = contractDetails.get(contract, System.currentTimeMillis());
+            if (cached.isPresent()) {
+                // The repository doesn't exist before the first connection
+                CacheRepositoryImpl current = cache.get();
+                if (current != null) {
+                    cached.get().forEach(current::updateContractDetails);
+                }
+                return Flux.fromIterable(cached.get());
+            }
+            return request(contract)
+                    .collectList()
+                    .doOnNext(replies -> contractDetails.put(contract, replies, System.currentTimeMillis()))
+                    .flatMapIterable(replies -> replies);
+        });
+    }
+
+    Mono<Void> prefetch(Collection<Contract> contracts, int concurrency) {
+        Validators.shouldNotBeNull(contracts, "Contracts should be defined");
+        Validators.intShouldBePositive(concurrency, "Concurrency should be positive");
+        if (contractDetails == null) {
+            throw new IllegalStateException("Contract details cache is disabled");
+        }
+
+        return Flux.fromIterable(contracts)
+                .filter(contract -> !contractDetails.contains(contract, System.currentTimeMillis()))
+                .flatMap(contract -> get(contract)
+                        .onErrorResume(e -> {
+                            log.warn("Cannot prefetch details of {} ({}): {}",
+                                     contract.symbol(), contract.conid(), e.getMessage());
+                            return Flux.empty();
+                        }), concurrency)
+                .then()
+                .doOnSuccess(unused -> contractDetails.save());
+    }
+
+    void save() {
+        if (contractDetails != null) {
+            contractDetails.save();
+        }
+    }
+
+    private Flux<ContractDetails> request(Contract contract) {
+        return requests.<ContractDetails>builder()
+                .type(RequestRepository.Type.REQ_CONTRACT_DETAIL)
+                .register(id -> socket.get().reqContractDetails(id, contract))
+                .subscribe();
+    }
+}
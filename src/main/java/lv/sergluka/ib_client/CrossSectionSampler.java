@@ -0,0 +1,44 @@
+package lv.sergluka.ib_client;
+
+import lv.sergluka.ib_client.impl.Validators;
+import lv.sergluka.ib_client.impl.cache.CacheRepositoryImpl;
+import lv.sergluka.ib_client.types.IbCrossSection;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Periodic samples of the tick columns for {@link IbClient#subscribeOnCrossSection}.
+ */
+class CrossSectionSampler {
+
+    private final Supplier<CacheRepositoryImpl> cache;
+
+    CrossSectionSampler(Supplier<CacheRepositoryImpl> cache) {
+        this.cache = cache;
+    }
+
+    Flux<IbCrossSection> sample(Duration interval) {
+        Validators.shouldNotBeNull(interval, "Interval should be defined");
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Interval should be positive");
+        }
+
+        // Every subscriber has its own section, which is filled in place at every tick of the interval
+        return Flux.defer(() -> {
+            IbCrossSection section = new IbCrossSection();
+            return Flux.interval(interval)
+                    .onBackpressureDrop()
+                    .filter(unused -> {
+                        CacheRepositoryImpl current = cache.get();
+                        if (current == null) {
+                            return false;
+                        }
+                        current.getTickColumns().copyTo(section);
+                        return true;
+                    })
+                    .map(unused -> section);
+        });
+    }
+}
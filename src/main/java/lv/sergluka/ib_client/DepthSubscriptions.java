@@ -0,0 +1,90 @@
+package lv.sergluka.ib_client;
+
+import com.ib.client.Contract;
+import com.ib.client.EClientSocket;
+import lv.sergluka.ib_client.impl.Validators;
+import lv.sergluka.ib_client.impl.cache.CacheRepositoryImpl;
+import lv.sergluka.ib_client.impl.cache.DirectBookStore;
+import lv.sergluka.ib_client.impl.request.RequestRepository;
+import lv.sergluka.ib_client.types.IbOrderBookAnalytics;
+import lv.sergluka.ib_client.types.IbOrderBookUpdate;
+import reactor.core.publisher.Flux;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Market depth subscriptions of {@link IbClient}.
+ *
+ * <p>Every subscription has its own book, which is bound to the ticker at registration, so a depth update is
+ * applied without lookups of the request and the contract. EVENT_ORDER_BOOK_UPDATES subscription receives a
+ * notification per burst instead of every update.
+ */
+class DepthSubscriptions {
+
+    private final RequestRepository requests;
+    private final DirectBookStore bookStore;
+    private final Supplier<EClientSocket> socket;
+    private final Supplier<CacheRepositoryImpl> cache;
+    private final Map<List<Object>, Flux<IbOrderBookAnalytics>> analytics = new ConcurrentHashMap<>();
+
+    DepthSubscriptions(RequestRepository requests, DirectBookStore bookStore,
+                       Supplier<EClientSocket> socket, Supplier<CacheRepositoryImpl> cache) {
+        this.requests = requests;
+        this.bookStore = bookStore;
+        this.socket = socket;
+        this.cache = cache;
+    }
+
+    <T> Flux<T> subscribe(RequestRepository.Type type, Contract contract, int numRows, boolean isSmartDepth) {
+        Validators.contractWithIdShouldExist(contract);
+        Validators.intShouldBePositive(numRows, "Number of rows should be positive");
+        if (bookStore != null && numRows > bookStore.getCapacity()) {
+            throw new IllegalArgumentException(String.format(
+                    "Order book is limited by %d rows, see IbClientOptions", bookStore.getCapacity()));
+        }
+
+        return requests.<T>builder()
+                .type(type)
+                .register(id -> {
+                    if (type == RequestRepository.Type.EVENT_ORDER_BOOK_UPDATES) {
+                        cache.get().bindOrderBook(id, contract, numRows, isSmartDepth, null, requests.sink(type, id));
+                    } else {
+                        cache.get().bindOrderBook(id, contract, numRows, isSmartDepth, requests.sink(type, id), null);
+                    }
+                    socket.get().reqMktDepth(id, contract, numRows, isSmartDepth, null);
+                })
+                .unregister(id -> socket.get().cancelMktDepth(id, isSmartDepth))
+                .release(id -> cache.get().unbindOrderBook(id))
+                .subscribe();
+    }
+
+    Flux<IbOrderBookAnalytics> subscribeOnAnalytics(Contract contract, int numRows, boolean isSmartDepth,
+                                                    int imbalanceLevels, double fillSize) {
+        Validators.contractWithIdShouldExist(contract);
+        Validators.intShouldBePositive(imbalanceLevels, "Number of imbalance levels should be positive");
+
+        List<Object> key = Arrays.asList(contract.conid(), contract.exchange(), numRows, isSmartDepth,
+                                         imbalanceLevels, fillSize);
+        return analytics.computeIfAbsent(key, unused -> {
+            // Analytics is calculated once per burst of updates, not for every changed level
+            AtomicReference<Flux<IbOrderBookAnalytics>> shared = new AtomicReference<>();
+            shared.set(this.<IbOrderBookUpdate>subscribe(RequestRepository.Type.EVENT_ORDER_BOOK_UPDATES,
+                                                         contract, numRows, isSmartDepth)
+                               .map(update -> update.getBook().getAnalytics(imbalanceLevels, fillSize))
+                               .doFinally(signal -> analytics.remove(key, shared.get()))
+                               .publish()
+                               .refCount());
+            return shared.get();
+        });
+    }
+
+    // Shared requests are disposed along with all requests, so the next subscriber sends a new one
+    void clear() {
+        analytics.clear();
+    }
+}
@@ -4,7 +4,13 @@ import lv.sergluka.ib_client.impl.IbReader;
 import lv.sergluka.ib_client.impl.IdGenerator;
 import lv.sergluka.ib_client.impl.Validators;
 import lv.sergluka.ib_client.impl.Wrapper;
+import lv.sergluka.ib_client.impl.cache.CacheArchive;
 import lv.sergluka.ib_client.impl.cache.CacheRepositoryImpl;
+import lv.sergluka.ib_client.impl.cache.CacheRetention;
+import lv.sergluka.ib_client.impl.cache.CacheSnapshot;
+import lv.sergluka.ib_client.impl.cache.ContractDetailsCache;
+import lv.sergluka.ib_client.impl.cache.DirectBookStore;
+import lv.sergluka.ib_client.impl.cache.SymbolSearchCache;
 import lv.sergluka.ib_client.impl.connection.ConnectionMonitor;
 import lv.sergluka.ib_client.impl.request.RequestRepository;
 import lv.sergluka.ib_client.params.AccountsSummaryParams;
@@ -17,10 +23,14 @@ import reactor.core.publisher.EmitterProcessor;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 
@@ -36,6 +46,14 @@ public class IbClient implements AutoCloseable {
     private final IdGenerator idGenerator;
     private final RequestRepository requests;
     private final IbClientOptions options;
+    private final DirectBookStore bookStore;
+    private final CacheArchive archive;
+    private final CacheSnapshot snapshot;
+    private final SymbolSearchCache symbolSearch;
+    private final ContractDetailsRequests contractDetails;
+    private final DepthSubscriptions depth;
+    private final BarSubscriptions bars;
+    private final CrossSectionSampler crossSections;
 
     private IbReader reader;
     private Wrapper wrapper;
@@ -49,13 +67,36 @@ public class IbClient implements AutoCloseable {
 
     public IbClient(IbClientOptions options) {
         this.options = options;
+        bookStore = options.getOffHeapOrderBookRows() > 0
+                    ? new DirectBookStore(options.getOffHeapOrderBookRows()) : null;
+        archive = options.getArchiveFile() != null ? new CacheArchive(options.getArchiveFile()) : null;
+        snapshot = options.getSnapshotFile() != null ? new CacheSnapshot(options.getSnapshotFile()) : null;
+        ContractDetailsCache detailsCache = options.getContractDetailsTtl() != null
+                ? new ContractDetailsCache(options.getContractDetailsFile(), options.getContractDetailsTtl())
+                : null;
+        symbolSearch = options.getSymbolSearchTtl() != null
+                       ? new SymbolSearchCache(options.getSymbolSearchFile(), options.getSymbolSearchTtl()) : null;
         idGenerator = new IdGenerator();
         requests = new RequestRepository(this, idGenerator);
+        contractDetails = new ContractDetailsRequests(requests, detailsCache, () -> socket, () -> cache);
+        depth = new DepthSubscriptions(requests, bookStore, () -> socket, () -> cache);
+        bars = new BarSubscriptions(requests, () -> socket, () -> cache);
+        crossSections = new CrossSectionSampler(() -> cache);
     }
 
     @Override
     public void close() {
         disconnect();
+        if (snapshot != null) {
+            snapshot.close();
+        }
+        contractDetails.save();
+        if (symbolSearch != null) {
+            symbolSearch.save();
+        }
+        if (archive != null) {
+            archive.close();
+        }
     }
 
     public CacheRepository getCache() {
@@ -100,7 +141,20 @@ public class IbClient implements AutoCloseable {
                 return;
             }
 
-            cache = new CacheRepositoryImpl();
+            CacheRetention retention = null;
+            if (options.getRetainedCount() >= 0) {
+                retention = new CacheRetention(options.getRetainedCount(), options.getRetainedAge(), archive);
+            }
+            if (cache != null) {
+                // Order books of the previous session return their slots to the shared store
+                cache.clear();
+            }
+            cache = new CacheRepositoryImpl(bookStore, options.getOrderStatusHistory(), retention,
+                                            options.getExecutionJoinTimeout());
+            if (snapshot != null) {
+                snapshot.load(cache);
+                snapshot.start(cache, options.getSnapshotInterval());
+            }
 
             connectionMonitor = new ConnectionMonitor(options.getConnectionDelay()) {
 
@@ -115,7 +169,7 @@ public class IbClient implements AutoCloseable {
                     socket.setAsyncEConnect(false);
                     socket.eConnect(ip, port, connId);
 
-                    reader = new IbReader(socket, signal);
+                    reader = new IbReader(socket, signal, wrapper::onMessagesProcessed);
                     reader.start();
                 }
 
@@ -128,6 +182,9 @@ public class IbClient implements AutoCloseable {
                         reader.close();
                     }
                     if (!reconnect) {
+                        if (snapshot != null) {
+                            snapshot.stop();
+                        }
                         cache.clear();
                     }
 
@@ -138,6 +195,7 @@ public class IbClient implements AutoCloseable {
                 @Override
                 protected void afterConnect() {
                     socket.setServerLogLevel(IbClient.LogLevel.DETAIL.ordinal());
+                    wrapper.reconcileCache();
                 }
 
                 @Override
@@ -149,7 +207,8 @@ public class IbClient implements AutoCloseable {
                 }
             };
 
-            wrapper = new Wrapper(connectionMonitor, cache, requests, idGenerator, logSubject);
+            wrapper = new Wrapper(connectionMonitor, cache, requests, idGenerator, logSubject,
+                                  options.isPositionChangesOnly());
 
             connectionMonitor.start();
             connectionMonitor.connect();
@@ -164,6 +223,8 @@ public class IbClient implements AutoCloseable {
     public void disconnect() {
         log.debug("Disconnecting...");
         requests.close();
+        bars.clear();
+        depth.clear();
         connectionMonitor.close();
         log.info("Disconnected");
     }
@@ -249,7 +310,9 @@ public class IbClient implements AutoCloseable {
      *
      * @implNote After subscription, client sends snapshot with already existing positions. Then
      * only updates will be send. To separate these two cases, special entry will be sent
-     * between them - {@link IbPosition#COMPLETE}
+     * between them - {@link IbPosition#COMPLETE}. If only changes are published, the snapshot contains positions,
+     * which aren't in the cache yet or differ from it, the rest are available by {@link CacheRepository#getPositions}.
+     * @see lv.sergluka.ib_client.params.IbClientOptions#positionChangesOnly
      * @see <a href="https://interactivebrokers.github.io/tws-api/positions.html#position_request">
      * TWS API: reqPositions</a>
      * @see
@@ -355,6 +418,8 @@ public class IbClient implements AutoCloseable {
      * @param marketRuleId IB contract
      * @return Flux with PriceIncrement. Completes as soon all data will be received.
      *
+     * @implNote Rules are cached, so the request is sent only once per rule.
+     * @see CacheRepository#roundToTick
      * @see IbClient#setMarketDataType
      * @see
      * <a href=https://interactivebrokers.github.io/tws-api/minimum_increment.html>TWS API: Minimum Price Increment</a>
@@ -365,6 +430,11 @@ public class IbClient implements AutoCloseable {
     public Flux<PriceIncrement> reqMarketRule(int marketRuleId) {
         Validators.intShouldBePositiveOrZero(marketRuleId, "ID should be defined");
 
+        IbPriceGrid cached = cache != null ? cache.getMarketRule(marketRuleId) : null;
+        if (cached != null) {
+            return Flux.fromIterable(cached.getPriceIncrements());
+        }
+
         return requests.<List<PriceIncrement>>builder()
                 .type(RequestRepository.Type.REQ_MARKET_RULE)
                 .register(marketRuleId, () -> socket.reqMarketRule(marketRuleId))
@@ -391,15 +461,94 @@ public class IbClient implements AutoCloseable {
      * TWS API: cancelMktDepth</a>
      */
     public Flux<IbMarketDepth> subscribeOnMarketDepth(Contract contract, int numRows) {
-        Validators.contractWithIdShouldExist(contract);
-        Validators.intShouldBePositive(numRows, "Number of rows should be positive");
+        return subscribeOnMarketDepth(contract, numRows, false);
+    }
 
-        return requests.<IbMarketDepth>builder()
-                .type(RequestRepository.Type.EVENT_MARKET_DATA_LVL2)
-                .register(id -> socket.reqMktDepth(id, contract, numRows, false, null))
-                .unregister(id -> socket.cancelMktDepth(id, false))
-                .userData(contract)
-                .subscribe();
+    /**
+     * Subscription to contract order book (Market Depth Level II), optionally aggregated across exchanges.
+     *
+     * <p>Smart depth book consists of levels of all exchanges, so the same price may appear at several positions.
+     * Its cached {@link IbOrderBook} also keeps levels aggregated by price, see
+     * {@link IbOrderBook#copyAggregatedTo}.
+     *
+     * @param contract     IB contract
+     * @param numRows      Order book max depth
+     * @param isSmartDepth Whether to request smart depth book
+     * @return Flux with order book levels
+     *
+     * @see #subscribeOnMarketDepth(Contract, int)
+     * @see CacheRepository#getOrderBook
+     */
+    public Flux<IbMarketDepth> subscribeOnMarketDepth(Contract contract, int numRows, boolean isSmartDepth) {
+        return depth.subscribe(RequestRepository.Type.EVENT_MARKET_DATA_LVL2, contract, numRows, isSmartDepth);
+    }
+
+    /**
+     * Subscription to contract order book, which emits a single notification per burst of market depth updates.
+     *
+     * <p>During fast markets TWS sends many depth updates back to back. Updates received together are applied to
+     * the book one by one, but subscribers are notified only once, after the last of them.
+     *
+     * @param contract     IB contract
+     * @param numRows      Order book max depth
+     * @param isSmartDepth Whether to request smart depth book
+     * @return Flux with book change notifications. Use {@link IbOrderBookUpdate#getBook()} to read the book
+     *
+     * @see #subscribeOnMarketDepth(Contract, int, boolean)
+     */
+    public Flux<IbOrderBookUpdate> subscribeOnOrderBookUpdates(Contract contract, int numRows, boolean isSmartDepth) {
+        return depth.subscribe(RequestRepository.Type.EVENT_ORDER_BOOK_UPDATES, contract, numRows, isSmartDepth);
+    }
+
+    /**
+     * Subscription to contract order book, which emits at most a single notification per interval.
+     *
+     * @param contract     IB contract
+     * @param numRows      Order book max depth
+     * @param isSmartDepth Whether to request smart depth book
+     * @param interval     Minimal interval between notifications
+     * @return Flux with book change notifications, which combine all changes of the interval
+     *
+     * @see #subscribeOnOrderBookUpdates(Contract, int, boolean)
+     */
+    public Flux<IbOrderBookUpdate> subscribeOnOrderBookUpdates(Contract contract,
+                                                               int numRows,
+                                                               boolean isSmartDepth,
+                                                               Duration interval) {
+        Validators.shouldNotBeNull(interval, "Interval should be defined");
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Interval should be positive");
+        }
+
+        return subscribeOnOrderBookUpdates(contract, numRows, isSmartDepth)
+                .buffer(interval)
+                .filter(updates -> !updates.isEmpty())
+                .map(IbOrderBookUpdate::merge);
+    }
+
+    /**
+     * Subscription to analytics of contract order book, which is emitted once per burst of order book changes.
+     *
+     * @param contract        IB contract
+     * @param numRows         Order book max depth
+     * @param isSmartDepth    Whether to request smart depth book. Analytics of smart depth book is based on levels
+     *                        aggregated by price
+     * @param imbalanceLevels Number of top levels of each side for imbalance calculation
+     * @param fillSize        Quantity to calculate average fill prices for
+     * @return Flux with order book analytics
+     *
+     * @implNote Metrics are calculated from running totals, which the book keeps up to date from the changed level,
+     * so there is no order book scan per update. All subscriptions with the same arguments share a single market
+     * depth request and receive the same analytics instances. The request is sent with the first subscriber and is
+     * canceled when the last one is disposed
+     * @see IbOrderBook#getAnalytics
+     */
+    public Flux<IbOrderBookAnalytics> subscribeOnOrderBookAnalytics(Contract contract,
+                                                                    int numRows,
+                                                                    boolean isSmartDepth,
+                                                                    int imbalanceLevels,
+                                                                    double fillSize) {
+        return depth.subscribeOnAnalytics(contract, numRows, isSmartDepth, imbalanceLevels, fillSize);
     }
 
     /**
@@ -419,9 +568,84 @@ public class IbClient implements AutoCloseable {
      */
     public Flux<IbTick> subscribeOnMarketData(Contract contract) {
         Validators.contractWithIdShouldExist(contract);
+        return subscribeOnTicks(contract, null);
+    }
+
+    /**
+     * Subscription to contract ticks (Market Depth Level I), which emits only updates of fields of interest.
+     *
+     * <p>Updates of other fields are still applied to the tick, so the emitted tick has all fields up to date.
+     * Note that delayed data is sent as separate tick types, e.g. {@link IbTickImpl.Types#DELAYED_BID}.
+     *
+     * @param contract IB contract
+     * @param fields   Tick types of interest
+     * @return Flux with contract ticks
+     *
+     * @see #subscribeOnMarketData(Contract)
+     */
+    public Flux<IbTick> subscribeOnMarketData(Contract contract, Set<IbTickImpl.Types> fields) {
+        Validators.contractWithIdShouldExist(contract);
+        Validators.collectionShouldNotBeEmpty(fields, "Tick types should be defined");
 
+        BitSet mask = new BitSet();
+        fields.stream().filter(field -> field != IbTickImpl.Types.UNKNOWN).forEach(field -> mask.set(field.getValue()));
+        return subscribeOnTicks(contract, mask);
+    }
+
+    private Flux<IbTick> subscribeOnTicks(Contract contract, BitSet mask) {
         return requests.<IbTick>builder()
                 .type(RequestRepository.Type.EVENT_MARKET_DATA)
+                .register(id -> {
+                    cache.getTickColumns().add(id, contract.conid());
+                    socket.reqMktData(id, contract, "", false, false, null);
+                })
+                .unregister(id -> socket.cancelMktData(id))
+                .release(id -> cache.getTickColumns().remove(id))
+                .fields(mask)
+                .subscribe();
+    }
+
+    /**
+     * Periodic samples of bid, ask and last trade of all market data subscriptions.
+     *
+     * <p>Every sample is a consistent cross-section of all subscriptions, written into primitive columns of the
+     * same {@link IbCrossSection} instance. So the instance is valid only until the subscriber returns, use
+     * {@link IbCrossSection#copy()} to pass it to another thread. Samples are dropped while the subscriber is busy.
+     *
+     * @param interval Sampling interval
+     * @return Flux with samples. Never completes
+     *
+     * @see #subscribeOnMarketData(Contract)
+     * @see CacheRepository#getTickColumns
+     */
+    public Flux<IbCrossSection> subscribeOnCrossSection(Duration interval) {
+        return crossSections.sample(interval);
+    }
+
+    /**
+     * Subscription to option greeks and implied volatility calculated by TWS.
+     *
+     * @param contract IB option contract
+     * @return Flux with option computations for bid, ask, last and model prices. Use
+     * {@link IbOptionComputation#getType()} to distinguish them
+     *
+     * @implNote To avoid allocations on every update, the same {@link IbOptionComputation} view per ticker and type is
+     * emitted again and again, use {@link IbOptionComputation#copy()} to keep a consistent set of values. Regular
+     * ticks of the request are available from {@link CacheRepository#getTick}
+     * @see <a href="https://interactivebrokers.github.io/tws-api/option_computations.html">
+     * TWS API: Option Greeks</a>
+     * @see
+     * <a href="https://interactivebrokers.github.io/tws-api/classIBApi_1_1EClient.html#a7a19258a3a2087c07c1c57b93f659b63">
+     * TWS API: reqMarketData</a>
+     * @see
+     * <a href="https://interactivebrokers.github.io/tws-api/classIBApi_1_1EClient.html#af443a1cd993aee33ce67deb7bc39e484">
+     * TWS API: cancelMktData</a>
+     */
+    public Flux<IbOptionComputation> subscribeOnOptionComputation(Contract contract) {
+        Validators.contractWithIdShouldExist(contract);
+
+        return requests.<IbOptionComputation>builder()
+                .type(RequestRepository.Type.EVENT_OPTION_COMPUTATION)
                 .register(id -> socket.reqMktData(id, contract, "", false, false, null))
                 .unregister(id -> socket.cancelMktData(id))
                 .subscribe();
@@ -606,13 +830,17 @@ public class IbClient implements AutoCloseable {
 
         // Checking does order doesn't already filled or canceled
         Mono<Void> preconditions = Mono.create(emitter -> {
-            IbOrder order = cache.getOrders().getOrDefault(orderId, null);
+            IbOrder order = cache.getOrder(orderId);
             if (order == null) {
                 emitter.success();
                 return;
             }
 
             IbOrderStatus lastStatus = order.getLastStatus();
+            if (lastStatus == null) {
+                emitter.success();
+                return;
+            }
             if (lastStatus.isFilled()) {
                 emitter.error(new IbExceptions.OrderAlreadyFilledError(orderId));
                 return;
@@ -652,9 +880,7 @@ public class IbClient implements AutoCloseable {
     public Mono<Void> cancelAll() {
 
 
-        Flux<IbOrder> openedOrder = reqOpenOrders().filter(order -> !order.getLastStatus().isCanceled() &&
-                                                          !order.getLastStatus().isFilled() &&
-                                                          !order.getLastStatus().isInactive());
+        Flux<IbOrder> openedOrder = reqOpenOrders().filter(order -> order.getStage() == IbOrder.Stage.WORKING);
 
         Flux<IbOrderStatus> cancelAllAndWait = subscribeOnOrderNewStatus()
                 .doOnSubscribe(unused -> socket.reqGlobalCancel())
@@ -707,7 +933,9 @@ public class IbClient implements AutoCloseable {
      * @param contract IB contract
      * @return Flux with contract details. Completes as soon TWS sends all data.
      *
-     * @implNote Note that IB can return more then one ContractDetails.
+     * @implNote Note that IB can return more then one ContractDetails. If the cache of contract details is enabled,
+     * cached details are returned without the request to TWS.
+     * @see lv.sergluka.ib_client.params.IbClientOptions#contractDetailsCache
      * @see <a href="https://interactivebrokers.github.io/tws-api/contract_details.html">
      * TWS API: Requesting Contract Details</a>
      * @see
@@ -715,12 +943,20 @@ public class IbClient implements AutoCloseable {
      * TWS API: reqContractDetails</a>
      */
     public Flux<ContractDetails> reqContractDetails(Contract contract) {
-        Validators.shouldNotBeNull(contract, "Contract should be defined");
+        return contractDetails.get(contract);
+    }
 
-        return requests.<ContractDetails>builder()
-                .type(RequestRepository.Type.REQ_CONTRACT_DETAIL)
-                .register(id -> socket.reqContractDetails(id, contract))
-                .subscribe();
+    /**
+     * Requests for details of contracts, which aren't in the cache of contract details, and saves the cache.
+     *
+     * @param contracts   IB contracts
+     * @param concurrency Max number of simultaneous requests
+     * @return Mono that completes when all details are received. Failed requests are logged and skipped.
+     *
+     * @see lv.sergluka.ib_client.params.IbClientOptions#contractDetailsCache
+     */
+    public Mono<Void> prefetchContractDetails(Collection<Contract> contracts, int concurrency) {
+        return contractDetails.prefetch(contracts, concurrency);
     }
 
 
@@ -730,6 +966,9 @@ public class IbClient implements AutoCloseable {
      * @param pattern IB contract name pattern
      * @return Flux with contract descriptions. Completes as soon TWS sends all data.
      *
+     * @implNote If the cache of symbol search is enabled, the pattern is answered locally when it has been searched
+     * during the TTL.
+     * @see lv.sergluka.ib_client.params.IbClientOptions#symbolSearchCache
      * @see <a href="https://interactivebrokers.github.io/tws-api/matching_symbols.html">
      * TWS API: Stock Contract Search</a>
      * @see
@@ -737,6 +976,23 @@ public class IbClient implements AutoCloseable {
      * TWS API: reqMatchingSymbols</a>
      */
     public Flux<IbContractDescription> reqMatchingSymbols(String pattern) {
+        if (symbolSearch == null) {
+            return requestMatchingSymbols(pattern);
+        }
+
+        return Flux.defer(() -> {
+            Optional<List<IbContractDescription>> cached = symbolSearch.get(pattern, System.currentTimeMillis());
+            if (cached.isPresent()) {
+                return Flux.fromIterable(cached.get());
+            }
+            return requestMatchingSymbols(pattern)
+                    .collectList()
+                    .doOnNext(replies -> symbolSearch.put(pattern, replies, System.currentTimeMillis()))
+                    .flatMapIterable(replies -> replies);
+        });
+    }
+
+    private Flux<IbContractDescription> requestMatchingSymbols(String pattern) {
         return requests.<IbContractDescription>builder()
                 .type(RequestRepository.Type.REQ_CONTRACT_DESCRIPTION)
                 .register(id -> socket.reqMatchingSymbols(id, pattern))
@@ -926,6 +1182,81 @@ public class IbClient implements AutoCloseable {
                 .subscribe();
     }
 
+    /**
+     * Request for historical bars along with updates of the unfinished one, which are kept in a window of the last
+     * bars.
+     *
+     * @param contract     IB contract
+     * @param duration     The amount of time to go back from now
+     * @param durationUnit <strong>duration</strong>
+     * @param size         Valid Bar Sizes. Must be above or equals 5 seconds.
+     * @param type         The type of data to retrieve
+     * @param tradingHours Whether ({@link TradingHours#Within}) or not ({@link TradingHours#Outside}) to retrieve
+     *                     data generated only within Regular Trading Hours
+     * @param windowSize   Max number of bars in the window
+     * @return Flux with the window. Never completes. The same instance is emitted once all historical bars are
+     * received, and then on every change of the unfinished bar or start of a new one. Repeated updates without
+     * changes are skipped
+     *
+     * @implNote Bars aren't converted to {@link IbBar}, they are written directly into primitive arrays of the
+     * window
+     * @see #subscribeOnHistoricalData
+     */
+    public Flux<IbBarWindow> subscribeOnBarWindow(Contract contract,
+                                                  int duration, DurationUnit durationUnit,
+                                                  BarSize size,
+                                                  Type type, TradingHours tradingHours,
+                                                  int windowSize) {
+        return bars.subscribeOnBarWindow(contract, duration, durationUnit, size, type, tradingHours, windowSize);
+    }
+
+    /**
+     * Subscription to real time 5 seconds bars.
+     *
+     * @param contract     IB contract
+     * @param type         The type of data to retrieve. Only {@link Type#TRADES}, {@link Type#MIDPOINT},
+     *                     {@link Type#BID} and {@link Type#ASK} are supported by TWS
+     * @param tradingHours Whether ({@link TradingHours#Within}) or not ({@link TradingHours#Outside}) to retrieve
+     *                     data generated only within Regular Trading Hours
+     * @return Flux with the bars. Never completes. Bar time is a bar start time in GMT
+     *
+     * @implNote TWS sends the same bars to all requests for a contract, so all subscriptions with the same
+     * contract, type and trading hours share the single TWS request. It is sent with the first subscriber and
+     * is canceled when the last one is disposed.
+     * @see <a href="https://interactivebrokers.github.io/tws-api/realtime_bars.html">
+     * TWS API: Real Time Bars</a>
+     * @see #subscribeOnHistoricalData
+     */
+    public Flux<IbBar> subscribeOnRealtimeBars(Contract contract, Type type, TradingHours tradingHours) {
+        return bars.subscribeOnRealtimeBars(contract, type, tradingHours);
+    }
+
+    /**
+     * Subscription to bars (aka candles) built on the client side from the contract trades.
+     *
+     * @param contract IB contract
+     * @param source   Source of the trades
+     * @param sizes    Bar sizes to build. Sizes that depend on a trading calendar (day, week, month) are not
+     *                 supported
+     * @return Flux with {@link IbAggregatedBar} of all requested sizes. Never completes. Bar is emitted as soon
+     * the first trade of a later bar is received or its period is over, bar time is a bar start time in GMT
+     *
+     * @implNote Unlike {@link #subscribeOnHistoricalData}, single TWS request serves any number of sizes
+     * and subscribers: all subscriptions with the same contract and source share it. The request is sent with
+     * the first subscriber and is canceled when the last one is disposed.
+     * @see <a href="https://interactivebrokers.github.io/tws-api/top_data.html">
+     * TWS API: Market Depth (Level I)</a>
+     * @see <a href="https://interactivebrokers.github.io/tws-api/tick_data.html">
+     * TWS API: Tick-By-Tick Data</a>
+     * @see #subscribeOnHistoricalData
+     * @see #subscribeOnRealtimeBars
+     */
+    public Flux<IbAggregatedBar> subscribeOnAggregatedBars(Contract contract,
+                                                           TradeSource source,
+                                                           Set<BarSize> sizes) {
+        return bars.subscribeOnAggregatedBars(contract, source, sizes);
+    }
+
     /**
      * Subscribes to filled order execution info.
      *
@@ -1041,33 +1372,45 @@ public class IbClient implements AutoCloseable {
         Leverage, // GrossPositionValue / NetLiquidation
     }
 
+    @SuppressWarnings("MagicNumber")
     public enum BarSize {
-        SEC_1("1 secs"),
-        SEC_5("5 secs"),
-        SEC_10("10 secs"),
-        SEC_15("15 secs"),
-        SEC_30("30 secs"),
-        MIN_1("1 min"),
-        MIN_2("2 mins"),
-        MIN_3("3 mins"),
-        MIN_5("5 mins"),
-        MIN_10("10 mins"),
-        MIN_15("15 mins"),
-        MIN_20("20 mins"),
-        MIN_30("30 mins"),
-        HOUR_1("1 hour"),
-        HOUR_2("2 hours"),
-        HOUR_3("3 hours"),
-        HOUR_4("4 hours"),
-        HOUR_8("8 hours"),
-        DAY_1("1 day"),
-        WEEK_1("1 week"),
-        MONTH_1("1 month");
+        SEC_1("1 secs", 1),
+        SEC_5("5 secs", 5),
+        SEC_10("10 secs", 10),
+        SEC_15("15 secs", 15),
+        SEC_30("30 secs", 30),
+        MIN_1("1 min", 60),
+        MIN_2("2 mins", 2 * 60),
+        MIN_3("3 mins", 3 * 60),
+        MIN_5("5 mins", 5 * 60),
+        MIN_10("10 mins", 10 * 60),
+        MIN_15("15 mins", 15 * 60),
+        MIN_20("20 mins", 20 * 60),
+        MIN_30("30 mins", 30 * 60),
+        HOUR_1("1 hour", 60 * 60),
+        HOUR_2("2 hours", 2 * 60 * 60),
+        HOUR_3("3 hours", 3 * 60 * 60),
+        HOUR_4("4 hours", 4 * 60 * 60),
+        HOUR_8("8 hours", 8 * 60 * 60),
+        DAY_1("1 day", 0),
+        WEEK_1("1 week", 0),
+        MONTH_1("1 month", 0);
 
         private final String text;
+        private final int seconds;
 
-        BarSize(final String text) {
+        BarSize(final String text, int seconds) {
             this.text = text;
+            this.seconds = seconds;
+        }
+
+        /**
+         * Bar length in seconds.
+         *
+         * @return length or 0 for sizes which depend on a trading calendar (day, week, month)
+         */
+        public int getSeconds() {
+            return seconds;
         }
 
         @Override
@@ -1116,4 +1459,12 @@ public class IbClient implements AutoCloseable {
         Within,
         Outside
     }
+
+    /**
+     * Source of the trades for {@link #subscribeOnAggregatedBars}.
+     */
+    public enum TradeSource {
+        MARKET_DATA,    // LAST and LAST_SIZE ticks of a regular market data. Uses receiving time
+        TICK_BY_TICK,   // Tick-by-tick "AllLast" data. Uses exchange time, but TWS allows only few such requests
+    }
 }
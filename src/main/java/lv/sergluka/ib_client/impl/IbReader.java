@@ -6,22 +6,39 @@ import com.ib.client.EReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 public class IbReader {
 
     private static final Logger log = LoggerFactory.getLogger(IbReader.class);
 
     private static final int STOP_TIMEOUT_MS = 1000;
     private static final int WAIT_TIMEOUT_MS = 100;
+    private static final int TICK_INTERVAL_MS = 100;
 
     private final Thread thread = new Thread(this::processMessages);
     private final EJavaSignal signal;
     private final EClientSocket socket;
+    private final Runnable afterMessages;
 
     private EReader reader;
+    private ScheduledExecutorService ticker;
 
-    public IbReader(EClientSocket socket, EJavaSignal signal) {
+    /**
+     * Creates reader.
+     *
+     * @param socket        TWS socket
+     * @param signal        Signal of new messages
+     * @param afterMessages Called after every batch of messages, which have been received together, and at least
+     *                      every {@value #TICK_INTERVAL_MS} ms while there are no messages, so timers of the cache
+     *                      advance when TWS is silent
+     */
+    public IbReader(EClientSocket socket, EJavaSignal signal, Runnable afterMessages) {
         this.socket = socket;
         this.signal = signal;
+        this.afterMessages = afterMessages;
 
         thread.setName("IbReader");
         thread.setPriority(Thread.MAX_PRIORITY);
@@ -33,9 +50,20 @@ public class IbReader {
 
         reader.start();
         thread.start();
+
+        // Wakes the thread up, like a message does, so it runs afterMessages without new messages
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread tickerThread = new Thread(runnable, "IbReaderTicker");
+            tickerThread.setDaemon(true);
+            return tickerThread;
+        });
+        ticker.scheduleWithFixedDelay(signal::issueSignal, TICK_INTERVAL_MS, TICK_INTERVAL_MS, TimeUnit.MILLISECONDS);
     }
 
     public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
         thread.interrupt();
         if (reader != null) {
             reader.interrupt();
@@ -56,6 +84,11 @@ public class IbReader {
                 } catch (Exception e) {
                     log.error("Reader error", e);
                 }
+                try {
+                    afterMessages.run();
+                } catch (Exception e) {
+                    log.error("Error after messages processing", e);
+                }
             } else {
                 try {
                     Thread.sleep(WAIT_TIMEOUT_MS);
@@ -2,9 +2,11 @@ package lv.sergluka.ib_client.impl;
 
 import lv.sergluka.ib_client.IbExceptions;
 import lv.sergluka.ib_client.impl.cache.CacheRepositoryImpl;
+import lv.sergluka.ib_client.impl.cache.DepthBinding;
 import lv.sergluka.ib_client.impl.connection.ConnectionMonitor;
 import lv.sergluka.ib_client.impl.request.RequestRepository;
 import lv.sergluka.ib_client.impl.utils.Converter;
+import lv.sergluka.ib_client.impl.utils.TickStringParser;
 import lv.sergluka.ib_client.types.*;
 import lv.sergluka.ib_client.utils.PrettyPrinters;
 import com.google.common.base.Splitter;
@@ -16,6 +18,8 @@ import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
 import java.net.SocketException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -23,19 +27,26 @@ import java.util.stream.Stream;
 public class Wrapper implements EWrapper {
 
     private static final Logger log = LoggerFactory.getLogger(Wrapper.class);
+    private static final long MS_IN_SECOND = 1000L;
     private final TerminalErrorHandler errorHandler;
     private final ConnectionMonitor connectionMonitor;
     private final CacheRepositoryImpl cache;
     private final RequestRepository requests;
     private final IdGenerator idGenerator;
+    private final boolean positionChangesOnly;
+    // Coalesced order books changed by the current batch of messages, accessed only from the reader thread
+    private final List<DepthBinding> pendingDepthBindings = new ArrayList<>();
     private Set<String> managedAccounts;
     private EClientSocket socket;
+    // Account, which portfolio is requested to reconcile the cache
+    private volatile String reconciledAccount;
 
     public Wrapper(ConnectionMonitor connectionMonitor,
                    CacheRepositoryImpl cache,
                    RequestRepository requests,
                    IdGenerator idGenerator,
-                   Subscriber<IbLogRecord> logObserver) {
+                   Subscriber<IbLogRecord> logObserver,
+                   boolean positionChangesOnly) {
 
         errorHandler = new TerminalErrorHandler(requests) {
 
@@ -65,6 +76,7 @@ public class Wrapper implements EWrapper {
         this.cache = cache;
         this.requests = requests;
         this.idGenerator = idGenerator;
+        this.positionChangesOnly = positionChangesOnly;
     }
 
     @Override
@@ -76,7 +88,11 @@ public class Wrapper implements EWrapper {
 
         IbTick result = cache.updateTick(tickerId, (tick) ->
                 tick.setPriceValue(tickerId, field, BigDecimal.valueOf(price), attribs));
-        publishNewTick(tickerId, result);
+        if (field == IbTickImpl.Types.LAST.getValue()) {
+            cache.updateLastPrice(tickerId, price);
+        }
+        cache.getTickColumns().update(tickerId, field, price);
+        publishNewTick(tickerId, field, result);
     }
 
     @Override
@@ -87,20 +103,24 @@ public class Wrapper implements EWrapper {
         }
 
         IbTick result = cache.updateTick(tickerId, (tick) -> tick.setIntValue(tickerId, field, value));
-        publishNewTick(tickerId, result);
+        if (field == IbTickImpl.Types.LAST_SIZE.getValue()) {
+            cache.updateLastSize(tickerId, value);
+        }
+        cache.getTickColumns().update(tickerId, field, value);
+        publishNewTick(tickerId, field, result);
     }
 
     @Override
     public void tickGeneric(int tickerId, int field, double value) {
         IbTick result = cache.updateTick(tickerId, (tick) ->
                 tick.setGenericValue(tickerId, field, BigDecimal.valueOf(value)));
-        publishNewTick(tickerId, result);
+        publishNewTick(tickerId, field, result);
     }
 
     @Override
     public void tickString(int tickerId, int field, String value) {
         IbTick result = cache.updateTick(tickerId, (tick) -> tick.setStringValue(tickerId, field, value));
-        publishNewTick(tickerId, result);
+        publishNewTick(tickerId, field, result);
     }
 
     @Override
@@ -139,7 +159,7 @@ public class Wrapper implements EWrapper {
 
     @Override
     public void openOrder(int orderId, Contract contract, Order order, OrderState state) {
-        IbOrder twsOrder = new IbOrder(orderId, contract, order, state);
+        IbOrder twsOrder = new IbOrder(orderId, contract, order, state, cache.getStatusHistory());
 
         log.trace("openOrder: requestId={}, contract={}, order={}, orderState={}",
                   orderId, contract.symbol(), order.orderId(), state.status());
@@ -160,6 +180,7 @@ public class Wrapper implements EWrapper {
 
     @Override
     public void openOrderEnd() {
+        cache.reconcileOrders();
         requests.onNextAndComplete(RequestRepository.Type.REQ_ORDER_LIST, null,
                                    new ArrayList<>(cache.getOrders().values()), false);
     }
@@ -199,6 +220,10 @@ public class Wrapper implements EWrapper {
 
     @Override
     public void accountDownloadEnd(String accountName) {
+        cache.reconcilePortfolio(accountName);
+        if (accountName != null && accountName.equals(reconciledAccount)) {
+            requestRestoredPortfolio();
+        }
         requests.onNext(RequestRepository.Type.EVENT_PORTFOLIO, null, IbPortfolio.COMPLETE, false);
     }
 
@@ -228,6 +253,12 @@ public class Wrapper implements EWrapper {
 
     @Override
     public void historicalData(int reqId, Bar bar) {
+        IbBarWindow window = cache.getBarWindow(reqId);
+        if (window != null) {
+            updateBarWindow(reqId, window, bar);
+            return;
+        }
+
         IbBar ibBar = new IbBar(bar);
         log.trace("historicalData: {}", ibBar);
         requests.onNext(RequestRepository.Type.REQ_HISTORICAL_DATA, reqId, ibBar, false);
@@ -237,12 +268,26 @@ public class Wrapper implements EWrapper {
     @Override
     public void historicalDataEnd(int reqId, String startDateStr, String endDateStr) {
         log.trace("historicalDataEnd: startDateStr={}, endDateStr={}", startDateStr, endDateStr);
+        IbBarWindow window = cache.getBarWindow(reqId);
+        if (window != null) {
+            requests.onNext(RequestRepository.Type.EVENT_BAR_WINDOW, reqId, window, false);
+            return;
+        }
+
         requests.onComplete(RequestRepository.Type.REQ_HISTORICAL_DATA, reqId, false);
         requests.onNext(RequestRepository.Type.EVENT_HISTORICAL_DATA, reqId, IbBar.COMPLETE, false);
     }
 
     @Override
     public void historicalDataUpdate(int reqId, Bar bar) {
+        IbBarWindow window = cache.getBarWindow(reqId);
+        if (window != null) {
+            if (updateBarWindow(reqId, window, bar)) {
+                requests.onNext(RequestRepository.Type.EVENT_BAR_WINDOW, reqId, window, false);
+            }
+            return;
+        }
+
         IbBar ibBar = new IbBar(bar);
         log.trace("historicalDataUpdate: {}", ibBar);
         requests.onNext(RequestRepository.Type.EVENT_HISTORICAL_DATA, reqId, ibBar, false);
@@ -260,6 +305,7 @@ public class Wrapper implements EWrapper {
     public void contractDetails(final int reqId, final ContractDetails contractDetails) {
         log.trace("contractDetails: reqId={}, details={}",
                   reqId, PrettyPrinters.contractDetailsToString(contractDetails));
+        cache.updateContractDetails(contractDetails);
         requests.onNext(RequestRepository.Type.REQ_CONTRACT_DETAIL, reqId, contractDetails, false);
     }
 
@@ -306,6 +352,7 @@ public class Wrapper implements EWrapper {
                   marketRuleId, PrettyPrinters.priceIncrementsToString(priceIncrements));
 
         List<PriceIncrement> increments = Stream.of(priceIncrements).collect(Collectors.toList());
+        cache.addMarketRule(marketRuleId, increments);
         requests.onNextAndComplete(RequestRepository.Type.REQ_MARKET_RULE, marketRuleId, increments, true);
     }
 
@@ -317,7 +364,7 @@ public class Wrapper implements EWrapper {
 
         log.trace("execDetails: reqId={}, contract={}, execution={}", reqId, ibContract, ibExecution);
 
-        cache.addExecutionReport(ibContract, ibExecution);
+        cache.addExecutionReport(ibContract, ibExecution).ifPresent(this::onExecutionReport);
     }
 
     @Override
@@ -330,14 +377,7 @@ public class Wrapper implements EWrapper {
         IbCommissionReport commissionReport = new IbCommissionReport(report);
         log.trace("commissionReport: commissionReport={}", commissionReport);
 
-        cache.updateExecutionReport(commissionReport).ifPresent(execReport -> {
-            log.info("Order {} is executed with exec id '{}, total amount: {}, price: {}, commission: {} {}',  ",
-                     execReport.getExecution().getOrderId(), execReport.getExecution().getExecId(),
-                     execReport.getExecution().getCumQty(), execReport.getExecution().getPrice(),
-                     commissionReport.getCommission(), commissionReport.getCurrency());
-
-            requests.onNext(RequestRepository.Type.EVENT_EXECUTION_INFO, null, execReport, false);
-        });
+        cache.updateExecutionReport(commissionReport).ifPresent(this::onExecutionReport);
     }
 
     @Override
@@ -351,7 +391,19 @@ public class Wrapper implements EWrapper {
                                       final double vega,
                                       final double theta,
                                       final double undPrice) {
-        log.trace("tickOptionComputation: NOT IMPLEMENTED");
+        IbOptionComputation.Type type = IbOptionComputation.Type.fromTickType(field);
+        if (type == null) {
+            log.debug("Unsupported option computation for ticker {}, field {}", tickerId, field);
+            return;
+        }
+
+        IbOptionComputation computation = cache.updateOptionComputation(tickerId, type, impliedVol, delta, optPrice,
+                                                                        pvDividend, gamma, vega, theta, undPrice);
+        if (log.isTraceEnabled()) {
+            log.trace("tickOptionComputation: tickerId={}, {}", tickerId, computation);
+        }
+
+        requests.onNext(RequestRepository.Type.EVENT_OPTION_COMPUTATION, tickerId, computation, false);
     }
 
     @Override
@@ -425,7 +477,10 @@ public class Wrapper implements EWrapper {
                             final long volume,
                             final double wap,
                             final int count) {
-        log.trace("realtimeBar: NOT IMPLEMENTED");
+        IbBar ibBar = new IbBar(LocalDateTime.ofEpochSecond(time, 0, ZoneOffset.UTC),
+                                open, high, low, close, volume, count, wap);
+        log.trace("realtimeBar: reqId={}, bar={}", reqId, ibBar);
+        requests.onNext(RequestRepository.Type.EVENT_REALTIME_BARS, reqId, ibBar, false);
     }
 
     @Override
@@ -467,14 +522,17 @@ public class Wrapper implements EWrapper {
         log.info("Position change: {}/{},{}/{}", account, contract.conid(), contract.localSymbol(), pos);
 
         IbPosition position = new IbPosition(account, contract, BigDecimal.valueOf(pos), BigDecimal.valueOf(avgCost));
-        cache.updatePosition(position);
-        requests.onNext(RequestRepository.Type.EVENT_POSITION, null, position, true);
+        if (cache.updatePosition(position) || !positionChangesOnly) {
+            // Positions are also requested to reconcile the cache, so they may come without a subscription
+            requests.onNext(RequestRepository.Type.EVENT_POSITION, null, position, false);
+        }
     }
 
     @Override
     public void positionEnd() {
         log.trace("All positions have been received");
-        requests.onNext(RequestRepository.Type.EVENT_POSITION, null, IbPosition.COMPLETE, true);
+        cache.reconcilePositions();
+        requests.onNext(RequestRepository.Type.EVENT_POSITION, null, IbPosition.COMPLETE, false);
     }
 
     @Override
@@ -682,8 +740,9 @@ public class Wrapper implements EWrapper {
 
     @Override
     public void tickReqParams(int tickerId, double minTick, String bboExchange, int snapshotPermissions) {
-        log.trace("tickReqParams: NOT IMPLEMENTED - tickerId={}, minTick={}, bboExchange={}, snapshotPermissions={}",
+        log.trace("tickReqParams: tickerId={}, minTick={}, bboExchange={}, snapshotPermissions={}",
                   tickerId, minTick, bboExchange, snapshotPermissions);
+        cache.updateMinTick(tickerId, minTick);
     }
 
     @Override
@@ -752,7 +811,9 @@ public class Wrapper implements EWrapper {
     @Override
     public void tickByTickAllLast(int reqId, int tickType, long time, double price, int size,
                                   TickAttribLast tickAttribLast, String exchange, String specialConditions) {
-        log.trace("tickByTickAllLast: NOT IMPLEMENTED");
+        log.trace("tickByTickAllLast: reqId={}, tickType={}, time={}, price={}, size={}, exchange={}",
+                  reqId, tickType, time, price, size, exchange);
+        cache.addTrade(reqId, time * MS_IN_SECOND, price, size);
     }
 
     @Override
@@ -786,24 +847,108 @@ public class Wrapper implements EWrapper {
         this.socket = socket;
     }
 
-    private void publishNewTick(int tickerId, IbTick result) {
-        requests.onNext(RequestRepository.Type.EVENT_MARKET_DATA, tickerId, result, false);
+    /**
+     * Requests open orders, positions and portfolio, so TWS confirms entries restored from the cache snapshot.
+     * Entries, which it doesn't confirm, are dropped when the replies end. Portfolios of the restored accounts are
+     * requested one by one, since TWS sends account updates of a single account at once.
+     */
+    public void reconcileCache() {
+        if (cache.isReconciled()) {
+            return;
+        }
+        socket.reqOpenOrders();
+        socket.reqPositions();
+        requestRestoredPortfolio();
+    }
+
+    /**
+     * Completes processing of a batch of messages, which have been received together.
+     *
+     * <p>The reader thread also calls it periodically without messages, so executions, which wait for their
+     * commissions, and retained orders expire in time while TWS is silent.
+     */
+    public void onMessagesProcessed() {
+        for (int i = 0; i < pendingDepthBindings.size(); i++) {
+            pendingDepthBindings.get(i).flush();
+        }
+        pendingDepthBindings.clear();
+        cache.publishOrderBookChanges();
+        cache.evictExpired(System.currentTimeMillis());
+    }
+
+    private void onExecutionReport(IbExecutionReport execReport) {
+        log.info("Order {} is executed with exec id '{}, total amount: {}, price: {}, commission: {} {}',  ",
+                 execReport.getExecution().getOrderId(), execReport.getExecution().getExecId(),
+                 execReport.getExecution().getCumQty(), execReport.getExecution().getPrice(),
+                 execReport.getCommission().getCommission(), execReport.getCommission().getCurrency());
+
+        requests.onNext(RequestRepository.Type.EVENT_EXECUTION_INFO, null, execReport, false);
+    }
+
+    private boolean updateBarWindow(int reqId, IbBarWindow window, Bar bar) {
+        long time;
+        try {
+            time = TickStringParser.parseBarTime(bar.time());
+        } catch (NumberFormatException e) {
+            log.error("Cannot parse time of bar {}: {}", reqId, e.getMessage());
+            return false;
+        }
+        return window.update(time, bar.open(), bar.high(), bar.low(), bar.close(), bar.volume(), bar.count(),
+                             bar.wap());
+    }
+
+    private void publishNewTick(int tickerId, int field, IbTick result) {
+        requests.onNext(RequestRepository.Type.EVENT_MARKET_DATA, tickerId, result, field, false);
     }
 
     public Set<String> getManagedAccounts() {
         return managedAccounts;
     }
 
+    // Portfolio of accounts, which TWS doesn't manage anymore, can't be confirmed and is dropped at once
+    private void requestRestoredPortfolio() {
+        String account = cache.getRestoredPortfolioAccount();
+        while (account != null && (managedAccounts == null || !managedAccounts.contains(account))) {
+            cache.reconcilePortfolio(account);
+            account = cache.getRestoredPortfolioAccount();
+        }
+        reconciledAccount = account;
+        if (account != null) {
+            socket.reqAccountUpdates(true, account);
+        }
+    }
+
     private void handleUpdateMktDepth(int tickerId, int position, String marketMaker, int operation, int side,
                                       double price, int size) {
 
-        Contract contract = (Contract) requests.getUserData(RequestRepository.Type.EVENT_MARKET_DATA_LVL2, tickerId);
-        Objects.requireNonNull(contract);
+        DepthBinding binding = cache.getDepthBinding(tickerId);
+        if (binding == null) {
+            log.error("Cannot find market depth subscription id={}", tickerId);
+            return;
+        }
 
-        IbMarketDepth orderBookDepth = new IbMarketDepth(contract, position, side, BigDecimal.valueOf(price),
-                                                         size, marketMaker);
-        cache.addMarketDepth(contract, orderBookDepth, IbMarketDepth.Operation.values()[operation]);
+        int lastChanged;
+        try {
+            lastChanged = binding.getBook().update(position, operation, side, price, size, marketMaker);
+        } catch (IllegalArgumentException e) {
+            log.error("Dropping market depth update of subscription id={}: {}", tickerId, e.getMessage());
+            return;
+        }
+        if (lastChanged < 0) {
+            // The book has been released by the subscription, which is being canceled
+            return;
+        }
+        cache.onOrderBookUpdated(binding);
+        if (binding.isCoalesced()) {
+            // Position beyond the depth is clamped by the book
+            if (binding.onUpdate(side, Math.min(position, lastChanged), lastChanged)) {
+                pendingDepthBindings.add(binding);
+            }
+            return;
+        }
 
-        requests.onNext(RequestRepository.Type.EVENT_MARKET_DATA_LVL2, tickerId, orderBookDepth, true);
+        IbMarketDepth orderBookDepth = new IbMarketDepth(binding.getContract(), position, side,
+                                                         BigDecimal.valueOf(price), size, marketMaker);
+        binding.getSink().accept(orderBookDepth);
     }
 }
@@ -0,0 +1,189 @@
+package lv.sergluka.ib_client.impl.bars;
+
+import lv.sergluka.ib_client.IbClient;
+import lv.sergluka.ib_client.types.IbAggregatedBar;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Builds OHLCV bars of several sizes at once from the trades of a single contract.
+ *
+ * <p>Only sizes that have at least one subscriber are built. Every trade costs a constant amount of work per
+ * size and doesn't allocate, an object is created only when a bar is completed. A bar is completed and
+ * emitted by the first trade that belongs to a later bar, or by the timer once the bar period is over, so there
+ * are no bars for periods without trades. A trade, which arrives after its bar has been emitted, is added to the
+ * next bar.
+ *
+ * <p>Trades are expected from the single (reader) thread, the timer and subscribers work from other threads,
+ * so the bars are guarded by the aggregator monitor. A size, which gets its first subscriber, starts from an
+ * empty bar, so a partial bar of a previous subscription is never emitted.
+ */
+public class BarAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(BarAggregator.class);
+
+    private static final IbClient.BarSize[] SIZES = IbClient.BarSize.values();
+    private static final long NO_BAR = Long.MIN_VALUE;
+    private static final long MS_IN_SECOND = 1000L;
+    private static final Duration FLUSH_INTERVAL = Duration.ofMillis(100);
+    // Bars are completed by the timer a bit later than by the local clock, since trade times come from exchange
+    private static final long FLUSH_DELAY_MS = MS_IN_SECOND;
+
+    private final AtomicIntegerArray subscribers = new AtomicIntegerArray(SIZES.length);
+
+    private final long[] start = new long[SIZES.length];
+    private final double[] open = new double[SIZES.length];
+    private final double[] high = new double[SIZES.length];
+    private final double[] low = new double[SIZES.length];
+    private final double[] close = new double[SIZES.length];
+    private final double[] turnover = new double[SIZES.length];
+    private final long[] volume = new long[SIZES.length];
+    private final int[] count = new int[SIZES.length];
+
+    private final Flux<IbAggregatedBar> bars;
+
+    private volatile Consumer<IbAggregatedBar> sink;
+    private double lastPrice = Double.NaN;
+
+    /**
+     * Creates aggregator.
+     *
+     * @param request Creates TWS request for the trades. The request has to {@link #bind} its sink to the
+     *                aggregator at registration. It's shared between all aggregator subscribers
+     */
+    public BarAggregator(Function<BarAggregator, Flux<IbAggregatedBar>> request) {
+        this(request, System::currentTimeMillis);
+    }
+
+    BarAggregator(Function<BarAggregator, Flux<IbAggregatedBar>> request, LongSupplier clock) {
+        for (int i = 0; i < SIZES.length; i++) {
+            start[i] = NO_BAR;
+        }
+        Flux<IbAggregatedBar> flushes = Flux.interval(FLUSH_INTERVAL)
+                .handle((unused, ignored) -> flush(clock.getAsLong()));
+        bars = request.apply(this).mergeWith(flushes).publish().refCount();
+    }
+
+    public static boolean isSupported(IbClient.BarSize size) {
+        return size.getSeconds() > 0;
+    }
+
+    public Flux<IbAggregatedBar> subscribe(Set<IbClient.BarSize> sizes) {
+        return bars.filter(bar -> sizes.contains(bar.getSize()))
+                   .doOnSubscribe(unused -> sizes.forEach(size -> {
+                       if (subscribers.incrementAndGet(size.ordinal()) == 1) {
+                           reset(size.ordinal());
+                       }
+                   }))
+                   .doFinally(unused -> sizes.forEach(size -> subscribers.decrementAndGet(size.ordinal())));
+    }
+
+    public synchronized BarAggregator bind(Consumer<IbAggregatedBar> newSink) {
+        lastPrice = Double.NaN;
+        for (int i = 0; i < SIZES.length; i++) {
+            reset(i);
+        }
+        sink = newSink;
+        return this;
+    }
+
+    public synchronized void onLastPrice(double price) {
+        lastPrice = price;
+    }
+
+    /**
+     * Handles LAST_SIZE tick. TWS sends it right after LAST price, so they are treated as a single trade.
+     *
+     * @param timeMs Time of receiving
+     * @param size   Trade size
+     */
+    public synchronized void onLastSize(long timeMs, long size) {
+        if (Double.isNaN(lastPrice)) {
+            log.trace("Trade size {} without a price is ignored", size);
+            return;
+        }
+        onTrade(timeMs, lastPrice, size);
+    }
+
+    public synchronized void onTrade(long timeMs, double price, long size) {
+        for (int i = 0; i < SIZES.length; i++) {
+            if (subscribers.get(i) <= 0) {
+                reset(i);
+                continue;
+            }
+
+            long periodMs = SIZES[i].getSeconds() * MS_IN_SECOND;
+            long barStart = timeMs - Math.floorMod(timeMs, periodMs);
+
+            // Late trade of a previous bar is added to the current one, or to the next one if it's emitted already
+            if (start[i] != NO_BAR && count[i] == 0 && barStart <= start[i]) {
+                barStart = start[i] + periodMs;
+            }
+            if (start[i] == NO_BAR || barStart > start[i]) {
+                if (count[i] > 0) {
+                    emit(i);
+                }
+                start[i] = barStart;
+                open[i] = price;
+                high[i] = price;
+                low[i] = price;
+                close[i] = price;
+                turnover[i] = price * size;
+                volume[i] = size;
+                count[i] = 1;
+                continue;
+            }
+
+            high[i] = Math.max(high[i], price);
+            low[i] = Math.min(low[i], price);
+            close[i] = price;
+            turnover[i] += price * size;
+            volume[i] += size;
+            count[i]++;
+        }
+    }
+
+    /**
+     * Emits bars, which period is over by the time.
+     *
+     * @param timeMs Current time
+     */
+    public synchronized void flush(long timeMs) {
+        for (int i = 0; i < SIZES.length; i++) {
+            if (count[i] > 0 && timeMs >= start[i] + SIZES[i].getSeconds() * MS_IN_SECOND + FLUSH_DELAY_MS) {
+                emit(i);
+                count[i] = 0;
+            }
+        }
+    }
+
+    private synchronized void reset(int i) {
+        start[i] = NO_BAR;
+        count[i] = 0;
+    }
+
+    private void emit(int i) {
+        Consumer<IbAggregatedBar> currentSink = sink;
+        if (currentSink == null) {
+            return;
+        }
+
+        double wap = volume[i] > 0 ? turnover[i] / volume[i] : close[i];
+        LocalDateTime time = LocalDateTime.ofEpochSecond(start[i] / MS_IN_SECOND, 0, ZoneOffset.UTC);
+
+        IbAggregatedBar bar = new IbAggregatedBar(SIZES[i], time, open[i], high[i], low[i], close[i],
+                                                  volume[i], count[i], wap);
+        log.trace("Bar is completed: {}", bar);
+        currentSink.accept(bar);
+    }
+}
@@ -0,0 +1,165 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import com.ib.client.Contract;
+import lv.sergluka.ib_client.types.IbContract;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary encoding of values, shared by the files of the cache. Values are written by {@link DataOutputStream} and
+ * read from a {@link ByteBuffer} in the big-endian order.
+ */
+final class BinaryCodec {
+
+    private static final int CHECKSUM_SIZE = Long.BYTES;
+
+    private BinaryCodec() {
+    }
+
+    /**
+     * Replaces the file by the content with a checksum. The content is written next to the file and is moved
+     * atomically, so the file is either old or new after a crash.
+     *
+     * @param file    Target file
+     * @param content File content
+     * @throws IOException on writing error
+     */
+    static void writeFile(Path file, byte[] content) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer checksum = ByteBuffer.allocate(CHECKSUM_SIZE).putLong(0, crc.getValue());
+            channel.write(new ByteBuffer[]{ByteBuffer.wrap(content), checksum});
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads content of the file, written by {@link #writeFile}.
+     *
+     * <p>The file is read into the heap rather than mapped: a mapping is released only by GC, and a mapped file
+     * can't be replaced on Windows, so the next {@link #writeFile} would fail.
+     *
+     * @param channel Opened file
+     * @return content without the checksum or null if the checksum doesn't match
+     * @throws IOException on reading error
+     */
+    static ByteBuffer readFile(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < CHECKSUM_SIZE || size > Integer.MAX_VALUE) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return null;
+            }
+        }
+        buffer.flip();
+
+        ByteBuffer content = buffer.duplicate();
+        content.limit((int) size - CHECKSUM_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(content.duplicate());
+        return crc.getValue() == buffer.getLong((int) size - CHECKSUM_SIZE) ? content : null;
+    }
+
+    static void writeContract(DataOutputStream out, Contract contract) throws IOException {
+        out.writeInt(contract.conid());
+        writeString(out, contract.symbol());
+        writeString(out, contract.getSecType());
+        writeString(out, contract.lastTradeDateOrContractMonth());
+        out.writeDouble(contract.strike());
+        writeString(out, contract.getRight());
+        writeString(out, contract.multiplier());
+        writeString(out, contract.exchange());
+        writeString(out, contract.primaryExch());
+        writeString(out, contract.currency());
+        writeString(out, contract.localSymbol());
+        writeString(out, contract.tradingClass());
+    }
+
+    static void writeContract(DataOutputStream out, IbContract contract) throws IOException {
+        out.writeInt(contract.getConId());
+        writeString(out, contract.getSymbol());
+        writeString(out, contract.getSecType() != null ? contract.getSecType().getApiString() : null);
+        writeString(out, contract.getLastTradeDateOrContractMonth());
+        out.writeDouble(contract.getStrike() != null ? contract.getStrike().doubleValue() : Double.MAX_VALUE);
+        writeString(out, contract.getRight() != null ? contract.getRight().getApiString() : null);
+        writeString(out, contract.getMultiplier());
+        writeString(out, contract.getExchange());
+        writeString(out, contract.getPrimaryExchange());
+        writeString(out, contract.getCurrency());
+        writeString(out, contract.getLocalSymbol());
+        writeString(out, contract.getTradingClass());
+    }
+
+    static Contract readContract(ByteBuffer in) {
+        Contract contract = new Contract();
+        contract.conid(in.getInt());
+        contract.symbol(readString(in));
+        contract.secType(readString(in));
+        contract.lastTradeDateOrContractMonth(readString(in));
+        contract.strike(in.getDouble());
+        contract.right(readString(in));
+        contract.multiplier(readString(in));
+        contract.exchange(readString(in));
+        contract.primaryExch(readString(in));
+        contract.currency(readString(in));
+        contract.localSymbol(readString(in));
+        contract.tradingClass(readString(in));
+        return contract;
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        writeString(out, value != null ? value.toString() : null);
+    }
+
+    static BigDecimal readDecimal(ByteBuffer in) {
+        String value = readString(in);
+        return value != null ? new BigDecimal(value) : null;
+    }
+
+    // TWS encodes missing values as Double.MAX_VALUE
+    static void writeDouble(DataOutputStream out, BigDecimal value) throws IOException {
+        out.writeDouble(value != null ? value.doubleValue() : Double.MAX_VALUE);
+    }
+}
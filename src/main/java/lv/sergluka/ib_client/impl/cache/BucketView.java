@@ -0,0 +1,51 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import java.util.AbstractCollection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Live read-only view of a bucket of a secondary index.
+ *
+ * <p>Buckets are created with the first value of a key and dropped with the last one, so the view looks its bucket
+ * up on every access and reads the shared empty map while there is no bucket.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+class BucketView<K, V> extends AbstractCollection<V> {
+
+    private final Map<K, ? extends Map<?, V>> buckets;
+    private final K key;
+
+    BucketView(Map<K, ? extends Map<?, V>> buckets, K key) {
+        this.buckets = buckets;
+        this.key = key;
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return Collections.unmodifiableCollection(bucket().values()).iterator();
+    }
+
+    @Override
+    public int size() {
+        return bucket().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bucket().isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return bucket().containsValue(value);
+    }
+
+    private Map<?, V> bucket() {
+        Map<?, V> bucket = buckets.get(key);
+        return bucket != null ? bucket : Collections.emptyMap();
+    }
+}
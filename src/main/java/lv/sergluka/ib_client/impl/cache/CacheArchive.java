@@ -0,0 +1,344 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import lv.sergluka.ib_client.types.IbArchivedExecution;
+import lv.sergluka.ib_client.types.IbArchivedOrder;
+import lv.sergluka.ib_client.types.IbOrder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Append-only file of orders and executions, evicted from the cache.
+ *
+ * <p>Every record is a line of tab-separated fields, the first one is the record type: {@code O} for an order,
+ * {@code E} for an execution. The file is opened on the first record and is never rewritten, so it can be kept
+ * between sessions. Lines, which can't be parsed (e.g. cut by a crash), are skipped by queries.
+ *
+ * <p>Records are formatted by the caller and written by a single archive thread, which flushes the file once its
+ * queue is drained, so eviction from the reader thread never waits for the disk. Queries wait only for the records
+ * appended before them and scan the file on the calling thread.
+ */
+public class CacheArchive implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheArchive.class);
+
+    private static final String ORDER = "O";
+    private static final String EXECUTION = "E";
+    private static final char SEPARATOR = '\t';
+    private static final long CLOSE_TIMEOUT_S = 5;
+
+    private final Path file;
+    private final ThreadPoolExecutor executor;
+
+    // Accessed by the archive thread only
+    private BufferedWriter writer;
+
+    public CacheArchive(Path file) {
+        this.file = file;
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "ib-client-archive");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public void append(IbArchivedOrder order) {
+        write(ORDER,
+              order.getOrderId(),
+              order.getPermId(),
+              order.getAccount(),
+              order.getConid(),
+              order.getSymbol(),
+              order.getOrderRef(),
+              order.getAction(),
+              order.getOrderType(),
+              order.getQuantity(),
+              order.getLimitPrice(),
+              order.getStage(),
+              order.getFilled(),
+              order.getAvgFillPrice(),
+              order.getArchivedAt());
+    }
+
+    public void append(IbArchivedExecution execution) {
+        write(EXECUTION,
+              execution.getExecId(),
+              execution.getOrderId(),
+              execution.getAccount(),
+              execution.getConid(),
+              execution.getSymbol(),
+              execution.getTime(),
+              execution.getSide(),
+              execution.getShares(),
+              execution.getPrice(),
+              execution.getCommission(),
+              execution.getCurrency(),
+              execution.getRealizedPnl(),
+              execution.getArchivedAt());
+    }
+
+    /**
+     * Waits until all appended records are written to the file.
+     */
+    public void flush() {
+        try {
+            executor.submit(this::flushWriter).get();
+        } catch (RejectedExecutionException e) {
+            log.debug("Archive {} is closed", file);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Cannot write archive {}: {}", file, e.getCause().toString());
+        }
+    }
+
+    @SuppressWarnings("MagicNumber")
+    public List<IbArchivedOrder> findOrders(Predicate<IbArchivedOrder> condition) {
+        List<IbArchivedOrder> result = new ArrayList<>();
+        scan(ORDER, fields -> {
+            IbArchivedOrder order = new IbArchivedOrder(Integer.parseInt(fields[1]),
+                                                        Integer.parseInt(fields[2]),
+                                                        fields[3],
+                                                        Integer.parseInt(fields[4]),
+                                                        fields[5],
+                                                        fields[6],
+                                                        fields[7],
+                                                        fields[8],
+                                                        Double.parseDouble(fields[9]),
+                                                        Double.parseDouble(fields[10]),
+                                                        IbOrder.Stage.valueOf(fields[11]),
+                                                        decimal(fields[12]),
+                                                        decimal(fields[13]),
+                                                        Long.parseLong(fields[14]));
+            if (condition.test(order)) {
+                result.add(order);
+            }
+        });
+        return result;
+    }
+
+    @SuppressWarnings("MagicNumber")
+    public List<IbArchivedExecution> findExecutions(Predicate<IbArchivedExecution> condition) {
+        List<IbArchivedExecution> result = new ArrayList<>();
+        scan(EXECUTION, fields -> {
+            IbArchivedExecution execution = new IbArchivedExecution(fields[1],
+                                                                    Integer.parseInt(fields[2]),
+                                                                    fields[3],
+                                                                    Integer.parseInt(fields[4]),
+                                                                    fields[5],
+                                                                    time(fields[6]),
+                                                                    fields[7],
+                                                                    decimal(fields[8]),
+                                                                    decimal(fields[9]),
+                                                                    decimal(fields[10]),
+                                                                    fields[11],
+                                                                    decimal(fields[12]),
+                                                                    Long.parseLong(fields[13]));
+            if (condition.test(execution)) {
+                result.add(execution);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public void close() {
+        try {
+            executor.execute(this::closeWriter);
+        } catch (RejectedExecutionException e) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_S, TimeUnit.SECONDS)) {
+                log.error("Archive {} isn't closed in {} seconds", file, CLOSE_TIMEOUT_S);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Object... fields) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                line.append(SEPARATOR);
+            }
+            escape(line, fields[i]);
+        }
+        line.append('\n');
+
+        final String record = line.toString();
+        try {
+            executor.execute(() -> writeLine(record));
+        } catch (RejectedExecutionException e) {
+            log.error("Archive {} is closed, record is lost: {}", file, record);
+        }
+    }
+
+    private void writeLine(String record) {
+        try {
+            if (writer == null) {
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                                                 StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writer.write(record);
+        } catch (IOException e) {
+            log.error("Cannot write archive {}, record is lost: {}", file, e.getMessage());
+        }
+        if (executor.getQueue().isEmpty()) {
+            flushWriter();
+        }
+    }
+
+    private void flushWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            log.error("Cannot write archive {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.error("Cannot close archive {}: {}", file, e.getMessage());
+        }
+        writer = null;
+    }
+
+    private void scan(String type, RecordParser parser) {
+        flush();
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.startsWith(type + SEPARATOR)) {
+                    continue;
+                }
+                try {
+                    parser.parse(split(line));
+                } catch (RuntimeException e) {
+                    log.warn("Skipping malformed archive record '{}': {}", line, e.toString());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Cannot read archive %s", file), e);
+        }
+    }
+
+    // Null is written as an empty field, backslash, tab and line breaks are escaped
+    private static void escape(StringBuilder line, Object field) {
+        if (field == null) {
+            return;
+        }
+        String value = field instanceof BigDecimal ? ((BigDecimal) field).toPlainString() : field.toString();
+        if (value.isEmpty()) {
+            line.append("\\e");
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                default:
+                    line.append(c);
+            }
+        }
+    }
+
+    private static String[] split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean empty = false;
+        int i = 0;
+        while (i <= line.length()) {
+            char c = i < line.length() ? line.charAt(i) : SEPARATOR;
+            i++;
+            if (c == SEPARATOR) {
+                fields.add(empty ? "" : field.length() > 0 ? field.toString() : null);
+                field.setLength(0);
+                empty = false;
+            } else if (c == '\\' && i < line.length()) {
+                // Escape takes two characters
+                char next = line.charAt(i);
+                i++;
+                switch (next) {
+                    case 't':
+                        field.append('\t');
+                        break;
+                    case 'n':
+                        field.append('\n');
+                        break;
+                    case 'r':
+                        field.append('\r');
+                        break;
+                    case 'e':
+                        empty = true;
+                        break;
+                    default:
+                        field.append(next);
+                }
+            } else {
+                field.append(c);
+            }
+        }
+        return fields.toArray(new String[0]);
+    }
+
+    private static BigDecimal decimal(String field) {
+        return field != null ? new BigDecimal(field) : null;
+    }
+
+    private static LocalDateTime time(String field) {
+        return field != null ? LocalDateTime.parse(field) : null;
+    }
+
+    @FunctionalInterface
+    private interface RecordParser {
+        void parse(String[] fields);
+    }
+}
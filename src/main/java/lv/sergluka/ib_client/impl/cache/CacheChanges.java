@@ -0,0 +1,53 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import lv.sergluka.ib_client.CacheRepository;
+import lv.sergluka.ib_client.types.IbCacheChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+/**
+ * Stream of changes of a cache section.
+ *
+ * <p>Changes come from the reader thread, from the thread, which clears the cache, and from threads, which dispose
+ * subscriptions, so they are emitted through the serialized sink of the processor. Every subscriber has its own
+ * buffer of {@value CacheRepository#CHANGES_BUFFER_SIZE} changes; a subscriber, which falls further behind, gets an
+ * overflow error instead of growing the heap.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+class CacheChanges<K, V> {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheChanges.class);
+
+    private final String name;
+    private final DirectProcessor<IbCacheChange<K, V>> processor = DirectProcessor.create();
+    private final FluxSink<IbCacheChange<K, V>> sink = processor.sink();
+
+    CacheChanges(String name) {
+        this.name = name;
+    }
+
+    boolean hasSubscribers() {
+        return processor.hasDownstreams();
+    }
+
+    // Changes are created only if somebody listens to them
+    void publish(IbCacheChange.Type type, K key, V value, long version) {
+        if (processor.hasDownstreams()) {
+            sink.next(new IbCacheChange<>(type, key, value, version));
+        }
+    }
+
+    Flux<IbCacheChange<K, V>> flux() {
+        return processor.onBackpressureBuffer(
+                CacheRepository.CHANGES_BUFFER_SIZE,
+                change -> log.warn("Subscriber of {} changes is too slow, buffer of {} changes is full",
+                                   name, CacheRepository.CHANGES_BUFFER_SIZE),
+                BufferOverflowStrategy.ERROR);
+    }
+}
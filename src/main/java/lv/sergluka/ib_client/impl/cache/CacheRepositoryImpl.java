@@ -1,35 +1,103 @@
 package lv.sergluka.ib_client.impl.cache;
 
 import lv.sergluka.ib_client.CacheRepository;
+import lv.sergluka.ib_client.impl.bars.BarAggregator;
+import lv.sergluka.ib_client.params.IbClientOptions;
 import lv.sergluka.ib_client.types.*;
-import com.google.common.collect.ImmutableMap;
 import com.ib.client.Contract;
+import com.ib.client.ContractDetails;
+import com.ib.client.PriceIncrement;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class CacheRepositoryImpl implements CacheRepository {
 
     private static final Logger log = LoggerFactory.getLogger(CacheRepositoryImpl.class);
 
     private final ConcurrentHashMap<Integer, IbOrder> orders = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<PositionKey, IbPosition> positions = new ConcurrentHashMap<>();
+    private final OrderIndex<IbOrder.Stage> ordersByStage = new OrderIndex<>(IbOrder::getStage);
+    private final OrderIndex<String> ordersByAccount = new OrderIndex<>(order -> order.getOrder().account());
+    private final OrderIndex<Integer> ordersByConid = new OrderIndex<>(order -> order.getContract().conid());
+    private final OrderIndex<String> ordersByRef = new OrderIndex<>(order -> order.getOrder().orderRef());
+    private final ConcurrentHashMap<IbPositionKey, IbPosition> positions = new ConcurrentHashMap<>();
+    private final PositionKeys positionKeys = new PositionKeys();
+    private final PositionIndex<String> positionsByAccount = new PositionIndex<>(IbPosition::getAccount);
+    private final PositionIndex<Integer> positionsByConid =
+            new PositionIndex<>(position -> position.getContract().conid());
+    private final PositionIndex<String> positionsByUnderlying =
+            new PositionIndex<>(position -> position.getContract().symbol());
     private final ConcurrentHashMap<Integer, IbTickImpl> ticks = new ConcurrentHashMap<>();
+    private final IbTickColumns tickColumns = new IbTickColumns();
     private final ConcurrentHashMap<Integer, IbPortfolio> portfolioContracts = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<Integer, IbAccountsSummary> accountSummaries = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, IbExecutionReport> execReports = new ConcurrentHashMap<>();
+    private final PriceGrids priceGrids = new PriceGrids();
+
+    private final DepthBindings depthBindings = new DepthBindings();
+    private final DirectBookStore bookStore;
+    private final int statusHistory;
+    private final CacheRetention retention;
+    private final ExecutionJoin executionJoin;
+
+    private final AtomicLongArray versions = new AtomicLongArray(CacheSnapshot.Section.values().length);
+    private final Set<Integer> restoredOrders = ConcurrentHashMap.newKeySet();
+    private final Set<IbPositionKey> restoredPositions = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> restoredPortfolio = ConcurrentHashMap.newKeySet();
+    private volatile IbTickColumns restoredTicks;
+    private final CacheChanges<Integer, IbOrder> orderChanges = new CacheChanges<>("order");
+    private final CacheChanges<IbPositionKey, IbPosition> positionChanges = new CacheChanges<>("position");
+    private final CacheChanges<Integer, IbPortfolio> portfolioChanges = new CacheChanges<>("portfolio");
+    private final CacheChanges<String, IbExecutionReport> executionChanges = new CacheChanges<>("execution");
+    private final CacheChanges<Integer, IbOrderBook> orderBookChanges = new CacheChanges<>("order book");
+    // Filled by the reader thread, but is cleared by the thread, which clears the cache
+    private final Set<DepthBinding> changedBooks = ConcurrentHashMap.newKeySet();
+    private final TickerTable<BarAggregator> barAggregators = new TickerTable<>();
+    private final TickerTable<IbBarWindow> barWindows = new TickerTable<>();
+
+    public CacheRepositoryImpl() {
+        this(null, IbOrder.DEFAULT_STATUS_HISTORY, null, IbClientOptions.DEFAULT_EXECUTION_JOIN_TIMEOUT);
+    }
+
+    /**
+     * Creates cache.
+     *
+     * @param bookStore     Direct memory for order books, null to keep them on the heap
+     * @param statusHistory Number of the latest statuses kept by every order
+     * @param retention     Retention of terminal orders and executions, null to keep them until {@link #clear()}
+     * @param joinTimeout   Max time to wait for a commission report of an execution and vice versa
+     */
+    public CacheRepositoryImpl(DirectBookStore bookStore, int statusHistory, CacheRetention retention,
+                               Duration joinTimeout) {
+        this.bookStore = bookStore;
+        this.statusHistory = statusHistory;
+        this.retention = retention;
+        this.executionJoin = new ExecutionJoin(joinTimeout, System.currentTimeMillis());
+    }
 
-    private final ConcurrentHashMap<Integer, Map<IbMarketDepth.Key, IbMarketDepth>> orderBooks =
-            new ConcurrentHashMap<>();
+    public int getStatusHistory() {
+        return statusHistory;
+    }
 
     public boolean addOrder(IbOrder order) {
 
         final AtomicReference<Boolean> result = new AtomicReference<>(false);
         orders.compute(order.getOrderId(), (key, value) -> {
+            if (value != null && restoredOrders.contains(key)) {
+                // TWS may reuse ID of an order of a previous session, so a restored order isn't merged
+                log.debug("Restored order {} is replaced", order.getOrderId());
+                result.set(false);
+                return order;
+            }
             if (value != null) {
                 log.debug("Order {} already has been added", order.getOrderId());
                 result.set(false);
@@ -41,12 +109,49 @@ public class CacheRepositoryImpl implements CacheRepository {
             return order;
         });
 
+        ordersByStage.update(order);
+        ordersByAccount.update(order);
+        ordersByConid.update(order);
+        ordersByRef.update(order);
+        trackStage(order);
+        restoredOrders.remove(order.getOrderId());
+        orderChanges.publish(IbCacheChange.Type.UPDATED, order.getOrderId(), order,
+                touch(CacheSnapshot.Section.ORDERS));
         return result.get();
     }
 
     @Override
     public Map<Integer, IbOrder> getOrders() {
-        return ImmutableMap.copyOf(orders);
+        return Collections.unmodifiableMap(orders);
+    }
+
+    @Override
+    public IbOrder getOrder(int orderId) {
+        return orders.get(orderId);
+    }
+
+    @Override
+    public Collection<IbOrder> getOrders(IbOrder.Stage stage) {
+        Objects.requireNonNull(stage, "'stage' parameter is null");
+        return ordersByStage.get(stage);
+    }
+
+    @Override
+    public Collection<IbOrder> getOrdersByAccount(String account) {
+        Objects.requireNonNull(account, "'account' parameter is null");
+        return ordersByAccount.get(account);
+    }
+
+    @Override
+    public Collection<IbOrder> getOrdersByContract(Contract contract) {
+        Objects.requireNonNull(contract, "'contract' parameter is null");
+        return ordersByConid.get(contract.conid());
+    }
+
+    @Override
+    public Collection<IbOrder> getOrdersByRef(String orderRef) {
+        Objects.requireNonNull(orderRef, "'orderRef' parameter is null");
+        return ordersByRef.get(orderRef);
     }
 
     public boolean addNewStatus(IbOrderStatus status) {
@@ -56,15 +161,177 @@ public class CacheRepositoryImpl implements CacheRepository {
             return false;
         }
 
-        return order.addStatus(status);
+        if (!order.addStatus(status)) {
+            return false;
+        }
+        ordersByStage.update(order);
+        trackStage(order);
+        orderChanges.publish(IbCacheChange.Type.UPDATED, order.getOrderId(), order,
+                touch(CacheSnapshot.Section.ORDERS));
+        return true;
     }
 
-    public void updatePosition(IbPosition position) {
-        positions.put(new PositionKey(position.getAccount(), position.getContract().conid()), position);
+    /**
+     * Evicts terminal orders and matched executions, which are out of the retention policy, to the archive.
+     *
+     * @param nowMillis Current time, milliseconds since epoch
+     */
+    public void evictExpired(long nowMillis) {
+        executionJoin.expire(nowMillis, report -> storeExecutionReport(report, nowMillis));
+        if (retention == null) {
+            return;
+        }
+
+        CacheArchive archive = retention.getArchive();
+        retention.expireOrders(nowMillis, orderId -> {
+            IbOrder order = removeOrder(orderId);
+            if (order != null && archive != null) {
+                archive.append(IbArchivedOrder.of(order, nowMillis));
+            }
+        });
+        retention.expireExecutions(nowMillis, execId -> {
+            IbExecutionReport report = execReports.remove(execId);
+            long version = touch(CacheSnapshot.Section.EXECUTIONS);
+            if (report == null) {
+                return;
+            }
+            executionChanges.publish(IbCacheChange.Type.REMOVED, execId, report, version);
+            if (archive != null) {
+                archive.append(IbArchivedExecution.of(report, nowMillis));
+            }
+        });
+    }
+
+    @Override
+    public List<IbArchivedOrder> findArchivedOrders(Predicate<IbArchivedOrder> condition) {
+        Objects.requireNonNull(condition, "'condition' parameter is null");
+        if (retention == null || retention.getArchive() == null) {
+            return Collections.emptyList();
+        }
+        return retention.getArchive().findOrders(condition);
+    }
+
+    @Override
+    public List<IbArchivedExecution> findArchivedExecutions(Predicate<IbArchivedExecution> condition) {
+        Objects.requireNonNull(condition, "'condition' parameter is null");
+        if (retention == null || retention.getArchive() == null) {
+            return Collections.emptyList();
+        }
+        return retention.getArchive().findExecutions(condition);
+    }
+
+    /**
+     * Stores the position.
+     *
+     * @param position Position from TWS
+     * @return false if neither quantity nor average cost has changed
+     */
+    public boolean updatePosition(IbPosition position) {
+        IbPositionKey key = positionKeys.intern(position.getAccount(), position.getContract().conid());
+        IbPosition previous = positions.put(key, position);
+        positionsByAccount.put(key, position);
+        positionsByConid.put(key, position);
+        positionsByUnderlying.put(key, position);
+        restoredPositions.remove(key);
+
+        if (previous != null && equalDecimals(previous.getPos(), position.getPos())
+            && equalDecimals(previous.getAvgCost(), position.getAvgCost())) {
+            return false;
+        }
+        positionChanges.publish(IbCacheChange.Type.UPDATED, key, position, touch(CacheSnapshot.Section.POSITIONS));
+        return true;
     }
 
     public void updatePortfolio(IbPortfolio portfolio) {
-        portfolioContracts.put(portfolio.getContract().conid(), portfolio);
+        final int conid = portfolio.getContract().conid();
+        portfolioContracts.put(conid, portfolio);
+        restoredPortfolio.remove(conid);
+        portfolioChanges.publish(IbCacheChange.Type.UPDATED, conid, portfolio,
+                touch(CacheSnapshot.Section.PORTFOLIO));
+    }
+
+    /**
+     * Drops restored working orders, which haven't been confirmed by TWS in the list of open orders.
+     */
+    public void reconcileOrders() {
+        for (Integer orderId : restoredOrders) {
+            IbOrder order = orders.get(orderId);
+            if (order != null && order.getStage() == IbOrder.Stage.WORKING) {
+                log.info("Restored order {} isn't open anymore, dropping it", orderId);
+                removeOrder(orderId);
+            }
+        }
+        restoredOrders.clear();
+    }
+
+    /**
+     * Drops restored positions, which haven't been confirmed by TWS.
+     */
+    public void reconcilePositions() {
+        for (IbPositionKey key : restoredPositions) {
+            IbPosition position = positions.remove(key);
+            long version = touch(CacheSnapshot.Section.POSITIONS);
+            if (position != null) {
+                positionKeys.remove(key);
+                positionsByAccount.remove(key, position);
+                positionsByConid.remove(key, position);
+                positionsByUnderlying.remove(key, position);
+                positionChanges.publish(IbCacheChange.Type.REMOVED, key, position, version);
+            }
+        }
+        restoredPositions.clear();
+    }
+
+    /**
+     * Drops restored portfolio entries of the account, which haven't been confirmed by TWS.
+     *
+     * @param account Account, which portfolio is downloaded
+     */
+    public void reconcilePortfolio(String account) {
+        for (Integer conid : restoredPortfolio) {
+            IbPortfolio portfolio = portfolioContracts.get(conid);
+            if (portfolio == null || Objects.equals(portfolio.getAccount(), account)) {
+                portfolioContracts.remove(conid);
+                restoredPortfolio.remove(conid);
+                long version = touch(CacheSnapshot.Section.PORTFOLIO);
+                if (portfolio != null) {
+                    portfolioChanges.publish(IbCacheChange.Type.REMOVED, conid, portfolio, version);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns account of a restored portfolio entry, which hasn't been confirmed by TWS yet. Restored entries, which
+     * have been removed meanwhile, are forgotten.
+     *
+     * @return account or null if the portfolio is reconciled
+     */
+    public String getRestoredPortfolioAccount() {
+        for (Integer conid : restoredPortfolio) {
+            IbPortfolio portfolio = portfolioContracts.get(conid);
+            if (portfolio != null) {
+                return portfolio.getAccount();
+            }
+            restoredPortfolio.remove(conid);
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isReconciled() {
+        return restoredOrders.isEmpty() && restoredPositions.isEmpty() && restoredPortfolio.isEmpty();
+    }
+
+    @Override
+    public IbCrossSection getRestoredTicks() {
+        IbTickColumns columns = restoredTicks;
+        if (columns == null) {
+            return null;
+        }
+        IbCrossSection result = new IbCrossSection();
+        columns.copyTo(result);
+        return result;
     }
 
     public IbTick updateTick(int tickerId, Consumer<IbTickImpl> consumer) {
@@ -74,6 +341,65 @@ public class CacheRepositoryImpl implements CacheRepository {
         return tick;
     }
 
+    public IbOptionComputation updateOptionComputation(int tickerId,
+                                                       IbOptionComputation.Type type,
+                                                       double impliedVolatility,
+                                                       double delta,
+                                                       double optionPrice,
+                                                       double presentValueDividend,
+                                                       double gamma,
+                                                       double vega,
+                                                       double theta,
+                                                       double underlyingPrice) {
+        IbTickImpl tick = ticks.get(tickerId);
+        if (tick == null) {
+            tick = ticks.computeIfAbsent(tickerId, (key) -> new IbTickImpl());
+        }
+        return tick.setOptionComputation(type, impliedVolatility, delta, optionPrice, presentValueDividend,
+                                         gamma, vega, theta, underlyingPrice);
+    }
+
+    public void addBarAggregator(int tickerId, BarAggregator aggregator) {
+        barAggregators.put(tickerId, aggregator);
+    }
+
+    public void removeBarAggregator(int tickerId) {
+        barAggregators.remove(tickerId);
+    }
+
+    public void addBarWindow(int tickerId, IbBarWindow window) {
+        barWindows.put(tickerId, window);
+    }
+
+    public void removeBarWindow(int tickerId) {
+        barWindows.remove(tickerId);
+    }
+
+    public IbBarWindow getBarWindow(int tickerId) {
+        return barWindows.get(tickerId);
+    }
+
+    public void updateLastPrice(int tickerId, double price) {
+        BarAggregator aggregator = barAggregators.get(tickerId);
+        if (aggregator != null) {
+            aggregator.onLastPrice(price);
+        }
+    }
+
+    public void updateLastSize(int tickerId, long size) {
+        BarAggregator aggregator = barAggregators.get(tickerId);
+        if (aggregator != null) {
+            aggregator.onLastSize(System.currentTimeMillis(), size);
+        }
+    }
+
+    public void addTrade(int tickerId, long timeMs, double price, long size) {
+        BarAggregator aggregator = barAggregators.get(tickerId);
+        if (aggregator != null) {
+            aggregator.onTrade(timeMs, price, size);
+        }
+    }
+
     public void updateAccountsSummary(int id, String account, String tag, String value, String currency) {
         IbAccountsSummary accountsSummary = accountSummaries.computeIfAbsent(id, (key) -> new IbAccountsSummary());
         try {
@@ -88,13 +414,14 @@ public class CacheRepositoryImpl implements CacheRepository {
     }
 
     @Override
-    public Map<IbMarketDepth.Key, IbMarketDepth> getOrderBook(Contract contract) {
+    public IbOrderBook getOrderBook(Contract contract) {
         Objects.requireNonNull(contract, "'contract' parameter is null");
         if (contract.conid() == 0) {
             throw new IllegalArgumentException("contract ID is missing");
         }
 
-        return orderBooks.get(contract.conid());
+        DepthBinding binding = depthBindings.getByConid(contract.conid());
+        return binding != null ? binding.getBook() : null;
     }
 
     @Override
@@ -102,11 +429,103 @@ public class CacheRepositoryImpl implements CacheRepository {
         return ticks.get(tickerId);
     }
 
+    @Override
+    public IbTickColumns getTickColumns() {
+        return tickColumns;
+    }
+
+    public void addMarketRule(int marketRuleId, List<PriceIncrement> increments) {
+        if (!increments.isEmpty()) {
+            priceGrids.addMarketRule(marketRuleId, IbPriceGrid.of(increments));
+        }
+    }
+
+    /**
+     * Remembers the minimal tick and the market rule of the contract. The rule is taken for the exchange of the
+     * contract, for the primary exchange if the contract is routed by SMART, or the first one.
+     *
+     * @param details Contract details
+     */
+    public void updateContractDetails(ContractDetails details) {
+        final int conid = details.conid();
+        if (details.minTick() > 0 && details.minTick() != Double.MAX_VALUE) {
+            priceGrids.setMinTick(conid, IbPriceGrid.ofTick(details.minTick()));
+        }
+
+        if (details.marketRuleIds() == null || details.marketRuleIds().isEmpty()) {
+            return;
+        }
+        String[] ruleIds = details.marketRuleIds().split(",");
+        List<String> exchanges = details.validExchanges() != null
+                                 ? Arrays.asList(details.validExchanges().split(",")) : Collections.emptyList();
+
+        int index = exchanges.indexOf(details.contract().exchange());
+        if (index < 0 || "SMART".equals(details.contract().exchange())) {
+            index = Math.max(exchanges.indexOf(details.contract().primaryExch()), 0);
+        }
+        try {
+            priceGrids.setMarketRule(conid, Integer.parseInt(ruleIds[Math.min(index, ruleIds.length - 1)].trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid market rules of conid {}: {}", conid, details.marketRuleIds());
+        }
+    }
+
+    /**
+     * Remembers the minimal tick, which TWS sends for a market data subscription.
+     *
+     * @param tickerId Subscription ID
+     * @param minTick  Minimal tick
+     */
+    public void updateMinTick(int tickerId, double minTick) {
+        final int conid = tickColumns.getConid(tickerId);
+        if (conid != 0 && minTick > 0 && minTick != Double.MAX_VALUE) {
+            priceGrids.setMinTick(conid, IbPriceGrid.ofTick(minTick));
+        }
+    }
+
+    @Override
+    public IbPriceGrid getMarketRule(int marketRuleId) {
+        return priceGrids.getMarketRule(marketRuleId);
+    }
+
+    @Override
+    public IbPriceGrid getPriceGrid(int conid) {
+        return priceGrids.get(conid);
+    }
+
+    @Override
+    public double roundToTick(int conid, double price, IbPriceGrid.Direction direction) {
+        IbPriceGrid grid = getPriceGrid(conid);
+        if (grid == null) {
+            throw new IllegalArgumentException(String.format("Neither market rule nor min tick of conid %d is known",
+                                                             conid));
+        }
+        return grid.round(price, direction);
+    }
+
     @Override
     public Collection<IbPosition> getPositions() {
         return Collections.unmodifiableCollection(positions.values());
     }
 
+    @Override
+    public Collection<IbPosition> getPositionsByAccount(String account) {
+        Objects.requireNonNull(account, "'account' parameter is null");
+        return positionsByAccount.get(account);
+    }
+
+    @Override
+    public Collection<IbPosition> getPositionsByContract(Contract contract) {
+        Objects.requireNonNull(contract, "'contract' parameter is null");
+        return positionsByConid.get(contract.conid());
+    }
+
+    @Override
+    public Collection<IbPosition> getPositionsByUnderlying(String symbol) {
+        Objects.requireNonNull(symbol, "'symbol' parameter is null");
+        return positionsByUnderlying.get(symbol);
+    }
+
     @Override
     public Collection<IbPortfolio> getPortfolio() {
         return Collections.unmodifiableCollection(portfolioContracts.values());
@@ -119,7 +538,8 @@ public class CacheRepositoryImpl implements CacheRepository {
         if (contract.conid() == 0) {
             throw new IllegalArgumentException("Contract has a id 0");
         }
-        return positions.get(new PositionKey(account, contract.conid()));
+        IbPositionKey key = positionKeys.get(account, contract.conid());
+        return key != null ? positions.get(key) : null;
     }
 
     @Override
@@ -131,61 +551,284 @@ public class CacheRepositoryImpl implements CacheRepository {
         return portfolioContracts.get(contract.conid());
     }
 
-    public void addMarketDepth(Contract contract, IbMarketDepth marketDepth, IbMarketDepth.Operation operation) {
-
-        orderBooks.compute(contract.conid(), (key, value) -> {
-            if (value == null) {
-                value = new HashMap<>();
+    /**
+     * Creates order book of a market depth subscription and binds it with the ticker ID.
+     *
+     * @param tickerId     Subscription ID
+     * @param contract     IB contract
+     * @param numRows      Requested depth of the book
+     * @param isSmartDepth Whether the book is aggregated across exchanges
+     * @param sink         Sink for every market depth update, nullable
+     * @param updateSink   Sink for notifications per burst of updates, nullable
+     * @return binding to use for market depth updates of the ticker
+     * @throws IllegalArgumentException if books are kept in direct memory, which is too small for the number of rows
+     */
+    public DepthBinding bindOrderBook(int tickerId, Contract contract, int numRows, boolean isSmartDepth,
+                                      Consumer<IbMarketDepth> sink, Consumer<IbOrderBookUpdate> updateSink) {
+        IbOrderBook book;
+        if (bookStore != null) {
+            if (numRows > bookStore.getCapacity()) {
+                throw new IllegalArgumentException(String.format(
+                        "Order book is limited by %d rows, requested %d", bookStore.getCapacity(), numRows));
             }
+            book = bookStore.create(contract, isSmartDepth);
+        } else {
+            book = new IbOrderBook(contract, numRows, isSmartDepth);
+        }
+        DepthBinding binding = new DepthBinding(tickerId, contract, book, sink, updateSink);
 
-            switch (operation) {
-                case INSERT:
-                    log.trace("Market depth is added: {}", marketDepth);
-                    value.put(marketDepth.key(), marketDepth);
-                    break;
-                case UPDATE:
-                    log.trace("Market depth is updated: {}", marketDepth);
-                    value.put(marketDepth.key(), marketDepth);
-                    break;
-                case REMOVE:
-                    log.trace("Market depth is removed: {}", marketDepth);
-                    value.remove(marketDepth.key());
-                    break;
-                default:
-                    throw new IllegalStateException("Unexpected value: " + operation);
+        DepthBinding prev = depthBindings.put(binding);
+        if (prev != null) {
+            log.warn("Order book binding {} is replaced by {}", prev, binding);
+            releaseBook(prev.getBook());
+        }
+        return binding;
+    }
+
+    public void unbindOrderBook(int tickerId) {
+        DepthBinding binding = depthBindings.remove(tickerId);
+        if (binding == null) {
+            return;
+        }
+        orderBookChanges.publish(IbCacheChange.Type.REMOVED, tickerId, binding.getBook(),
+                binding.getBook().getVersion());
+        releaseBook(binding.getBook());
+    }
+
+    private void releaseBook(IbOrderBook book) {
+        if (bookStore != null) {
+            bookStore.release(book);
+        }
+    }
+
+    /**
+     * Marks the book as changed. Changes are published once per batch of TWS messages by
+     * {@link #publishOrderBookChanges()}, and only if somebody listens to them.
+     *
+     * @param binding Binding of the updated book
+     */
+    public void onOrderBookUpdated(DepthBinding binding) {
+        if (orderBookChanges.hasSubscribers()) {
+            changedBooks.add(binding);
+        }
+    }
+
+    public void publishOrderBookChanges() {
+        if (changedBooks.isEmpty()) {
+            return;
+        }
+        Iterator<DepthBinding> iterator = changedBooks.iterator();
+        while (iterator.hasNext()) {
+            DepthBinding binding = iterator.next();
+            iterator.remove();
+            if (depthBindings.get(binding.getTickerId()) == binding) {
+                orderBookChanges.publish(IbCacheChange.Type.UPDATED, binding.getTickerId(), binding.getBook(),
+                        binding.getBook().getVersion());
             }
+        }
+    }
 
-            return value;
-        });
+    public DepthBinding getDepthBinding(int tickerId) {
+        return depthBindings.get(tickerId);
     }
 
-    public void addExecutionReport(IbContract contract, IbExecution execution) {
-        IbExecutionReport report = execReports.put(execution.getExecId(), new IbExecutionReport(contract, execution));
+    /**
+     * Adds execution, which waits for its commission report, unless the report has been received already.
+     *
+     * @param contract  Contract of the execution
+     * @param execution Execution details
+     * @return report matched with its commission or empty
+     */
+    public Optional<IbExecutionReport> addExecutionReport(IbContract contract, IbExecution execution) {
+        if (execReports.containsKey(execution.getExecId())) {
+            log.debug("Execution info for '{}' is repeated", execution.getExecId());
+            executionJoin.onDuplicate();
+            return Optional.empty();
+        }
+
+        final long now = System.currentTimeMillis();
+        IbExecutionReport report = executionJoin.onExecution(new IbExecutionReport(contract, execution), now);
         if (report != null) {
-            log.warn("Execution info for '{}' is overwritten", execution.getExecId());
+            storeExecutionReport(report, now);
         }
+        return Optional.ofNullable(report);
     }
 
+    /**
+     * Adds commission report, which waits for its execution, unless the execution has been received already.
+     *
+     * @param report Commission report
+     * @return execution report matched with the commission or empty
+     */
     public Optional<IbExecutionReport> updateExecutionReport(IbCommissionReport report) {
-        IbExecutionReport execReport = execReports.get(report.getExecId());
-        if (execReport != null) {
-            execReport.setCommission(report);
-        } else {
-            log.warn("Commission report for '{}' without execution report", report.getExecId());
+        final long now = System.currentTimeMillis();
+
+        // Execution has expired without commission
+        IbExecutionReport stored = execReports.get(report.getExecId());
+        if (stored != null) {
+            if (stored.getCommission() != null) {
+                log.debug("Commission report for '{}' is repeated", report.getExecId());
+                executionJoin.onDuplicate();
+                return Optional.empty();
+            }
+            stored.setCommission(report);
+            executionJoin.onLateCommission();
+            executionChanges.publish(IbCacheChange.Type.UPDATED, report.getExecId(), stored,
+                    touch(CacheSnapshot.Section.EXECUTIONS));
+            if (retention != null) {
+                retention.onExecutionDone(report.getExecId(), now);
+            }
+            return Optional.of(stored);
         }
 
+        IbExecutionReport execReport = executionJoin.onCommission(report, now);
+        if (execReport != null) {
+            storeExecutionReport(execReport, now);
+        }
         return Optional.ofNullable(execReport);
     }
 
+    Collection<IbExecutionReport> getExecutionReports() {
+        return Collections.unmodifiableCollection(execReports.values());
+    }
+
+    @Override
+    public IbExecutionJoinStats getExecutionJoinStats() {
+        return executionJoin.getStats();
+    }
+
+    @Override
+    public Flux<IbCacheChange<Integer, IbOrder>> orderChanges() {
+        return orderChanges.flux();
+    }
+
+    @Override
+    public Flux<IbCacheChange<IbPositionKey, IbPosition>> positionChanges() {
+        return positionChanges.flux();
+    }
+
+    @Override
+    public Flux<IbCacheChange<Integer, IbPortfolio>> portfolioChanges() {
+        return portfolioChanges.flux();
+    }
+
+    @Override
+    public Flux<IbCacheChange<String, IbExecutionReport>> executionChanges() {
+        return executionChanges.flux();
+    }
+
+    @Override
+    public Flux<IbCacheChange<Integer, IbOrderBook>> orderBookChanges() {
+        return orderBookChanges.flux();
+    }
+
     @Override
     public void clear() {
         orders.clear();
+        ordersByStage.clear();
+        ordersByAccount.clear();
+        ordersByConid.clear();
+        ordersByRef.clear();
         positions.clear();
+        positionKeys.clear();
+        positionsByAccount.clear();
+        positionsByConid.clear();
+        positionsByUnderlying.clear();
         ticks.clear();
         portfolioContracts.clear();
-        orderBooks.clear();
+        // Bindings of requests, which were disposed without connection, would never be removed otherwise
+        depthBindings.values().forEach(binding -> releaseBook(binding.getBook()));
+        depthBindings.clear();
+        for (IbBarWindow window : barWindows.values()) {
+            window.clear();
+        }
         execReports.clear();
+        executionJoin.clear();
+        if (retention != null) {
+            retention.clear();
+        }
+        restoredOrders.clear();
+        restoredPositions.clear();
+        restoredPortfolio.clear();
+        restoredTicks = null;
+        for (int i = 0; i < versions.length(); i++) {
+            versions.incrementAndGet(i);
+        }
+        changedBooks.clear();
+
+        orderChanges.publish(IbCacheChange.Type.CLEARED, null, null, getVersion(CacheSnapshot.Section.ORDERS));
+        positionChanges.publish(IbCacheChange.Type.CLEARED, null, null, getVersion(CacheSnapshot.Section.POSITIONS));
+        portfolioChanges.publish(IbCacheChange.Type.CLEARED, null, null, getVersion(CacheSnapshot.Section.PORTFOLIO));
+        executionChanges.publish(IbCacheChange.Type.CLEARED, null, null,
+                getVersion(CacheSnapshot.Section.EXECUTIONS));
+        orderBookChanges.publish(IbCacheChange.Type.CLEARED, null, null, 0);
 
         log.debug("Cache is cleared");
     }
+
+    long getVersion(CacheSnapshot.Section section) {
+        return versions.get(section.ordinal());
+    }
+
+    void restoreOrder(IbOrder order) {
+        addOrder(order);
+        restoredOrders.add(order.getOrderId());
+    }
+
+    void restorePosition(IbPosition position) {
+        updatePosition(position);
+        restoredPositions.add(positionKeys.get(position.getAccount(), position.getContract().conid()));
+    }
+
+    void restorePortfolio(IbPortfolio portfolio) {
+        updatePortfolio(portfolio);
+        restoredPortfolio.add(portfolio.getContract().conid());
+    }
+
+    void restoreExecutionReport(IbExecutionReport report) {
+        storeExecutionReport(report, System.currentTimeMillis());
+    }
+
+    void restoreTicks(IbTickColumns columns) {
+        restoredTicks = columns;
+    }
+
+    private IbOrder removeOrder(int orderId) {
+        IbOrder order = orders.remove(orderId);
+        ordersByStage.remove(orderId);
+        ordersByAccount.remove(orderId);
+        ordersByConid.remove(orderId);
+        ordersByRef.remove(orderId);
+        long version = touch(CacheSnapshot.Section.ORDERS);
+        if (order != null) {
+            orderChanges.publish(IbCacheChange.Type.REMOVED, orderId, order, version);
+        }
+        return order;
+    }
+
+    private static boolean equalDecimals(BigDecimal left, BigDecimal right) {
+        return left == null ? right == null : right != null && left.compareTo(right) == 0;
+    }
+
+    private long touch(CacheSnapshot.Section section) {
+        return versions.incrementAndGet(section.ordinal());
+    }
+
+    // Execution, which has expired without commission, stays out of the retention until the commission arrives
+    private void storeExecutionReport(IbExecutionReport report, long nowMillis) {
+        final String execId = report.getExecution().getExecId();
+        execReports.put(execId, report);
+        executionChanges.publish(IbCacheChange.Type.UPDATED, execId, report,
+                touch(CacheSnapshot.Section.EXECUTIONS));
+        if (retention != null && report.getCommission() != null) {
+            retention.onExecutionDone(execId, nowMillis);
+        }
+    }
+
+    private void trackStage(IbOrder order) {
+        if (retention != null) {
+            retention.onOrderStage(order.getOrderId(), order.getStage() != IbOrder.Stage.WORKING,
+                                   System.currentTimeMillis());
+        }
+    }
 }
@@ -0,0 +1,81 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Retention policy of terminal orders and matched executions in the cache.
+ *
+ * <p>Orders are tracked from the moment they become filled, cancelled or inactive, executions from the moment the
+ * commission report is received or has timed out. Tracked entries are kept in order of arrival, so expiration looks
+ * at the oldest ones only. Working orders are never evicted.
+ */
+public class CacheRetention {
+
+    private final int maxCount;
+    private final long maxAgeMillis;
+    private final CacheArchive archive;
+
+    private final LinkedHashMap<Integer, Long> orders = new LinkedHashMap<>();
+    private final LinkedHashMap<String, Long> executions = new LinkedHashMap<>();
+
+    /**
+     * Creates policy.
+     *
+     * @param maxCount Max number of kept terminal orders and, separately, of matched executions
+     * @param maxAge   Max time to keep them, null to limit the number only
+     * @param archive  Archive for evicted entries, null to drop them
+     */
+    public CacheRetention(int maxCount, Duration maxAge, CacheArchive archive) {
+        if (maxCount < 0) {
+            throw new IllegalArgumentException("Max count should be positive or 0");
+        }
+        this.maxCount = maxCount;
+        this.maxAgeMillis = maxAge != null ? maxAge.toMillis() : Long.MAX_VALUE;
+        this.archive = archive;
+    }
+
+    public CacheArchive getArchive() {
+        return archive;
+    }
+
+    synchronized void onOrderStage(int orderId, boolean terminal, long nowMillis) {
+        if (terminal) {
+            orders.putIfAbsent(orderId, nowMillis);
+        } else {
+            orders.remove(orderId);
+        }
+    }
+
+    synchronized void onExecutionDone(String execId, long nowMillis) {
+        executions.putIfAbsent(execId, nowMillis);
+    }
+
+    synchronized void expireOrders(long nowMillis, Consumer<Integer> evict) {
+        expire(orders, nowMillis, evict);
+    }
+
+    synchronized void expireExecutions(long nowMillis, Consumer<String> evict) {
+        expire(executions, nowMillis, evict);
+    }
+
+    synchronized void clear() {
+        orders.clear();
+        executions.clear();
+    }
+
+    private <K> void expire(LinkedHashMap<K, Long> tracked, long nowMillis, Consumer<K> evict) {
+        Iterator<Map.Entry<K, Long>> iterator = tracked.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Long> oldest = iterator.next();
+            if (tracked.size() <= maxCount && nowMillis - oldest.getValue() < maxAgeMillis) {
+                return;
+            }
+            iterator.remove();
+            evict.accept(oldest.getKey());
+        }
+    }
+}
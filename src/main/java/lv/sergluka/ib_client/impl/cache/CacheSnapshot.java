@@ -0,0 +1,546 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import com.ib.client.CommissionReport;
+import com.ib.client.Contract;
+import com.ib.client.Execution;
+import com.ib.client.Order;
+import lv.sergluka.ib_client.types.IbCommissionReport;
+import lv.sergluka.ib_client.types.IbContract;
+import lv.sergluka.ib_client.types.IbCrossSection;
+import lv.sergluka.ib_client.types.IbExecution;
+import lv.sergluka.ib_client.types.IbExecutionReport;
+import lv.sergluka.ib_client.types.IbOrder;
+import lv.sergluka.ib_client.types.IbOrderStatus;
+import lv.sergluka.ib_client.types.IbPortfolio;
+import lv.sergluka.ib_client.types.IbPosition;
+import lv.sergluka.ib_client.types.IbTickColumns;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static lv.sergluka.ib_client.impl.cache.BinaryCodec.*;
+
+/**
+ * Snapshot of the cache in a local file, which lets to use orders, positions, portfolio, executions and the last
+ * prices right after a restart, before TWS replays them.
+ *
+ * <p>The file consists of a header, sections of the cache and a checksum. It's read once on connection and
+ * written by a background thread periodically. Only sections changed since the last writing are encoded again,
+ * and nothing is written if the cache hasn't changed. A new file is written next to the old one and replaces it
+ * atomically, so a crash doesn't leave a broken snapshot.
+ *
+ * <p>Restored entries are marked in the cache and are dropped, if TWS doesn't confirm them when the replay ends,
+ * see {@link CacheRepositoryImpl#isReconciled()}. Restored orders have no {@link IbOrder#getState() state}, their
+ * stage is defined by the restored statuses.
+ *
+ * <p>TWS replays only the current session, which starts at the local midnight. Executions before it aren't
+ * restored, neither are finished orders of a snapshot written before it.
+ */
+public class CacheSnapshot implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheSnapshot.class);
+
+    private static final int MAGIC = 0x49424353;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int WRITTEN_AT_OFFSET = 8;
+    private static final DateTimeFormatter EXECUTION_TIME = DateTimeFormatter.ofPattern("yyyyMMdd  HH:mm:ss");
+
+    private final Path file;
+    private final byte[][] encoded = new byte[Section.values().length][];
+    private final long[] encodedVersions = new long[Section.values().length];
+    private final IbCrossSection ticks = new IbCrossSection();
+
+    private CacheRepositoryImpl cache;
+    private ScheduledExecutorService executor;
+
+    public CacheSnapshot(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Restores the snapshot into the cache.
+     *
+     * @param target Empty cache
+     * @return false if there is no valid snapshot
+     */
+    public boolean load(CacheRepositoryImpl target) {
+        return load(target, LocalDate.now().atStartOfDay());
+    }
+
+    /**
+     * Restores entries of the current session.
+     *
+     * @param target       Empty cache
+     * @param sessionStart Start of the current session in the local time
+     * @return false if there is no valid snapshot
+     */
+    boolean load(CacheRepositoryImpl target, LocalDateTime sessionStart) {
+        if (!Files.exists(file)) {
+            return false;
+        }
+
+        final long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = readFile(channel);
+            if (buffer == null || buffer.remaining() < HEADER_SIZE
+                || buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != FORMAT_VERSION) {
+                log.warn("Cache snapshot {} is broken, ignoring it", file);
+                return false;
+            }
+
+            long sessionStartMillis = sessionStart.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            Session session = new Session(target, sessionStart, buffer.getLong(WRITTEN_AT_OFFSET) < sessionStartMillis);
+            buffer.position(HEADER_SIZE);
+            while (buffer.hasRemaining()) {
+                Section section = Section.values()[buffer.get()];
+                int length = buffer.getInt();
+                ByteBuffer payload = buffer.slice();
+                payload.limit(length);
+                buffer.position(buffer.position() + length);
+                section.decode(payload, session);
+            }
+        } catch (IOException e) {
+            log.error("Cannot load cache snapshot {}: {}", file, e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            log.error("Cannot decode cache snapshot {}: {}", file, e.toString());
+            target.clear();
+            return false;
+        }
+
+        log.info("Cache is restored from {} in {} us", file, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        return true;
+    }
+
+    /**
+     * Starts periodic writing of the cache.
+     *
+     * @param source   Cache to persist
+     * @param interval Writing interval
+     */
+    public synchronized void start(CacheRepositoryImpl source, Duration interval) {
+        stop();
+        cache = source;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = null;
+            encodedVersions[i] = -1;
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ib-client-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long millis = interval.toMillis();
+        executor.scheduleWithFixedDelay(this::writeSafely, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops periodic writing and writes the latest state of the cache.
+     */
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        executor = null;
+        writeSafely();
+        cache = null;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Writes sections, changed since the last writing.
+     *
+     * @return false if the cache hasn't changed
+     * @throws IOException on writing error
+     */
+    synchronized boolean write() throws IOException {
+        if (cache == null) {
+            return false;
+        }
+
+        boolean changed = false;
+        for (Section section : Section.values()) {
+            long version = section == Section.TICKS
+                           ? cache.getTickColumns().copyTo(ticks) : cache.getVersion(section);
+            if (encoded[section.ordinal()] == null || encodedVersions[section.ordinal()] != version) {
+                encoded[section.ordinal()] = encode(section);
+                encodedVersions[section.ordinal()] = version;
+                changed = true;
+            }
+        }
+        if (!changed) {
+            return false;
+        }
+
+        int size = HEADER_SIZE;
+        for (byte[] bytes : encoded) {
+            size += 1 + Integer.BYTES + bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(System.currentTimeMillis());
+        for (Section section : Section.values()) {
+            byte[] bytes = encoded[section.ordinal()];
+            buffer.put((byte) section.ordinal()).putInt(bytes.length).put(bytes);
+        }
+        writeFile(file, buffer.array());
+        return true;
+    }
+
+    private void writeSafely() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            log.error("Cannot write cache snapshot {}: {}", file, e.toString());
+        }
+    }
+
+    private byte[] encode(Section section) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            section.encode(out, this);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeOrders(DataOutputStream out, CacheRepositoryImpl cache) throws IOException {
+        for (IbOrder order : cache.getOrders().values()) {
+            out.writeBoolean(true);
+            out.writeInt(order.getOrderId());
+            writeContract(out, order.getContract());
+            writeOrder(out, order.getOrder());
+            List<IbOrderStatus> statuses = order.getStatuses();
+            out.writeInt(statuses.size());
+            for (IbOrderStatus status : statuses) {
+                writeStatus(out, status);
+            }
+        }
+        out.writeBoolean(false);
+    }
+
+    private static void readOrders(ByteBuffer in, Session session) {
+        CacheRepositoryImpl cache = session.cache;
+        while (in.get() != 0) {
+            int orderId = in.getInt();
+            Contract contract = readContract(in);
+            Order order = readOrder(in);
+            IbOrder result = new IbOrder(orderId, contract, order, null, cache.getStatusHistory());
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                result.addStatus(readStatus(in));
+            }
+            if (!session.previous || result.getStage() == IbOrder.Stage.WORKING) {
+                cache.restoreOrder(result);
+            }
+        }
+    }
+
+    private static void writePositions(DataOutputStream out, CacheRepositoryImpl cache) throws IOException {
+        for (IbPosition position : cache.getPositions()) {
+            out.writeBoolean(true);
+            writeString(out, position.getAccount());
+            writeContract(out, position.getContract());
+            writeDecimal(out, position.getPos());
+            writeDecimal(out, position.getAvgCost());
+        }
+        out.writeBoolean(false);
+    }
+
+    private static void readPositions(ByteBuffer in, CacheRepositoryImpl cache) {
+        while (in.get() != 0) {
+            cache.restorePosition(new IbPosition(readString(in), readContract(in), readDecimal(in), readDecimal(in)));
+        }
+    }
+
+    private static void writePortfolio(DataOutputStream out, CacheRepositoryImpl cache) throws IOException {
+        for (IbPortfolio portfolio : cache.getPortfolio()) {
+            out.writeBoolean(true);
+            writeContract(out, portfolio.getContract());
+            writeDecimal(out, portfolio.getPosition());
+            writeDecimal(out, portfolio.getMarketPrice());
+            writeDecimal(out, portfolio.getMarketValue());
+            writeDecimal(out, portfolio.getAverageCost());
+            writeDecimal(out, portfolio.getUnrealizedPNL());
+            writeDecimal(out, portfolio.getRealizedPNL());
+            writeString(out, portfolio.getAccount());
+        }
+        out.writeBoolean(false);
+    }
+
+    private static void readPortfolio(ByteBuffer in, CacheRepositoryImpl cache) {
+        while (in.get() != 0) {
+            cache.restorePortfolio(new IbPortfolio(readContract(in), readDecimal(in), readDecimal(in),
+                                                   readDecimal(in), readDecimal(in), readDecimal(in),
+                                                   readDecimal(in), readString(in)));
+        }
+    }
+
+    private static void writeExecutions(DataOutputStream out, CacheRepositoryImpl cache) throws IOException {
+        for (IbExecutionReport report : cache.getExecutionReports()) {
+            out.writeBoolean(true);
+            writeContract(out, report.getContract());
+            writeExecution(out, report.getExecution());
+            IbCommissionReport commission = report.getCommission();
+            out.writeBoolean(commission != null);
+            if (commission != null) {
+                writeString(out, commission.getExecId());
+                writeDouble(out, commission.getCommission());
+                writeString(out, commission.getCurrency());
+                writeDouble(out, commission.getRealizedPnl());
+                writeDouble(out, commission.getYield());
+                out.writeInt(commission.getYieldRedemptionDate());
+            }
+        }
+        out.writeBoolean(false);
+    }
+
+    private static void readExecutions(ByteBuffer in, Session session) {
+        while (in.get() != 0) {
+            IbExecutionReport report = new IbExecutionReport(new IbContract(readContract(in)), readExecution(in));
+            if (in.get() != 0) {
+                CommissionReport commission = new CommissionReport();
+                commission.execId(readString(in));
+                commission.commission(in.getDouble());
+                commission.currency(readString(in));
+                commission.realizedPNL(in.getDouble());
+                commission.yield(in.getDouble());
+                commission.yieldRedemptionDate(in.getInt());
+                report.setCommission(new IbCommissionReport(commission));
+            }
+            LocalDateTime time = report.getExecution().getTime();
+            if (time == null || !time.isBefore(session.start)) {
+                session.cache.restoreExecutionReport(report);
+            }
+        }
+    }
+
+    private static void writeTicks(DataOutputStream out, IbCrossSection ticks) throws IOException {
+        IbTickColumns.Column[] columns = IbTickColumns.Column.values();
+        out.writeInt(ticks.getSize());
+        out.writeInt(columns.length);
+        for (int row = 0; row < ticks.getSize(); row++) {
+            out.writeInt(ticks.getTickerIds()[row]);
+            out.writeInt(ticks.getConids()[row]);
+            for (IbTickColumns.Column column : columns) {
+                out.writeDouble(ticks.getValue(column, row));
+            }
+        }
+    }
+
+    private static void readTicks(ByteBuffer in, CacheRepositoryImpl cache) {
+        IbTickColumns.Column[] columns = IbTickColumns.Column.values();
+        IbTickColumns restored = new IbTickColumns();
+        int size = in.getInt();
+        int count = in.getInt();
+        for (int row = 0; row < size; row++) {
+            int tickerId = in.getInt();
+            restored.add(tickerId, in.getInt());
+            for (int i = 0; i < count; i++) {
+                double value = in.getDouble();
+                if (i < columns.length) {
+                    restored.update(tickerId, columns[i].getTickType().getValue(), value);
+                }
+            }
+        }
+        cache.restoreTicks(restored);
+    }
+
+    private static void writeOrder(DataOutputStream out, Order order) throws IOException {
+        out.writeInt(order.orderId());
+        out.writeInt(order.clientId());
+        out.writeInt(order.permId());
+        out.writeInt(order.parentId());
+        writeString(out, order.getAction());
+        out.writeDouble(order.totalQuantity());
+        writeString(out, order.getOrderType());
+        out.writeDouble(order.lmtPrice());
+        out.writeDouble(order.auxPrice());
+        writeString(out, order.getTif());
+        writeString(out, order.account());
+        writeString(out, order.orderRef());
+        out.writeBoolean(order.outsideRth());
+    }
+
+    private static Order readOrder(ByteBuffer in) {
+        Order order = new Order();
+        order.orderId(in.getInt());
+        order.clientId(in.getInt());
+        order.permId(in.getInt());
+        order.parentId(in.getInt());
+        order.action(readString(in));
+        order.totalQuantity(in.getDouble());
+        order.orderType(readString(in));
+        order.lmtPrice(in.getDouble());
+        order.auxPrice(in.getDouble());
+        order.tif(readString(in));
+        order.account(readString(in));
+        order.orderRef(readString(in));
+        order.outsideRth(in.get() != 0);
+        return order;
+    }
+
+    private static void writeStatus(DataOutputStream out, IbOrderStatus status) throws IOException {
+        out.writeInt(status.getOrderId());
+        writeString(out, status.getStatus() != null ? status.getStatus().name() : null);
+        writeDecimal(out, status.getFilled());
+        writeDecimal(out, status.getRemaining());
+        writeDecimal(out, status.getAvgFillPrice());
+        out.writeInt(status.getPermId());
+        out.writeInt(status.getParentId());
+        writeDecimal(out, status.getLastFillPrice());
+        out.writeInt(status.getClientId());
+        writeString(out, status.getWhyHeld());
+        writeDecimal(out, status.getMktCapPrice());
+    }
+
+    private static IbOrderStatus readStatus(ByteBuffer in) {
+        return new IbOrderStatus(in.getInt(), readString(in), readDecimal(in), readDecimal(in), readDecimal(in),
+                                 in.getInt(), in.getInt(), readDecimal(in), in.getInt(), readString(in),
+                                 readDecimal(in));
+    }
+
+    private static void writeExecution(DataOutputStream out, IbExecution execution) throws IOException {
+        out.writeInt(execution.getOrderId());
+        out.writeInt(execution.getClientId());
+        writeString(out, execution.getExecId());
+        writeString(out, execution.getTime().format(EXECUTION_TIME));
+        writeString(out, execution.getAcctNumber());
+        writeString(out, execution.getExchange());
+        writeString(out, execution.getSide());
+        writeDouble(out, execution.getShares());
+        writeDouble(out, execution.getPrice());
+        out.writeInt(execution.getPermId());
+        out.writeInt(execution.getLiquidation());
+        writeDouble(out, execution.getCumQty());
+        writeDouble(out, execution.getAvgPrice());
+        writeString(out, execution.getOrderRef());
+        writeString(out, execution.getEvRule());
+        writeDouble(out, execution.getEvMultiplier());
+        writeString(out, execution.getModelCode());
+    }
+
+    private static IbExecution readExecution(ByteBuffer in) {
+        Execution execution = new Execution();
+        execution.orderId(in.getInt());
+        execution.clientId(in.getInt());
+        execution.execId(readString(in));
+        execution.time(readString(in));
+        execution.acctNumber(readString(in));
+        execution.exchange(readString(in));
+        execution.side(readString(in));
+        execution.shares(in.getDouble());
+        execution.price(in.getDouble());
+        execution.permId(in.getInt());
+        execution.liquidation(in.getInt());
+        execution.cumQty(in.getDouble());
+        execution.avgPrice(in.getDouble());
+        execution.orderRef(readString(in));
+        execution.evRule(readString(in));
+        execution.evMultiplier(in.getDouble());
+        execution.modelCode(readString(in));
+        return new IbExecution(execution);
+    }
+
+    enum Section {
+        ORDERS {
+            @Override
+            void encode(DataOutputStream out, CacheSnapshot snapshot) throws IOException {
+                writeOrders(out, snapshot.cache);
+            }
+
+            @Override
+            void decode(ByteBuffer in, Session session) {
+                readOrders(in, session);
+            }
+        },
+        POSITIONS {
+            @Override
+            void encode(DataOutputStream out, CacheSnapshot snapshot) throws IOException {
+                writePositions(out, snapshot.cache);
+            }
+
+            @Override
+            void decode(ByteBuffer in, Session session) {
+                readPositions(in, session.cache);
+            }
+        },
+        PORTFOLIO {
+            @Override
+            void encode(DataOutputStream out, CacheSnapshot snapshot) throws IOException {
+                writePortfolio(out, snapshot.cache);
+            }
+
+            @Override
+            void decode(ByteBuffer in, Session session) {
+                readPortfolio(in, session.cache);
+            }
+        },
+        EXECUTIONS {
+            @Override
+            void encode(DataOutputStream out, CacheSnapshot snapshot) throws IOException {
+                writeExecutions(out, snapshot.cache);
+            }
+
+            @Override
+            void decode(ByteBuffer in, Session session) {
+                readExecutions(in, session);
+            }
+        },
+        TICKS {
+            @Override
+            void encode(DataOutputStream out, CacheSnapshot snapshot) throws IOException {
+                writeTicks(out, snapshot.ticks);
+            }
+
+            @Override
+            void decode(ByteBuffer in, Session session) {
+                readTicks(in, session.cache);
+            }
+        };
+
+        abstract void encode(DataOutputStream out, CacheSnapshot snapshot) throws IOException;
+
+        abstract void decode(ByteBuffer in, Session session);
+    }
+
+    private static final class Session {
+
+        private final CacheRepositoryImpl cache;
+        private final LocalDateTime start;
+        // Snapshot has been written before the session
+        private final boolean previous;
+
+        private Session(CacheRepositoryImpl cache, LocalDateTime start, boolean previous) {
+            this.cache = cache;
+            this.start = start;
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import com.ib.client.Contract;
+import com.ib.client.ContractDetails;
+import com.ib.client.TagValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static lv.sergluka.ib_client.impl.cache.BinaryCodec.*;
+
+/**
+ * Cache of contract details, which survives restarts of the application.
+ *
+ * <p>Replies are kept as a whole by the normalized contract specification of the request, i.e. by symbol, security
+ * type, exchange, currency and the rest of the fields, which define a contract, since a reply can contain the same
+ * conid for several exchanges. A request by conid only is also served by a conid index, which contains contracts
+ * that are listed once in their reply. Entries are valid during the TTL since they were received from TWS.
+ *
+ * <p>Details are kept encoded, so every lookup returns new instances, which the caller is free to modify. Expired
+ * entries are dropped, when they are looked up, and all of them on {@link #save()} and on loading.
+ *
+ * <p>The file is read once on creation and is written on {@link #save()}, if the cache has been changed.
+ */
+public class ContractDetailsCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ContractDetailsCache.class);
+
+    private static final int MAGIC = 0x49424344;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+
+    private final Path file;
+    private final long ttlMillis;
+    private final Map<String, Reply> requests = new ConcurrentHashMap<>();
+    private final Map<Integer, Reply> conids = new ConcurrentHashMap<>();
+
+    private volatile boolean dirty;
+
+    /**
+     * Creates cache.
+     *
+     * @param file File to persist the cache, null to keep it in memory only
+     * @param ttl  Time to live of entries
+     */
+    public ContractDetailsCache(Path file, Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("TTL should be positive");
+        }
+        this.file = file;
+        this.ttlMillis = ttl.toMillis();
+        load();
+    }
+
+    /**
+     * Searches details of the contract.
+     *
+     * @param contract  Contract as it's passed to the request
+     * @param nowMillis Current time
+     * @return copy of the details or empty if they aren't cached or are expired
+     */
+    public Optional<List<ContractDetails>> get(Contract contract, long nowMillis) {
+        Reply reply = find(contract, nowMillis);
+        return reply != null ? Optional.of(reply.decode()) : Optional.empty();
+    }
+
+    /**
+     * Checks whether details of the contract are cached, without decoding them.
+     *
+     * @param contract  Contract as it's passed to the request
+     * @param nowMillis Current time
+     * @return true if {@link #get(Contract, long)} would return the details
+     */
+    public boolean contains(Contract contract, long nowMillis) {
+        return find(contract, nowMillis) != null;
+    }
+
+    /**
+     * Searches details of the contract, which has been listed once in its reply.
+     *
+     * @param conid     Contract ID
+     * @param nowMillis Current time
+     * @return copy of the details or empty if they aren't cached or are expired
+     */
+    public Optional<ContractDetails> get(int conid, long nowMillis) {
+        Reply reply = findByConid(conid, nowMillis);
+        return reply != null ? Optional.of(reply.decode().get(0)) : Optional.empty();
+    }
+
+    /**
+     * Checks whether details of the contract, which has been listed once in its reply, are cached.
+     *
+     * @param conid     Contract ID
+     * @param nowMillis Current time
+     * @return true if {@link #get(int, long)} would return the details
+     */
+    public boolean contains(int conid, long nowMillis) {
+        return findByConid(conid, nowMillis) != null;
+    }
+
+    /**
+     * Stores reply of TWS to the request.
+     *
+     * @param contract  Contract as it's passed to the request
+     * @param replies   Contract details, received from TWS
+     * @param nowMillis Current time
+     */
+    public void put(Contract contract, List<ContractDetails> replies, long nowMillis) {
+        try {
+            Reply reply = Reply.encode(replies, nowMillis);
+            requests.put(key(contract), reply);
+            index(replies, nowMillis);
+            dirty = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns number of cached contracts.
+     *
+     * @return number of distinct conids in the cached replies
+     */
+    public int size() {
+        return (int) requests.values().stream().flatMapToInt(reply -> Arrays.stream(reply.conids)).distinct().count();
+    }
+
+    public void clear() {
+        requests.clear();
+        conids.clear();
+        dirty = true;
+    }
+
+    /**
+     * Drops expired entries.
+     *
+     * @param nowMillis Current time
+     */
+    public void prune(long nowMillis) {
+        if (requests.values().removeIf(reply -> !isValid(reply, nowMillis))) {
+            dirty = true;
+        }
+        conids.values().removeIf(reply -> !isValid(reply, nowMillis));
+    }
+
+    /**
+     * Drops expired entries and writes the cache into the file, if it has been changed.
+     */
+    public synchronized void save() {
+        prune(System.currentTimeMillis());
+        if (file == null || !dirty) {
+            return;
+        }
+        dirty = false;
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            List<Map.Entry<String, Reply>> entries = new ArrayList<>(requests.entrySet());
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Reply> entry : entries) {
+                writeString(out, entry.getKey());
+                out.writeLong(entry.getValue().receivedAt);
+                out.writeInt(entry.getValue().conids.length);
+                out.writeInt(entry.getValue().encoded.length);
+                out.write(entry.getValue().encoded);
+            }
+
+            out.flush();
+            writeFile(file, bytes.toByteArray());
+            log.debug("{} contract details replies are saved into {}", entries.size(), file);
+        } catch (IOException | RuntimeException e) {
+            dirty = true;
+            log.error("Cannot save contract details into {}: {}", file, e.getMessage(), e);
+        }
+    }
+
+    private void load() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = readFile(channel);
+            if (in == null || in.remaining() < HEADER_SIZE || in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+                log.warn("Contract details file {} is broken or has old format, ignoring it", file);
+                return;
+            }
+
+            final long now = System.currentTimeMillis();
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                long receivedAt = in.getLong();
+                int size = in.getInt();
+                byte[] encoded = new byte[in.getInt()];
+                in.get(encoded);
+                if (now - receivedAt >= ttlMillis) {
+                    // The file is rewritten without it on the next save
+                    dirty = true;
+                    continue;
+                }
+                List<ContractDetails> replies = decode(encoded, size);
+                requests.put(key, new Reply(encoded, conids(replies), receivedAt));
+                index(replies, receivedAt);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Cannot load contract details from {}: {}", file, e.toString());
+            requests.clear();
+            conids.clear();
+            return;
+        }
+
+        log.info("{} contract details are loaded from {}", size(), file);
+    }
+
+    // A conid, which is listed for several exchanges, is ambiguous for a request by conid only, so it isn't indexed
+    private void index(List<ContractDetails> replies, long receivedAt) throws IOException {
+        Map<Integer, ContractDetails> unique = new HashMap<>();
+        Set<Integer> repeated = new HashSet<>();
+        for (ContractDetails reply : replies) {
+            if (unique.put(reply.conid(), reply) != null) {
+                repeated.add(reply.conid());
+            }
+        }
+        unique.keySet().removeAll(repeated);
+
+        for (ContractDetails reply : unique.values()) {
+            Reply single = Reply.encode(Collections.singletonList(reply), receivedAt);
+            conids.merge(reply.conid(), single, (old, replacement) -> old.receivedAt > receivedAt ? old : replacement);
+        }
+    }
+
+    private Reply find(Contract contract, long nowMillis) {
+        String key = key(contract);
+        Reply reply = requests.get(key);
+        if (reply != null && !isValid(reply, nowMillis)) {
+            requests.remove(key, reply);
+            reply = null;
+        }
+        if (reply == null && contract.conid() > 0 && isEmpty(contract.exchange())) {
+            reply = findByConid(contract.conid(), nowMillis);
+        }
+        return reply;
+    }
+
+    private Reply findByConid(int conid, long nowMillis) {
+        Reply reply = conids.get(conid);
+        if (reply != null && !isValid(reply, nowMillis)) {
+            conids.remove(conid, reply);
+            return null;
+        }
+        return reply;
+    }
+
+    private boolean isValid(Reply reply, long nowMillis) {
+        return reply != null && nowMillis - reply.receivedAt < ttlMillis;
+    }
+
+    private static String key(Contract contract) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(contract.conid() > 0 ? contract.conid() : 0).append('|')
+               .append(normalize(contract.symbol())).append('|')
+               .append(normalize(contract.getSecType())).append('|')
+               .append(normalize(contract.exchange())).append('|')
+               .append(normalize(contract.primaryExch())).append('|')
+               .append(normalize(contract.currency())).append('|')
+               .append(normalize(contract.lastTradeDateOrContractMonth())).append('|')
+               .append(contract.strike() != Double.MAX_VALUE ? contract.strike() : 0d).append('|')
+               .append(normalize(contract.getRight())).append('|')
+               .append(normalize(contract.multiplier())).append('|')
+               .append(normalize(contract.localSymbol())).append('|')
+               .append(normalize(contract.tradingClass())).append('|')
+               .append(normalize(contract.getSecIdType())).append('|')
+               .append(normalize(contract.secId()));
+        return builder.toString();
+    }
+
+    private static String normalize(String value) {
+        return isEmpty(value) ? "" : value.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    private static void writeDetails(DataOutputStream out, ContractDetails details) throws IOException {
+        writeContract(out, details.contract());
+        writeString(out, details.marketName());
+        out.writeDouble(details.minTick());
+        out.writeInt(details.priceMagnifier());
+        writeString(out, details.orderTypes());
+        writeString(out, details.validExchanges());
+        out.writeInt(details.underConid());
+        writeString(out, details.longName());
+        writeString(out, details.contractMonth());
+        writeString(out, details.industry());
+        writeString(out, details.category());
+        writeString(out, details.subcategory());
+        writeString(out, details.timeZoneId());
+        writeString(out, details.tradingHours());
+        writeString(out, details.liquidHours());
+        writeString(out, details.evRule());
+        out.writeDouble(details.evMultiplier());
+        out.writeInt(details.mdSizeMultiplier());
+        out.writeInt(details.aggGroup());
+        writeString(out, details.underSymbol());
+        writeString(out, details.underSecType());
+        writeString(out, details.marketRuleIds());
+        writeString(out, details.realExpirationDate());
+        writeString(out, details.lastTradeTime());
+        writeString(out, details.stockType());
+
+        List<TagValue> secIds = details.secIdList();
+        out.writeInt(secIds != null ? secIds.size() : -1);
+        if (secIds != null) {
+            for (TagValue secId : secIds) {
+                writeString(out, secId.m_tag);
+                writeString(out, secId.m_value);
+            }
+        }
+
+        writeString(out, details.cusip());
+        writeString(out, details.ratings());
+        writeString(out, details.descAppend());
+        writeString(out, details.bondType());
+        writeString(out, details.couponType());
+        out.writeBoolean(details.callable());
+        out.writeBoolean(details.putable());
+        out.writeDouble(details.coupon());
+        out.writeBoolean(details.convertible());
+        writeString(out, details.maturity());
+        writeString(out, details.issueDate());
+        writeString(out, details.nextOptionDate());
+        writeString(out, details.nextOptionType());
+        out.writeBoolean(details.nextOptionPartial());
+        writeString(out, details.notes());
+    }
+
+    private static ContractDetails readDetails(ByteBuffer in) {
+        ContractDetails details = new ContractDetails();
+        details.contract(readContract(in));
+        details.marketName(readString(in));
+        details.minTick(in.getDouble());
+        details.priceMagnifier(in.getInt());
+        details.orderTypes(readString(in));
+        details.validExchanges(readString(in));
+        details.underConid(in.getInt());
+        details.longName(readString(in));
+        details.contractMonth(readString(in));
+        details.industry(readString(in));
+        details.category(readString(in));
+        details.subcategory(readString(in));
+        details.timeZoneId(readString(in));
+        details.tradingHours(readString(in));
+        details.liquidHours(readString(in));
+        details.evRule(readString(in));
+        details.evMultiplier(in.getDouble());
+        details.mdSizeMultiplier(in.getInt());
+        details.aggGroup(in.getInt());
+        details.underSymbol(readString(in));
+        details.underSecType(readString(in));
+        details.marketRuleIds(readString(in));
+        details.realExpirationDate(readString(in));
+        details.lastTradeTime(readString(in));
+        details.stockType(readString(in));
+
+        int secIdCount = in.getInt();
+        if (secIdCount >= 0) {
+            List<TagValue> secIds = new ArrayList<>(secIdCount);
+            for (int i = 0; i < secIdCount; i++) {
+                secIds.add(new TagValue(readString(in), readString(in)));
+            }
+            details.secIdList(secIds);
+        }
+
+        details.cusip(readString(in));
+        details.ratings(readString(in));
+        details.descAppend(readString(in));
+        details.bondType(readString(in));
+        details.couponType(readString(in));
+        details.callable(in.get() != 0);
+        details.putable(in.get() != 0);
+        details.coupon(in.getDouble());
+        details.convertible(in.get() != 0);
+        details.maturity(readString(in));
+        details.issueDate(readString(in));
+        details.nextOptionDate(readString(in));
+        details.nextOptionType(readString(in));
+        details.nextOptionPartial(in.get() != 0);
+        details.notes(readString(in));
+        return details;
+    }
+
+    private static int[] conids(List<ContractDetails> replies) {
+        int[] result = new int[replies.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = replies.get(i).conid();
+        }
+        return result;
+    }
+
+    private static List<ContractDetails> decode(byte[] encoded, int size) {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        List<ContractDetails> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(readDetails(in));
+        }
+        return result;
+    }
+
+    private static final class Reply {
+
+        private final byte[] encoded;
+        private final int[] conids;
+        private final long receivedAt;
+
+        private Reply(byte[] encoded, int[] conids, long receivedAt) {
+            this.encoded = encoded;
+            this.conids = conids;
+            this.receivedAt = receivedAt;
+        }
+
+        private static Reply encode(List<ContractDetails> replies, long receivedAt) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (ContractDetails reply : replies) {
+                writeDetails(out, reply);
+            }
+            out.flush();
+            return new Reply(bytes.toByteArray(), conids(replies), receivedAt);
+        }
+
+        private List<ContractDetails> decode() {
+            return ContractDetailsCache.decode(encoded, conids.length);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import com.ib.client.Contract;
+import lv.sergluka.ib_client.types.IbMarketDepth;
+import lv.sergluka.ib_client.types.IbOrderBook;
+import lv.sergluka.ib_client.types.IbOrderBookUpdate;
+
+import java.util.function.Consumer;
+
+/**
+ * Market depth subscription resolved at registration: its order book and the sink of its stream.
+ *
+ * <p>Subscription either receives every market depth update, or a single {@link IbOrderBookUpdate} per burst of
+ * updates. In the latter case changes are accumulated by {@link #onUpdate} and emitted by {@link #flush}, both are
+ * called from the reader thread.
+ */
+public class DepthBinding {
+
+    private static final int BID = IbMarketDepth.Side.BUY.ordinal();
+    private static final int ASK = IbMarketDepth.Side.SELL.ordinal();
+
+    private final int tickerId;
+    private final Contract contract;
+    private final IbOrderBook book;
+    private final Consumer<IbMarketDepth> sink;
+    private final Consumer<IbOrderBookUpdate> updateSink;
+
+    private final int[] changedFrom = new int[IbMarketDepth.Side.values().length];
+    private final int[] changedTo = new int[IbMarketDepth.Side.values().length];
+    private int pendingUpdates;
+
+    /**
+     * Creates binding.
+     *
+     * @param tickerId   Subscription ID
+     * @param contract   IB contract
+     * @param book       Order book of the subscription
+     * @param sink       Sink for every market depth update, nullable
+     * @param updateSink Sink for notifications per burst of updates, nullable
+     */
+    public DepthBinding(int tickerId,
+                        Contract contract,
+                        IbOrderBook book,
+                        Consumer<IbMarketDepth> sink,
+                        Consumer<IbOrderBookUpdate> updateSink) {
+        this.tickerId = tickerId;
+        this.contract = contract;
+        this.book = book;
+        this.sink = sink;
+        this.updateSink = updateSink;
+        resetChanges();
+    }
+
+    public int getTickerId() {
+        return tickerId;
+    }
+
+    public Contract getContract() {
+        return contract;
+    }
+
+    public IbOrderBook getBook() {
+        return book;
+    }
+
+    public Consumer<IbMarketDepth> getSink() {
+        return sink;
+    }
+
+    public boolean isCoalesced() {
+        return updateSink != null;
+    }
+
+    /**
+     * Accumulates book change until the end of the burst.
+     *
+     * @param side      TWS side
+     * @param fromLevel First changed level
+     * @param toLevel   Last changed level
+     * @return true if it's the first change of the burst, so the binding has to be flushed at the end
+     */
+    public boolean onUpdate(int side, int fromLevel, int toLevel) {
+        if (changedFrom[side] == IbOrderBookUpdate.NO_LEVEL || fromLevel < changedFrom[side]) {
+            changedFrom[side] = fromLevel;
+        }
+        changedTo[side] = Math.max(changedTo[side], toLevel);
+        return pendingUpdates++ == 0;
+    }
+
+    public void flush() {
+        if (pendingUpdates == 0) {
+            return;
+        }
+
+        IbOrderBookUpdate update = new IbOrderBookUpdate(book, book.getVersion(), pendingUpdates,
+                                                         changedFrom[BID], changedTo[BID],
+                                                         changedFrom[ASK], changedTo[ASK]);
+        resetChanges();
+        updateSink.accept(update);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("{tickerId=%d, conid=%d}", tickerId, contract.conid());
+    }
+
+    private void resetChanges() {
+        for (int i = 0; i < changedFrom.length; i++) {
+            changedFrom[i] = IbOrderBookUpdate.NO_LEVEL;
+            changedTo[i] = IbOrderBookUpdate.NO_LEVEL;
+        }
+        pendingUpdates = 0;
+    }
+}
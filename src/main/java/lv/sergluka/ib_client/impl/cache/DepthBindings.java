@@ -0,0 +1,135 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table of market depth bindings by ticker ID, indexed by conid as well.
+ *
+ * <p>Lookup is a read of an array slot, without hashing or boxing of the ID. There are only a few depth
+ * subscriptions at once, so the table is rebuilt on every change and published as a whole.
+ *
+ * <p>The conid index keeps the latest subscription to the contract, which is the one with the greatest ticker ID,
+ * as IDs of requests only grow.
+ */
+class DepthBindings {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private volatile Tables tables = new Tables(MIN_CAPACITY);
+
+    DepthBinding get(int tickerId) {
+        DepthBinding[] current = tables.byTicker;
+        int mask = current.length - 1;
+        for (int i = tickerId & mask; ; i = (i + 1) & mask) {
+            DepthBinding binding = current[i];
+            if (binding == null || binding.getTickerId() == tickerId) {
+                return binding;
+            }
+        }
+    }
+
+    /**
+     * Returns the latest binding of the contract.
+     *
+     * @param conid Contract ID
+     * @return binding or null if there is no binding of the contract
+     */
+    DepthBinding getByConid(int conid) {
+        DepthBinding[] current = tables.byConid;
+        int mask = current.length - 1;
+        for (int i = conid & mask; ; i = (i + 1) & mask) {
+            DepthBinding binding = current[i];
+            if (binding == null || conid(binding) == conid) {
+                return binding;
+            }
+        }
+    }
+
+    /**
+     * Returns all bindings at the moment of the call.
+     *
+     * @return bindings, the list isn't changed by later updates of the table
+     */
+    List<DepthBinding> values() {
+        DepthBinding[] current = tables.byTicker;
+        List<DepthBinding> result = new ArrayList<>();
+        for (DepthBinding binding : current) {
+            if (binding != null) {
+                result.add(binding);
+            }
+        }
+        return result;
+    }
+
+    synchronized DepthBinding put(DepthBinding binding) {
+        DepthBinding prev = get(binding.getTickerId());
+        Tables updated = rebuild(tables.size + 1, binding.getTickerId());
+        updated.insert(binding);
+        tables = updated;
+        return prev;
+    }
+
+    synchronized DepthBinding remove(int tickerId) {
+        DepthBinding prev = get(tickerId);
+        if (prev != null) {
+            tables = rebuild(tables.size, tickerId);
+        }
+        return prev;
+    }
+
+    synchronized void clear() {
+        tables = new Tables(MIN_CAPACITY);
+    }
+
+    // Copies all bindings except the given ticker into new tables with load factor not above 0.5
+    private Tables rebuild(int expectedSize, int excludedTickerId) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+
+        Tables result = new Tables(capacity);
+        for (DepthBinding binding : tables.byTicker) {
+            if (binding != null && binding.getTickerId() != excludedTickerId) {
+                result.insert(binding);
+            }
+        }
+        return result;
+    }
+
+    private static int conid(DepthBinding binding) {
+        return binding.getContract().conid();
+    }
+
+    private static final class Tables {
+
+        private final DepthBinding[] byTicker;
+        private final DepthBinding[] byConid;
+        private int size;
+
+        private Tables(int capacity) {
+            byTicker = new DepthBinding[capacity];
+            byConid = new DepthBinding[capacity];
+        }
+
+        private void insert(DepthBinding binding) {
+            int mask = byTicker.length - 1;
+            int i = binding.getTickerId() & mask;
+            while (byTicker[i] != null) {
+                i = (i + 1) & mask;
+            }
+            byTicker[i] = binding;
+            size++;
+
+            int conid = conid(binding);
+            int j = conid & mask;
+            while (byConid[j] != null && conid(byConid[j]) != conid) {
+                j = (j + 1) & mask;
+            }
+            if (byConid[j] == null || byConid[j].getTickerId() < binding.getTickerId()) {
+                byConid[j] = binding;
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import com.ib.client.Contract;
+import lv.sergluka.ib_client.types.IbOrderBook;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Direct memory for order books of a fixed capacity.
+ *
+ * <p>Memory is allocated by slabs of several books and split into slots of the same size, which are reused after
+ * the book is released. So the heap holds only a few buffer objects regardless of the number of books and levels.
+ */
+public class DirectBookStore {
+
+    private static final int SLOTS_PER_SLAB = 64;
+
+    private final int capacity;
+    private final int slotSize;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final ArrayDeque<ByteBuffer> freeSlots = new ArrayDeque<>();
+
+    /**
+     * Creates store.
+     *
+     * @param capacity Number of levels per side of every book
+     */
+    public DirectBookStore(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity should be positive");
+        }
+        this.capacity = capacity;
+        slotSize = IbOrderBook.getStorageSize(capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Creates order book in a free slot.
+     *
+     * @param contract   IB contract
+     * @param aggregated Whether to maintain levels aggregated by price
+     * @return new order book
+     */
+    public IbOrderBook create(Contract contract, boolean aggregated) {
+        return new IbOrderBook(contract, acquire(), capacity, aggregated);
+    }
+
+    /**
+     * Returns memory of the book to the store. The book becomes empty.
+     *
+     * @param book Book created by the store
+     */
+    public void release(IbOrderBook book) {
+        ByteBuffer slot = book.detachStorage();
+        if (slot != null) {
+            synchronized (this) {
+                freeSlots.push(slot);
+            }
+        }
+    }
+
+    public synchronized long getAllocatedBytes() {
+        return (long) slabs.size() * SLOTS_PER_SLAB * slotSize;
+    }
+
+    public synchronized int getFreeSlots() {
+        return freeSlots.size();
+    }
+
+    private synchronized ByteBuffer acquire() {
+        if (freeSlots.isEmpty()) {
+            ByteBuffer slab = ByteBuffer.allocateDirect(SLOTS_PER_SLAB * slotSize);
+            slabs.add(slab);
+            for (int i = SLOTS_PER_SLAB - 1; i >= 0; i--) {
+                ByteBuffer slot = slab.duplicate();
+                slot.position(i * slotSize);
+                slot.limit((i + 1) * slotSize);
+                freeSlots.push(slot.slice());
+            }
+        }
+        return freeSlots.pop();
+    }
+}
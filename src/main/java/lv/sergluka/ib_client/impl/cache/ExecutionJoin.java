@@ -0,0 +1,136 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import lv.sergluka.ib_client.types.IbCommissionReport;
+import lv.sergluka.ib_client.types.IbExecutionJoinStats;
+import lv.sergluka.ib_client.types.IbExecutionReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Buffer, which matches executions with commission reports by execution ID in any order of arrival.
+ *
+ * <p>Only unmatched halves are kept. Each of them is scheduled on a timer wheel and is dropped, if its pair doesn't
+ * arrive in time.
+ */
+class ExecutionJoin {
+
+    private static final Logger log = LoggerFactory.getLogger(ExecutionJoin.class);
+
+    private static final long TICK_MILLIS = 100;
+    private static final int SLOT_COUNT = 512;
+
+    private final long timeoutMillis;
+    private final Map<String, IbExecutionReport> executions = new HashMap<>();
+    private final Map<String, IbCommissionReport> commissions = new HashMap<>();
+    private final TimerWheel<Object> wheel;
+
+    private long matched;
+    private long commissionFirst;
+    private long lateCommissions;
+    private long expiredExecutions;
+    private long expiredCommissions;
+    private long duplicates;
+
+    ExecutionJoin(Duration timeout, long nowMillis) {
+        timeoutMillis = timeout.toMillis();
+        wheel = new TimerWheel<>(TICK_MILLIS, SLOT_COUNT, nowMillis);
+    }
+
+    /**
+     * Matches the execution with a pending commission or waits for it.
+     *
+     * @param report    Execution without commission
+     * @param nowMillis Current time
+     * @return matched report or null if the commission hasn't been received yet
+     */
+    synchronized IbExecutionReport onExecution(IbExecutionReport report, long nowMillis) {
+        String execId = report.getExecution().getExecId();
+        IbCommissionReport commission = commissions.remove(execId);
+        if (commission != null) {
+            report.setCommission(commission);
+            matched++;
+            commissionFirst++;
+            return report;
+        }
+
+        if (executions.putIfAbsent(execId, report) != null) {
+            duplicates++;
+            return null;
+        }
+        wheel.schedule(report, nowMillis + timeoutMillis);
+        return null;
+    }
+
+    /**
+     * Matches the commission with a pending execution or waits for it.
+     *
+     * @param commission Commission report
+     * @param nowMillis  Current time
+     * @return matched report or null if the execution hasn't been received yet
+     */
+    synchronized IbExecutionReport onCommission(IbCommissionReport commission, long nowMillis) {
+        IbExecutionReport report = executions.remove(commission.getExecId());
+        if (report != null) {
+            report.setCommission(commission);
+            matched++;
+            return report;
+        }
+
+        if (commissions.putIfAbsent(commission.getExecId(), commission) != null) {
+            duplicates++;
+            return null;
+        }
+        wheel.schedule(commission, nowMillis + timeoutMillis);
+        return null;
+    }
+
+    synchronized void onLateCommission() {
+        matched++;
+        lateCommissions++;
+    }
+
+    synchronized void onDuplicate() {
+        duplicates++;
+    }
+
+    /**
+     * Drops halves, which have been waiting for their pairs longer than the timeout.
+     *
+     * @param nowMillis Current time
+     * @param expired   Handler of executions without commission
+     */
+    synchronized void expire(long nowMillis, Consumer<IbExecutionReport> expired) {
+        wheel.advance(nowMillis, item -> {
+            if (item instanceof IbExecutionReport) {
+                IbExecutionReport report = (IbExecutionReport) item;
+                if (executions.remove(report.getExecution().getExecId(), report)) {
+                    expiredExecutions++;
+                    log.warn("No commission report for execution '{}'", report.getExecution().getExecId());
+                    expired.accept(report);
+                }
+            } else {
+                IbCommissionReport commission = (IbCommissionReport) item;
+                if (commissions.remove(commission.getExecId(), commission)) {
+                    expiredCommissions++;
+                    log.warn("Commission report for '{}' without execution report", commission.getExecId());
+                }
+            }
+        });
+    }
+
+    synchronized IbExecutionJoinStats getStats() {
+        return new IbExecutionJoinStats(matched, commissionFirst, lateCommissions, expiredExecutions,
+                                        expiredCommissions, duplicates, executions.size(), commissions.size());
+    }
+
+    synchronized void clear() {
+        executions.clear();
+        commissions.clear();
+        wheel.clear();
+    }
+}
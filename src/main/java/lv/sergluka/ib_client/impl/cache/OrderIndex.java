@@ -0,0 +1,85 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import lv.sergluka.ib_client.types.IbOrder;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Secondary index of orders by a key, which may change along with the order.
+ *
+ * <p>Orders are updated from the reader thread only, views are read by any thread. Views are live and weakly
+ * consistent, like views of {@link ConcurrentHashMap}.
+ *
+ * @param <K> Key type
+ */
+class OrderIndex<K> {
+
+    private final Function<IbOrder, K> keyFunction;
+    private final ConcurrentHashMap<Integer, K> keys = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, Map<Integer, IbOrder>> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Creates index.
+     *
+     * @param keyFunction Key of the order, null if the order shouldn't be indexed
+     */
+    OrderIndex(Function<IbOrder, K> keyFunction) {
+        this.keyFunction = keyFunction;
+    }
+
+    /**
+     * Adds the order or moves it to the bucket of its actual key.
+     *
+     * @param order New or changed order
+     */
+    void update(IbOrder order) {
+        final int orderId = order.getOrderId();
+        final K key = keyFunction.apply(order);
+
+        K previous = key != null ? keys.put(orderId, key) : keys.remove(orderId);
+        if (previous != null && !Objects.equals(previous, key)) {
+            removeFromBucket(previous, orderId);
+        }
+        if (key != null) {
+            buckets.compute(key, (unused, bucket) -> {
+                Map<Integer, IbOrder> result = bucket != null ? bucket : new ConcurrentHashMap<>();
+                result.put(orderId, order);
+                return result;
+            });
+        }
+    }
+
+    void remove(int orderId) {
+        K key = keys.remove(orderId);
+        if (key != null) {
+            removeFromBucket(key, orderId);
+        }
+    }
+
+    /**
+     * Returns orders of the key.
+     *
+     * @param key Index key
+     * @return live read-only view, which is empty if there are no orders of the key
+     */
+    Collection<IbOrder> get(K key) {
+        return new BucketView<>(buckets, key);
+    }
+
+    void clear() {
+        keys.clear();
+        buckets.clear();
+    }
+
+    // The bucket is dropped along with its last order, so keys, which have been queried or used once, don't pile up
+    private void removeFromBucket(K key, int orderId) {
+        buckets.computeIfPresent(key, (unused, bucket) -> {
+            bucket.remove(orderId);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+}
@@ -0,0 +1,67 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import lv.sergluka.ib_client.types.IbPosition;
+import lv.sergluka.ib_client.types.IbPositionKey;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Secondary index of positions by a key, which doesn't change along with the position, e.g. account or symbol.
+ *
+ * <p>Views are live and weakly consistent, like {@link OrderIndex}.
+ *
+ * @param <K> Key type
+ */
+class PositionIndex<K> {
+
+    private final Function<IbPosition, K> keyFunction;
+    private final ConcurrentHashMap<K, Map<IbPositionKey, IbPosition>> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Creates index.
+     *
+     * @param keyFunction Key of the position, null if the position shouldn't be indexed
+     */
+    PositionIndex(Function<IbPosition, K> keyFunction) {
+        this.keyFunction = keyFunction;
+    }
+
+    void put(IbPositionKey key, IbPosition position) {
+        K indexKey = keyFunction.apply(position);
+        if (indexKey != null) {
+            buckets.compute(indexKey, (unused, bucket) -> {
+                Map<IbPositionKey, IbPosition> result = bucket != null ? bucket : new ConcurrentHashMap<>();
+                result.put(key, position);
+                return result;
+            });
+        }
+    }
+
+    // The bucket is dropped along with its last position, like in OrderIndex
+    void remove(IbPositionKey key, IbPosition position) {
+        K indexKey = keyFunction.apply(position);
+        if (indexKey != null) {
+            buckets.computeIfPresent(indexKey, (unused, bucket) -> {
+                bucket.remove(key);
+                return bucket.isEmpty() ? null : bucket;
+            });
+        }
+    }
+
+    /**
+     * Returns positions of the key.
+     *
+     * @param key Index key
+     * @return live read-only view, which is empty if there are no positions of the key
+     */
+    Collection<IbPosition> get(K key) {
+        return new BucketView<>(buckets, key);
+    }
+
+    void clear() {
+        buckets.clear();
+    }
+}
@@ -0,0 +1,98 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import lv.sergluka.ib_client.types.IbPositionKey;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table of position keys by account and conid, so a position is found without creating a key.
+ *
+ * <p>Lookup probes an array slot by the hash of the account and the conid. Keys are added in place by the reader
+ * thread, and the table is rebuilt and published as a whole only when it grows or a key is removed, like
+ * {@link DepthBindings}.
+ */
+class PositionKeys {
+
+    private static final int MIN_CAPACITY = 16;
+    // Shift of the high half of the hash, like in HashMap
+    private static final int SPREAD_SHIFT = 16;
+
+    private volatile AtomicReferenceArray<IbPositionKey> table = new AtomicReferenceArray<>(MIN_CAPACITY);
+    private int size;
+
+    IbPositionKey get(String account, int conid) {
+        AtomicReferenceArray<IbPositionKey> current = table;
+        int mask = current.length() - 1;
+        for (int i = spread(IbPositionKey.hash(account, conid)) & mask; ; i = (i + 1) & mask) {
+            IbPositionKey key = current.get(i);
+            if (key == null || key.matches(account, conid)) {
+                return key;
+            }
+        }
+    }
+
+    /**
+     * Returns existing key or adds a new one.
+     *
+     * @param account Account
+     * @param conid   Contract ID
+     * @return the same key instance for the same account and conid
+     */
+    synchronized IbPositionKey intern(String account, int conid) {
+        IbPositionKey key = get(account, conid);
+        if (key != null) {
+            return key;
+        }
+
+        key = new IbPositionKey(account, conid);
+        if ((size + 1) * 2 > table.length()) {
+            table = rebuild(size + 1, null);
+        }
+        insert(table, key);
+        size++;
+        return key;
+    }
+
+    synchronized void remove(IbPositionKey key) {
+        if (get(key.getAccount(), key.getContractId()) != null) {
+            table = rebuild(size, key);
+            size--;
+        }
+    }
+
+    synchronized void clear() {
+        table = new AtomicReferenceArray<>(MIN_CAPACITY);
+        size = 0;
+    }
+
+    // Copies all keys except the given one into a new table with load factor not above 0.5
+    private AtomicReferenceArray<IbPositionKey> rebuild(int expectedSize, IbPositionKey excluded) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+
+        AtomicReferenceArray<IbPositionKey> result = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < table.length(); i++) {
+            IbPositionKey key = table.get(i);
+            if (key != null && !key.equals(excluded)) {
+                insert(result, key);
+            }
+        }
+        return result;
+    }
+
+    private static void insert(AtomicReferenceArray<IbPositionKey> target, IbPositionKey key) {
+        int mask = target.length() - 1;
+        int i = spread(key.hashCode()) & mask;
+        while (target.get(i) != null) {
+            i = (i + 1) & mask;
+        }
+        target.set(i, key);
+    }
+
+    // Conids are dense in the low bits, account hash is mixed into them
+    private static int spread(int hash) {
+        return hash ^ (hash >>> SPREAD_SHIFT);
+    }
+}
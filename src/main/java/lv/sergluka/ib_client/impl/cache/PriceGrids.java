@@ -0,0 +1,140 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import lv.sergluka.ib_client.types.IbPriceGrid;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table of price grids by conid, so rounding of a price neither boxes the conid nor looks the market rule up.
+ *
+ * <p>Lookup probes an array slot by the conid. An entry keeps the market rule ID of the contract, resolved to its grid
+ * as soon as both are known, and the grid of the minimal tick. Entries are added in place, and the table is rebuilt
+ * and published as a whole only when it grows, like {@link PositionKeys}. Market rules are kept here as well, so a rule
+ * and a contract, which are received at once, are resolved under the same lock.
+ */
+class PriceGrids {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int NO_MARKET_RULE = -1;
+
+    private final Map<Integer, IbPriceGrid> marketRules = new ConcurrentHashMap<>();
+
+    private volatile AtomicReferenceArray<Entry> table = new AtomicReferenceArray<>(MIN_CAPACITY);
+    private int size;
+
+    /**
+     * Returns grid of the market rule of the contract, if it's known, otherwise of its minimal tick.
+     *
+     * @param conid Contract ID
+     * @return grid or null if neither is known
+     */
+    IbPriceGrid get(int conid) {
+        Entry entry = find(table, conid);
+        if (entry == null) {
+            return null;
+        }
+        IbPriceGrid marketRule = entry.marketRule;
+        return marketRule != null ? marketRule : entry.minTick;
+    }
+
+    IbPriceGrid getMarketRule(int marketRuleId) {
+        return marketRules.get(marketRuleId);
+    }
+
+    synchronized void setMinTick(int conid, IbPriceGrid minTick) {
+        intern(conid).minTick = minTick;
+    }
+
+    /**
+     * Binds the contract to the market rule.
+     *
+     * @param conid        Contract ID
+     * @param marketRuleId Market rule ID
+     */
+    synchronized void setMarketRule(int conid, int marketRuleId) {
+        Entry entry = intern(conid);
+        entry.marketRuleId = marketRuleId;
+        entry.marketRule = marketRules.get(marketRuleId);
+    }
+
+    /**
+     * Stores the market rule and resolves it for all contracts, which are bound to it.
+     *
+     * @param marketRuleId Market rule ID
+     * @param marketRule   Grid of the rule
+     */
+    synchronized void addMarketRule(int marketRuleId, IbPriceGrid marketRule) {
+        marketRules.put(marketRuleId, marketRule);
+        for (int i = 0; i < table.length(); i++) {
+            Entry entry = table.get(i);
+            if (entry != null && entry.marketRuleId == marketRuleId) {
+                entry.marketRule = marketRule;
+            }
+        }
+    }
+
+    private Entry intern(int conid) {
+        Entry entry = find(table, conid);
+        if (entry != null) {
+            return entry;
+        }
+
+        entry = new Entry(conid);
+        if ((size + 1) * 2 > table.length()) {
+            table = rebuild(size + 1);
+        }
+        insert(table, entry);
+        size++;
+        return entry;
+    }
+
+    // Copies all entries into a new table with load factor not above 0.5
+    private AtomicReferenceArray<Entry> rebuild(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+
+        AtomicReferenceArray<Entry> result = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < table.length(); i++) {
+            Entry entry = table.get(i);
+            if (entry != null) {
+                insert(result, entry);
+            }
+        }
+        return result;
+    }
+
+    private static Entry find(AtomicReferenceArray<Entry> target, int conid) {
+        int mask = target.length() - 1;
+        for (int i = conid & mask; ; i = (i + 1) & mask) {
+            Entry entry = target.get(i);
+            if (entry == null || entry.conid == conid) {
+                return entry;
+            }
+        }
+    }
+
+    private static void insert(AtomicReferenceArray<Entry> target, Entry entry) {
+        int mask = target.length() - 1;
+        int i = entry.conid & mask;
+        while (target.get(i) != null) {
+            i = (i + 1) & mask;
+        }
+        target.set(i, entry);
+    }
+
+    private static final class Entry {
+
+        private final int conid;
+        private volatile int marketRuleId = NO_MARKET_RULE;
+        private volatile IbPriceGrid marketRule;
+        private volatile IbPriceGrid minTick;
+
+        private Entry(int conid) {
+            this.conid = conid;
+        }
+    }
+}
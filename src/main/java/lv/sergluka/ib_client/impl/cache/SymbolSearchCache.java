@@ -0,0 +1,203 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import com.ib.client.ContractDescription;
+import com.ib.client.Types;
+import lv.sergluka.ib_client.types.IbContractDescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import static lv.sergluka.ib_client.impl.cache.BinaryCodec.*;
+
+/**
+ * Cache of symbol search results, indexed by the normalized search pattern.
+ *
+ * <p>Only the same pattern is answered locally. TWS matches company names as well as symbols, and descriptions don't
+ * contain the names, so matches of a longer pattern can't be derived from a shorter one. Entries are valid during the
+ * TTL since they were received from TWS.
+ *
+ * <p>The file is read once on creation, which lets to preload the cache, and is written on {@link #save()}, if the
+ * cache has been changed.
+ */
+public class SymbolSearchCache {
+
+    private static final Logger log = LoggerFactory.getLogger(SymbolSearchCache.class);
+
+    private static final int MAGIC = 0x49425353;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private final Path file;
+    private final long ttlMillis;
+    private final Map<String, Query> queries = new HashMap<>();
+
+    private boolean dirty;
+
+    /**
+     * Creates cache.
+     *
+     * @param file File to persist the cache, null to keep it in memory only
+     * @param ttl  Time to live of entries
+     */
+    public SymbolSearchCache(Path file, Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("TTL should be positive");
+        }
+        this.file = file;
+        this.ttlMillis = ttl.toMillis();
+        load();
+    }
+
+    /**
+     * Searches results of the pattern.
+     *
+     * @param pattern   Search pattern
+     * @param nowMillis Current time
+     * @return matching descriptions or empty if the pattern should be sent to TWS
+     */
+    public synchronized Optional<List<IbContractDescription>> get(String pattern, long nowMillis) {
+        Query query = queries.get(normalize(pattern));
+        if (query == null || nowMillis - query.receivedAt >= ttlMillis) {
+            return Optional.empty();
+        }
+        return Optional.of(query.results);
+    }
+
+    /**
+     * Stores reply of TWS to the pattern.
+     *
+     * @param pattern   Search pattern
+     * @param results   Descriptions, received from TWS
+     * @param nowMillis Current time
+     */
+    public synchronized void put(String pattern, List<IbContractDescription> results, long nowMillis) {
+        queries.put(normalize(pattern), new Query(Collections.unmodifiableList(new ArrayList<>(results)), nowMillis));
+        dirty = true;
+    }
+
+    public synchronized int size() {
+        return queries.size();
+    }
+
+    public synchronized void clear() {
+        queries.clear();
+        dirty = true;
+    }
+
+    /**
+     * Writes the cache into the file, if it has been changed. Expired entries are not written.
+     */
+    public synchronized void save() {
+        if (file == null || !dirty) {
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            queries.values().removeIf(query -> now - query.receivedAt >= ttlMillis);
+            out.writeInt(queries.size());
+            for (Map.Entry<String, Query> entry : queries.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeLong(entry.getValue().receivedAt);
+                out.writeInt(entry.getValue().results.size());
+                for (IbContractDescription description : entry.getValue().results) {
+                    writeDescription(out, description);
+                }
+            }
+
+            out.flush();
+            writeFile(file, bytes.toByteArray());
+            dirty = false;
+            log.debug("{} symbol searches are saved into {}", queries.size(), file);
+        } catch (IOException | RuntimeException e) {
+            log.error("Cannot save symbol searches into {}: {}", file, e.getMessage(), e);
+        }
+    }
+
+    private void load() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = readFile(channel);
+            if (in == null || in.remaining() < HEADER_SIZE || in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) {
+                log.warn("Symbol search file {} is broken, ignoring it", file);
+                return;
+            }
+
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                String key = readString(in);
+                long receivedAt = in.getLong();
+                List<IbContractDescription> results = new ArrayList<>();
+                int resultCount = in.getInt();
+                for (int j = 0; j < resultCount; j++) {
+                    results.add(readDescription(in));
+                }
+                queries.put(key, new Query(Collections.unmodifiableList(results), receivedAt));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Cannot load symbol searches from {}: {}", file, e.toString());
+            queries.clear();
+            return;
+        }
+
+        log.info("{} symbol searches are loaded from {}", queries.size(), file);
+    }
+
+    private static void writeDescription(DataOutputStream out, IbContractDescription description) throws IOException {
+        writeContract(out, description.getContract());
+        out.writeInt(description.getDerivativeSecTypes().size());
+        for (Types.SecType secType : description.getDerivativeSecTypes()) {
+            writeString(out, secType.getApiString());
+        }
+    }
+
+    private static IbContractDescription readDescription(ByteBuffer in) {
+        ContractDescription description = new ContractDescription();
+        description.contract(readContract(in));
+        String[] secTypes = new String[in.getInt()];
+        for (int i = 0; i < secTypes.length; i++) {
+            secTypes[i] = readString(in);
+        }
+        description.derivativeSecTypes(secTypes);
+        return new IbContractDescription(description);
+    }
+
+    private static String normalize(String pattern) {
+        return pattern != null ? pattern.trim().toUpperCase(Locale.ROOT) : "";
+    }
+
+    private static final class Query {
+
+        private final List<IbContractDescription> results;
+        private final long receivedAt;
+
+        private Query(List<IbContractDescription> results, long receivedAt) {
+            this.results = results;
+            this.receivedAt = receivedAt;
+        }
+    }
+}
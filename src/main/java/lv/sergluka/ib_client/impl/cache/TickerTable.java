@@ -0,0 +1,107 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table of values by ticker ID, for the lookups, which are done per tick.
+ *
+ * <p>Lookup probes array slots without hashing or boxing of the ID. Subscriptions change rarely, so the table is
+ * rebuilt on every change and published as a whole, like {@link DepthBindings}.
+ *
+ * @param <V> Value type
+ */
+class TickerTable<V> {
+
+    private static final int MIN_CAPACITY = 8;
+
+    private volatile Slots<V> slots = new Slots<>(MIN_CAPACITY);
+
+    V get(int tickerId) {
+        Slots<V> current = slots;
+        int mask = current.ids.length - 1;
+        for (int i = tickerId & mask; ; i = (i + 1) & mask) {
+            V value = current.values[i];
+            if (value == null || current.ids[i] == tickerId) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns all values at the moment of the call.
+     *
+     * @return values, the list isn't changed by later updates of the table
+     */
+    List<V> values() {
+        Slots<V> current = slots;
+        List<V> result = new ArrayList<>(current.size);
+        for (V value : current.values) {
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    synchronized V put(int tickerId, V value) {
+        V prev = get(tickerId);
+        Slots<V> updated = rebuild(slots.size + 1, tickerId);
+        updated.insert(tickerId, value);
+        slots = updated;
+        return prev;
+    }
+
+    synchronized V remove(int tickerId) {
+        V prev = get(tickerId);
+        if (prev != null) {
+            slots = rebuild(slots.size, tickerId);
+        }
+        return prev;
+    }
+
+    synchronized void clear() {
+        slots = new Slots<>(MIN_CAPACITY);
+    }
+
+    // Copies all values except the given ticker into a new table with load factor not above 0.5
+    private Slots<V> rebuild(int expectedSize, int excludedTickerId) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+
+        Slots<V> current = slots;
+        Slots<V> result = new Slots<>(capacity);
+        for (int i = 0; i < current.ids.length; i++) {
+            if (current.values[i] != null && current.ids[i] != excludedTickerId) {
+                result.insert(current.ids[i], current.values[i]);
+            }
+        }
+        return result;
+    }
+
+    private static final class Slots<V> {
+
+        private final int[] ids;
+        private final V[] values;
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        private Slots(int capacity) {
+            ids = new int[capacity];
+            values = (V[]) new Object[capacity];
+        }
+
+        private void insert(int tickerId, V value) {
+            int mask = ids.length - 1;
+            int i = tickerId & mask;
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            ids[i] = tickerId;
+            values[i] = value;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package lv.sergluka.ib_client.impl.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel, driven by the caller's clock.
+ *
+ * <p>Timers are put into slots by their deadline tick, so scheduling is O(1) and advancing visits only the slots of
+ * the passed ticks. A timer with a deadline further than one turn stays in its slot for the next turns. Timers
+ * aren't cancelled: the owner ignores expired items, which are already handled.
+ *
+ * @param <T> Item type
+ */
+class TimerWheel<T> {
+
+    private final long tickMillis;
+    private final List<List<Timer<T>>> slots;
+    private long currentTick;
+    private int size;
+
+    /**
+     * Creates wheel.
+     *
+     * @param tickMillis Resolution of deadlines
+     * @param slotCount  Number of slots in a turn
+     * @param nowMillis  Current time
+     */
+    TimerWheel(long tickMillis, int slotCount, long nowMillis) {
+        this.tickMillis = tickMillis;
+        slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new ArrayList<>());
+        }
+        currentTick = nowMillis / tickMillis;
+    }
+
+    void schedule(T item, long deadlineMillis) {
+        long tick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, currentTick + 1);
+        slot(tick).add(new Timer<>(item, tick));
+        size++;
+    }
+
+    /**
+     * Expires timers with deadlines up to the time.
+     *
+     * @param nowMillis Current time
+     * @param expired   Handler of expired items
+     */
+    void advance(long nowMillis, Consumer<T> expired) {
+        long target = nowMillis / tickMillis;
+        if (target <= currentTick) {
+            return;
+        }
+
+        long from = Math.max(currentTick + 1, target - slots.size() + 1);
+        currentTick = target;
+        for (long tick = from; tick <= target; tick++) {
+            List<Timer<T>> slot = slot(tick);
+            int kept = 0;
+            for (int i = 0; i < slot.size(); i++) {
+                Timer<T> timer = slot.get(i);
+                if (timer.tick <= target) {
+                    size--;
+                    expired.accept(timer.item);
+                } else {
+                    slot.set(kept++, timer);
+                }
+            }
+            slot.subList(kept, slot.size()).clear();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        slots.forEach(List::clear);
+        size = 0;
+    }
+
+    private List<Timer<T>> slot(long tick) {
+        return slots.get((int) (tick % slots.size()));
+    }
+
+    private static final class Timer<T> {
+        private final T item;
+        private final long tick;
+
+        private Timer(T item, long tick) {
+            this.item = item;
+            this.tick = tick;
+        }
+    }
+}
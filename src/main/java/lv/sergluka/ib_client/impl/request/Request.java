@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.FluxSink;
 
+import java.util.BitSet;
 import java.util.function.Consumer;
 
 class Request<T> {
@@ -14,7 +15,9 @@ class Request<T> {
     private final RequestKey key;
     private final Consumer<Integer> registrationFn;
     private final Consumer<Integer> unregistrationFn;
+    private final Consumer<Integer> releaseFn;
     private final Object userData;
+    private final BitSet fields;
 
     @Override
     public String toString() {
@@ -31,13 +34,17 @@ class Request<T> {
             RequestKey key,
             Consumer<Integer> registrationFn,
             Consumer<Integer> unregistrationFn,
-            Object userData) {
+            Consumer<Integer> releaseFn,
+            Object userData,
+            BitSet fields) {
 
         this.emitter = emitter;
         this.key = key;
         this.registrationFn = registrationFn;
         this.unregistrationFn = unregistrationFn;
+        this.releaseFn = releaseFn;
         this.userData = userData;
+        this.fields = fields;
     }
 
     void unregister() {
@@ -51,6 +58,16 @@ class Request<T> {
         }
     }
 
+    void release() {
+        try {
+            if (releaseFn != null) {
+                releaseFn.accept(key.getId());
+            }
+        } catch (Exception e) {
+            log.error("Error release request {}: {}", this, e.getMessage(), e);
+        }
+    }
+
     void onNext(T data) {
         emitter.next(data);
     }
@@ -67,6 +84,10 @@ class Request<T> {
         emitter.error(throwable);
     }
 
+    boolean acceptsField(int field) {
+        return fields == null || field >= 0 && fields.get(field);
+    }
+
     Object getUserData() {
         return userData;
     }
@@ -33,9 +33,10 @@ public class RequestKey {
         return (type == null || type == typeKey.type) && Objects.equals(id, typeKey.id);
     }
 
+    // Type isn't used, as soon key without type matches keys of any type with the same ID
     @Override
     public int hashCode() {
-        return 0;
+        return Objects.hashCode(id);
     }
 
     @Override
@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 
+import java.util.BitSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -27,7 +28,10 @@ public class RequestRepository implements AutoCloseable {
 
     @Override
     public void close() {
-        requests.values().forEach(Request::unregister);
+        requests.values().forEach(request -> {
+            request.unregister();
+            request.release();
+        });
         requests.clear();
         log.debug("RequestRepository is closed");
     }
@@ -40,6 +44,24 @@ public class RequestRepository implements AutoCloseable {
         get(type, reqId, shouldExists).ifPresent(request -> request.onNext(data));
     }
 
+    /**
+     * Emits data only if the request is interested in the field.
+     *
+     * @param type         Request type
+     * @param reqId        Request ID
+     * @param data         Data to emit
+     * @param field        Field changed by the update
+     * @param shouldExists Whether absence of the request is an error
+     * @see RequestBuilder#fields
+     */
+    public <T> void onNext(Type type, Integer reqId, T data, int field, Boolean shouldExists) {
+        get(type, reqId, shouldExists).ifPresent(request -> {
+            if (request.acceptsField(field)) {
+                request.onNext(data);
+            }
+        });
+    }
+
     public void onError(Type type, Integer reqId, Throwable throwable, Boolean shouldExists) {
         get(type, reqId, shouldExists).ifPresent(request -> request.onError(throwable));
     }
@@ -67,6 +89,23 @@ public class RequestRepository implements AutoCloseable {
         });
     }
 
+    /**
+     * Resolves data sink of a registered request, so data can be passed to it without lookup by ID.
+     *
+     * @param type  Request type
+     * @param reqId Request ID
+     * @return sink, which is valid until the request is disposed
+     * @throws IllegalStateException if request isn't registered
+     */
+    public <T> Consumer<T> sink(Type type, int reqId) {
+        @SuppressWarnings("unchecked")
+        Request<T> request = requests.get(new RequestKey(type, reqId));
+        if (request == null) {
+            throw new IllegalStateException(String.format("Cannot find request '%s' id=%d", type, reqId));
+        }
+        return request::onNext;
+    }
+
     public Object getUserData(Type type, int reqId) {
         return get(type, reqId, true).map(Request::getUserData).orElse(null);
     }
@@ -98,9 +137,14 @@ public class RequestRepository implements AutoCloseable {
         EVENT_POSITION_MULTI,
         EVENT_ORDER_STATUS,
         EVENT_MARKET_DATA,
+        EVENT_OPTION_COMPUTATION,
         EVENT_MARKET_DATA_LVL2,
+        EVENT_ORDER_BOOK_UPDATES,
         EVENT_PORTFOLIO,
         EVENT_HISTORICAL_DATA,
+        EVENT_BAR_WINDOW,
+        EVENT_REALTIME_BARS,
+        EVENT_AGGREGATED_BARS,
         EVENT_EXECUTION_INFO,
         REQ_MARKET_DATA,
         REQ_MARKET_DEPTH_EXCHANGES,
@@ -122,7 +166,9 @@ public class RequestRepository implements AutoCloseable {
         private RequestRepository.Type type;
         private Consumer<Integer> register;
         private Consumer<Integer> unregister;
+        private Consumer<Integer> release;
         private Object userData;
+        private BitSet fields;
         private boolean withId = false;
         private Integer id;
 
@@ -159,11 +205,35 @@ public class RequestRepository implements AutoCloseable {
             return this;
         }
 
+        /**
+         * Sets function, which releases local resources of the request, e.g. its cache entries. Unlike
+         * {@link #unregister}, it's called on dispose even if there is no connection.
+         *
+         * @param newRelease Release function, receives request ID
+         * @return this
+         */
+        public RequestBuilder<T> release(Consumer<Integer> newRelease) {
+            this.release = newRelease;
+            withId = true;
+            return this;
+        }
+
         public RequestBuilder<T> userData(Object data) {
             this.userData = data;
             return this;
         }
 
+        /**
+         * Limits data to updates of given fields only. All updates are emitted by default.
+         *
+         * @param newFields Field numbers of interest
+         * @return this
+         */
+        public RequestBuilder<T> fields(BitSet newFields) {
+            this.fields = newFields;
+            return this;
+        }
+
         public RequestBuilder<T> id(int newId) {
             this.id = newId;
             withId = true;
@@ -191,7 +261,8 @@ public class RequestRepository implements AutoCloseable {
                 }
 
                 RequestKey key = new RequestKey(type, requestId);
-                Request<T> request = new Request<>(emitter, key, register, unregister, userData);
+                Request<T> request = new Request<>(emitter, key, register, unregister, release, userData,
+                                                   fields);
 
                 if (!client.isConnected()) {
                     emitter.error(new IbExceptions.NotConnectedError());
@@ -213,6 +284,7 @@ public class RequestRepository implements AutoCloseable {
                     } else {
                         log.debug("Have no connection at unregister of {}", key);
                     }
+                    request.release();
                 });
 
                 request.register();
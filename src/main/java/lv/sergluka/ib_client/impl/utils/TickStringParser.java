@@ -0,0 +1,208 @@
+package lv.sergluka.ib_client.impl.utils;
+
+import lv.sergluka.ib_client.types.IbRtVolume;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Parser of string ticks, which are sent by TWS as delimited text.
+ *
+ * <p>Fields are parsed in place without substrings or boxing, so a well-formed value doesn't allocate. Rare
+ * values that can't be parsed exactly this way (exponent notation, too many digits) fall back to
+ * {@link Double#parseDouble}.
+ */
+public class TickStringParser {
+
+    private static final char SEPARATOR = ';';
+    private static final String TRUE = "true";
+
+    // Doubles up to 10^22 are exact, so division by them gives correctly rounded result
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final int DOUBLE_MANTISSA_BITS = 53;
+    // Integers up to 2^53 are exact in double
+    private static final long MAX_EXACT_LONG_IN_DOUBLE = 1L << DOUBLE_MANTISSA_BITS;
+    // Any number of that many digits fits into long
+    private static final int MAX_SAFE_LONG_DIGITS = 18;
+    private static final int RADIX = 10;
+
+    private static final int YEAR_END = 4;
+    private static final int MONTH_END = 6;
+    private static final int DATE_LENGTH = 8;
+    private static final int HOURS_END = 2;
+    private static final int MINUTES_END = 5;
+    private static final int TIME_LENGTH = 8;
+    private static final long SECONDS_PER_MINUTE = 60;
+    private static final long SECONDS_PER_HOUR = 3600;
+    private static final long SECONDS_PER_DAY = 86400;
+
+    /**
+     * Parses RT_VOLUME or RT_TRADE_VOLUME tick.
+     *
+     * <p>Format is "price;size;time;totalVolume;vwap;singleTrade", where price and size are empty for updates
+     * that only change total volume.
+     *
+     * @param value  Tick value
+     * @param target Object to update
+     * @throws NumberFormatException if value is malformed. Target isn't changed in that case
+     */
+    public static void parseRtVolume(String value, IbRtVolume target) {
+        final int priceEnd = fieldEnd(value, 0);
+        final int sizeEnd = fieldEnd(value, priceEnd + 1);
+        final int timeEnd = fieldEnd(value, sizeEnd + 1);
+        final int totalVolumeEnd = fieldEnd(value, timeEnd + 1);
+        final int vwapEnd = fieldEnd(value, totalVolumeEnd + 1);
+        if (vwapEnd >= value.length()) {
+            throw new NumberFormatException("RT_VOLUME should contain 6 fields: '" + value + "'");
+        }
+
+        final double price = parseDouble(value, 0, priceEnd);
+        final long size = parseLong(value, priceEnd + 1, sizeEnd);
+        final long time = parseLong(value, sizeEnd + 1, timeEnd);
+        final long totalVolume = parseLong(value, timeEnd + 1, totalVolumeEnd);
+        final double vwap = parseDouble(value, totalVolumeEnd + 1, vwapEnd);
+        final boolean singleTrade = value.regionMatches(true, vwapEnd + 1, TRUE, 0, TRUE.length());
+
+        target.update(price, size, time, totalVolume, vwap, singleTrade);
+    }
+
+    /**
+     * Parses LAST_TIMESTAMP tick.
+     *
+     * @param value Tick value
+     * @return seconds since epoch
+     * @throws NumberFormatException if value is malformed
+     */
+    public static long parseTimestamp(String value) {
+        return parseLong(value, 0, value.length());
+    }
+
+    /**
+     * Parses time of historical bar.
+     *
+     * <p>Format is "yyyyMMdd" for daily bars and "yyyyMMdd  HH:mm:ss" for intraday ones, in TWS time zone.
+     *
+     * @param value Bar time
+     * @return seconds of the local date-time since epoch, the same as {@link java.time.LocalDateTime#toEpochSecond}
+     * with UTC offset
+     * @throws NumberFormatException if value is malformed
+     */
+    public static long parseBarTime(String value) {
+        if (value.length() < DATE_LENGTH) {
+            throw new NumberFormatException("Bar time should start with yyyyMMdd: '" + value + "'");
+        }
+
+        final int year = (int) parseLong(value, 0, YEAR_END);
+        final int month = (int) parseLong(value, YEAR_END, MONTH_END);
+        final int day = (int) parseLong(value, MONTH_END, DATE_LENGTH);
+        final long days;
+        try {
+            days = LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            throw new NumberFormatException("Invalid bar date: '" + value + "'");
+        }
+
+        int from = DATE_LENGTH;
+        while (from < value.length() && value.charAt(from) == ' ') {
+            from++;
+        }
+        if (from + TIME_LENGTH > value.length()) {
+            return days * SECONDS_PER_DAY;
+        }
+        if (value.charAt(from + HOURS_END) != ':' || value.charAt(from + MINUTES_END) != ':') {
+            throw new NumberFormatException("Bar time should be HH:mm:ss: '" + value + "'");
+        }
+
+        final long hours = parseLong(value, from, from + HOURS_END);
+        final long minutes = parseLong(value, from + HOURS_END + 1, from + MINUTES_END);
+        final long seconds = parseLong(value, from + MINUTES_END + 1, from + TIME_LENGTH);
+        return days * SECONDS_PER_DAY + hours * SECONDS_PER_HOUR + minutes * SECONDS_PER_MINUTE + seconds;
+    }
+
+    /**
+     * Parses decimal number from the part of the string.
+     *
+     * @param value String
+     * @param from  Start index, inclusive
+     * @param to    End index, exclusive
+     * @return number or {@link Double#NaN} if the part is empty
+     * @throws NumberFormatException if the part isn't a number
+     */
+    public static double parseDouble(String value, int from, int to) {
+        if (from >= to) {
+            return Double.NaN;
+        }
+
+        final boolean negative = value.charAt(from) == '-';
+        long mantissa = 0;
+        int scale = -1;
+        int digits = 0;
+        for (int i = negative ? from + 1 : from; i < to; i++) {
+            final char ch = value.charAt(i);
+            if (ch == '.' && scale < 0) {
+                scale = 0;
+                continue;
+            }
+            if (ch < '0' || ch > '9') {
+                return Double.parseDouble(value.substring(from, to));
+            }
+            if (mantissa >= MAX_EXACT_LONG_IN_DOUBLE / RADIX) {
+                return Double.parseDouble(value.substring(from, to));
+            }
+            mantissa = mantissa * RADIX + (ch - '0');
+            digits++;
+            if (scale >= 0) {
+                scale++;
+            }
+        }
+
+        if (digits == 0) {
+            throw new NumberFormatException("Not a number: '" + value.substring(from, to) + "'");
+        }
+        if (scale >= POW10.length) {
+            return Double.parseDouble(value.substring(from, to));
+        }
+
+        final double result = scale > 0 ? mantissa / POW10[scale] : mantissa;
+        return negative ? -result : result;
+    }
+
+    /**
+     * Parses integer number from the part of the string.
+     *
+     * @param value String
+     * @param from  Start index, inclusive
+     * @param to    End index, exclusive
+     * @return number or 0 if the part is empty
+     * @throws NumberFormatException if the part isn't an integer number
+     */
+    public static long parseLong(String value, int from, int to) {
+        if (from >= to) {
+            return 0;
+        }
+
+        final boolean negative = value.charAt(from) == '-';
+        final int start = negative ? from + 1 : from;
+        if (start == to || to - start > MAX_SAFE_LONG_DIGITS) {
+            return Long.parseLong(value.substring(from, to));
+        }
+
+        long result = 0;
+        for (int i = start; i < to; i++) {
+            final char ch = value.charAt(i);
+            if (ch < '0' || ch > '9') {
+                throw new NumberFormatException("Not an integer: '" + value.substring(from, to) + "'");
+            }
+            result = result * RADIX + (ch - '0');
+        }
+        return negative ? -result : result;
+    }
+
+    private static int fieldEnd(String value, int from) {
+        final int end = value.indexOf(SEPARATOR, from);
+        return end < 0 ? value.length() : end;
+    }
+}
@@ -1,12 +1,31 @@
 package lv.sergluka.ib_client.params;
 
+import lv.sergluka.ib_client.types.IbOrder;
+
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Objects;
 
 public class IbClientOptions {
 
+    public static final Duration DEFAULT_EXECUTION_JOIN_TIMEOUT = Duration.ofMinutes(1);
+
     private static final int DEFAULT_DELAY_S = 10;
 
     private Duration connectionDelay = Duration.ofSeconds(DEFAULT_DELAY_S);
+    private int offHeapOrderBookRows;
+    private int orderStatusHistory = IbOrder.DEFAULT_STATUS_HISTORY;
+    private int retainedCount = -1;
+    private Duration retainedAge;
+    private Path archiveFile;
+    private Duration executionJoinTimeout = DEFAULT_EXECUTION_JOIN_TIMEOUT;
+    private Path snapshotFile;
+    private Duration snapshotInterval;
+    private Path contractDetailsFile;
+    private Duration contractDetailsTtl;
+    private Path symbolSearchFile;
+    private Duration symbolSearchTtl;
+    private boolean positionChangesOnly;
 
     /**
      * Delay before connection to TWS.
@@ -22,7 +41,221 @@ public class IbClientOptions {
         return this;
     }
 
+    /**
+     * Keep levels of order books in direct memory instead of the heap.
+     *
+     * <p>Every book takes a slot of the same size, so it's useful when books of hundreds of contracts are kept in
+     * the process. Market depth subscriptions can't request more rows than the slot holds.
+     *
+     * <p>Books are kept on the heap by default. Updates of a direct book are about a third slower, and levels on the
+     * heap are primitive arrays, which add nothing to GC work per update. So direct memory only reduces the heap
+     * size; use it if the heap is limited, not for latency.
+     *
+     * @param maxRows Number of levels per side of every book, 0 to keep books on the heap
+     * @return this
+     */
+    public IbClientOptions offHeapOrderBooks(int maxRows) {
+        this.offHeapOrderBookRows = maxRows;
+        return this;
+    }
+
+    /**
+     * Number of the latest statuses kept by every order, besides the first and the terminal ones.
+     *
+     * @param size History size, {@link IbOrder#DEFAULT_STATUS_HISTORY} by default
+     * @return this
+     */
+    public IbClientOptions orderStatusHistory(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Status history size should be positive");
+        }
+        this.orderStatusHistory = size;
+        return this;
+    }
+
+    /**
+     * Limits filled, cancelled and inactive orders and executions with commission reports, which are kept by the cache.
+     * Older ones are evicted, see {@link #archiveTo}. Otherwise they are kept until disconnection.
+     *
+     * @param maxCount Max number of orders and, separately, of executions
+     * @param maxAge   Max time since the order is done or the commission is reported, null for no limit
+     * @return this
+     */
+    public IbClientOptions retainTerminal(int maxCount, Duration maxAge) {
+        if (maxCount < 0) {
+            throw new IllegalArgumentException("Max count should be positive or 0");
+        }
+        this.retainedCount = maxCount;
+        this.retainedAge = maxAge;
+        return this;
+    }
+
+    /**
+     * Appends orders and executions, evicted by {@link #retainTerminal}, to the file.
+     *
+     * @param file Archive file, which is created if needed and is never truncated
+     * @return this
+     * @see lv.sergluka.ib_client.CacheRepository#findArchivedOrders
+     */
+    public IbClientOptions archiveTo(Path file) {
+        this.archiveFile = file;
+        return this;
+    }
+
+    /**
+     * Max time to wait for a commission report of an execution, or for an execution of an early commission report.
+     *
+     * <p>An execution without commission is kept by the cache after the timeout, the commission is attached if it
+     * arrives later. A commission without execution is dropped.
+     *
+     * @param timeout Timeout, {@link #DEFAULT_EXECUTION_JOIN_TIMEOUT} by default
+     * @return this
+     * @see lv.sergluka.ib_client.CacheRepository#getExecutionJoinStats
+     */
+    public IbClientOptions executionJoinTimeout(Duration timeout) {
+        Objects.requireNonNull(timeout, "'timeout' parameter is null");
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Execution join timeout should not be negative");
+        }
+        this.executionJoinTimeout = timeout;
+        return this;
+    }
+
+    /**
+     * Persists the cache to the file and restores it on connection, so orders, positions, portfolio, executions and
+     * the last prices are available before TWS replays them. Restored entries, which TWS doesn't confirm, are dropped
+     * when the replay ends.
+     *
+     * @param file     Snapshot file
+     * @param interval Interval of writing changes
+     * @return this
+     * @see lv.sergluka.ib_client.CacheRepository#isReconciled
+     */
+    public IbClientOptions cacheSnapshot(Path file, Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Snapshot interval should be positive");
+        }
+        this.snapshotFile = file;
+        this.snapshotInterval = interval;
+        return this;
+    }
+
+    /**
+     * Caches replies of {@link lv.sergluka.ib_client.IbClient#reqContractDetails} for the TTL. The cache is shared
+     * by all connections of the client and, if the file is defined, is kept there between restarts.
+     *
+     * @param file File of the cache, null to keep it in memory only
+     * @param ttl  Time to live of cached details
+     * @return this
+     * @see lv.sergluka.ib_client.IbClient#prefetchContractDetails
+     */
+    public IbClientOptions contractDetailsCache(Path file, Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Contract details TTL should be positive");
+        }
+        this.contractDetailsFile = file;
+        this.contractDetailsTtl = ttl;
+        return this;
+    }
+
+    /**
+     * Caches replies of {@link lv.sergluka.ib_client.IbClient#reqMatchingSymbols} by the pattern for the TTL. The cache
+     * is shared by all connections of the client and, if the file is defined, is preloaded from it and is kept there
+     * between restarts.
+     *
+     * @param file File of the cache, null to keep it in memory only
+     * @param ttl  Time to live of cached results
+     * @return this
+     */
+    public IbClientOptions symbolSearchCache(Path file, Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Symbol search TTL should be positive");
+        }
+        this.symbolSearchFile = file;
+        this.symbolSearchTtl = ttl;
+        return this;
+    }
+
+    /**
+     * Publishes a position by {@link lv.sergluka.ib_client.IbClient#subscribeOnPositionChange()} only if its quantity
+     * or average cost differs from the cached one, so repeated subscriptions don't push unchanged positions.
+     *
+     * @param changesOnly Whether to skip unchanged positions, false by default
+     * @return this
+     */
+    public IbClientOptions positionChangesOnly(boolean changesOnly) {
+        this.positionChangesOnly = changesOnly;
+        return this;
+    }
+
     public Duration getConnectionDelay() {
         return connectionDelay;
     }
+
+    public int getOffHeapOrderBookRows() {
+        return offHeapOrderBookRows;
+    }
+
+    public int getOrderStatusHistory() {
+        return orderStatusHistory;
+    }
+
+    /**
+     * Returns max number of kept terminal orders and executions.
+     *
+     * @return number or -1 if the retention isn't limited
+     */
+    public int getRetainedCount() {
+        return retainedCount;
+    }
+
+    public Duration getRetainedAge() {
+        return retainedAge;
+    }
+
+    public Path getArchiveFile() {
+        return archiveFile;
+    }
+
+    public Duration getExecutionJoinTimeout() {
+        return executionJoinTimeout;
+    }
+
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public Duration getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public Path getContractDetailsFile() {
+        return contractDetailsFile;
+    }
+
+    /**
+     * Returns time to live of cached contract details.
+     *
+     * @return TTL or null if contract details aren't cached
+     */
+    public Duration getContractDetailsTtl() {
+        return contractDetailsTtl;
+    }
+
+    public Path getSymbolSearchFile() {
+        return symbolSearchFile;
+    }
+
+    /**
+     * Returns time to live of cached symbol search results.
+     *
+     * @return TTL or null if results aren't cached
+     */
+    public Duration getSymbolSearchTtl() {
+        return symbolSearchTtl;
+    }
+
+    public boolean isPositionChangesOnly() {
+        return positionChangesOnly;
+    }
 }
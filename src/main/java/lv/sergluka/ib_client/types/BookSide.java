@@ -0,0 +1,138 @@
+package lv.sergluka.ib_client.types;
+
+/**
+ * Levels of one order book side in the order TWS maintains them.
+ *
+ * <p>Implementations only store levels, the update logic is common. Storage may have a fixed capacity, then levels
+ * beyond it are dropped: TWS doesn't send more levels than requested, so it happens only if the book is smaller
+ * than the request.
+ */
+abstract class BookSide implements PriceLevels {
+
+    static final int NO_MARKET_MAKER = -1;
+
+    private final CumulativeDepth cumulative;
+
+    BookSide(int capacity) {
+        cumulative = new CumulativeDepth(capacity);
+    }
+
+    CumulativeDepth getCumulative() {
+        return cumulative;
+    }
+
+    /**
+     * Returns level, which an insert at the position pushes out of the full storage.
+     *
+     * @param position Position of the insert
+     * @return level or -1 if nothing is pushed out
+     */
+    int evictedByInsert(int position) {
+        int depth = getDepth();
+        if (ensureCapacity(depth + 1) || Math.min(position, depth) >= getCapacity()) {
+            return -1;
+        }
+        return getCapacity() - 1;
+    }
+
+    /**
+     * Inserts the level.
+     *
+     * @return level, where it has been stored, or -1 if it's beyond the capacity
+     */
+    int insert(int position, double price, int size, int marketMaker) {
+        int depth = getDepth();
+        int at = Math.min(position, depth);
+        if (!ensureCapacity(depth + 1)) {
+            if (at >= getCapacity()) {
+                return -1;
+            }
+            // The last level is pushed out of the book
+            depth = getCapacity() - 1;
+        }
+        shift(at, at + 1, depth - at);
+        setLevel(at, price, size, marketMaker);
+        setDepth(depth + 1);
+        cumulative.markChanged(at);
+        return at;
+    }
+
+    /**
+     * Replaces the level.
+     *
+     * <p>Position beyond the depth is clamped to it, like at insert, so the level is appended to the side. TWS may
+     * update a level it hasn't inserted yet, e.g. after the book was cleared by reconnect, but the gap is never
+     * padded: a wrong position would otherwise grow the side without limit.
+     *
+     * @return level, where it has been stored, or -1 if it's beyond the capacity
+     */
+    int update(int position, double price, int size, int marketMaker) {
+        int depth = getDepth();
+        int at = Math.min(position, depth);
+        if (at == depth) {
+            if (!ensureCapacity(depth + 1)) {
+                return -1;
+            }
+            setDepth(depth + 1);
+        }
+        setLevel(at, price, size, marketMaker);
+        cumulative.markChanged(at);
+        return at;
+    }
+
+    void delete(int position) {
+        int depth = getDepth();
+        if (position >= depth) {
+            return;
+        }
+        shift(position + 1, position, depth - position - 1);
+        setDepth(depth - 1);
+        cumulative.markChanged(position);
+    }
+
+    void clear() {
+        setDepth(0);
+        cumulative.markChanged(0);
+    }
+
+    abstract int getMarketMaker(int level);
+
+    /**
+     * Copies top levels into the snapshot.
+     *
+     * <p>Can be called at optimistic read, so it must not fail on inconsistent state. The result is discarded by
+     * the caller in that case.
+     *
+     * @param target       Snapshot to fill
+     * @param side         TWS side
+     * @param marketMakers Interned market makers
+     */
+    abstract void copyTo(IbOrderBookSnapshot target, int side, String[] marketMakers);
+
+    abstract int getCapacity();
+
+    /**
+     * Makes room for the levels.
+     *
+     * @param capacity Required number of levels
+     * @return false if the storage cannot hold that many levels
+     */
+    abstract boolean ensureCapacity(int capacity);
+
+    abstract void setDepth(int depth);
+
+    abstract void setLevel(int level, double price, int size, int marketMaker);
+
+    /**
+     * Moves levels inside the storage, like {@link System#arraycopy}.
+     *
+     * @param from  First level to move
+     * @param to    New position of the first level
+     * @param count Number of levels
+     */
+    abstract void shift(int from, int to, int count);
+
+    static String marketMakerName(int id, String[] marketMakers) {
+        return id >= 0 && id < marketMakers.length ? marketMakers[id] : null;
+    }
+}
@@ -0,0 +1,87 @@
+package lv.sergluka.ib_client.types;
+
+import java.util.Arrays;
+
+/**
+ * Running totals of size and notional from the best level of a book side.
+ *
+ * <p>Owner marks the first changed level, so refresh recalculates only totals from that level.
+ */
+class CumulativeDepth {
+
+    private long[] sizes;
+    private double[] notionals;
+    private int changedFrom;
+
+    CumulativeDepth(int capacity) {
+        sizes = new long[capacity];
+        notionals = new double[capacity];
+    }
+
+    void markChanged(int level) {
+        changedFrom = Math.min(changedFrom, level);
+    }
+
+    void refresh(PriceLevels levels) {
+        int depth = levels.getDepth();
+        if (sizes.length < depth) {
+            int newCapacity = Math.max(depth, sizes.length * 2);
+            sizes = Arrays.copyOf(sizes, newCapacity);
+            notionals = Arrays.copyOf(notionals, newCapacity);
+        }
+
+        for (int i = changedFrom; i < depth; i++) {
+            long size = i > 0 ? sizes[i - 1] : 0;
+            double notional = i > 0 ? notionals[i - 1] : 0;
+            // Levels without size may have no price, e.g. gaps of an incomplete book
+            int levelSize = levels.getSize(i);
+            if (levelSize > 0) {
+                size += levelSize;
+                notional += levels.getPrice(i) * levelSize;
+            }
+            sizes[i] = size;
+            notionals[i] = notional;
+        }
+        changedFrom = depth;
+    }
+
+    /**
+     * Returns total size of the first levels.
+     *
+     * @param levels Number of levels, not more than refreshed depth
+     * @return total size
+     */
+    long getSize(int levels) {
+        return levels > 0 ? sizes[levels - 1] : 0;
+    }
+
+    /**
+     * Returns average price to fill the quantity by walking the levels from the best one.
+     *
+     * @param levels   Refreshed levels
+     * @param quantity Quantity to fill
+     * @return average price or {@link Double#NaN} if the side doesn't have enough size
+     */
+    double getFillPrice(PriceLevels levels, double quantity) {
+        int depth = levels.getDepth();
+        if (depth == 0 || quantity <= 0 || sizes[depth - 1] < quantity) {
+            return Double.NaN;
+        }
+
+        // First level where the running size reaches the quantity
+        int low = 0;
+        int high = depth - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sizes[middle] < quantity) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        long sizeBefore = low > 0 ? sizes[low - 1] : 0;
+        double notionalBefore = low > 0 ? notionals[low - 1] : 0;
+        return (notionalBefore + (quantity - sizeBefore) * levels.getPrice(low)) / quantity;
+    }
+}
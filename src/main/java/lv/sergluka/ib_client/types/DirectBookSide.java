@@ -0,0 +1,112 @@
+package lv.sergluka.ib_client.types;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Book side kept in a region of a buffer, normally of direct memory.
+ *
+ * <p>The region has a fixed layout:
+ * <pre>
+ * depth: int, padding: int, prices: double[capacity], sizes: int[capacity], market makers: int[capacity]
+ * </pre>
+ */
+class DirectBookSide extends BookSide {
+
+    private static final int DEPTH_OFFSET = 0;
+    private static final int HEADER_SIZE = Long.BYTES;
+    private static final int LEVEL_SIZE = Double.BYTES + Integer.BYTES + Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final int sizesOffset;
+    private final int marketMakersOffset;
+
+    /**
+     * Creates book side in the buffer region.
+     *
+     * @param buffer   Storage
+     * @param offset   Offset of the region
+     * @param capacity Number of levels, see {@link #getStorageSize}
+     */
+    DirectBookSide(ByteBuffer buffer, int offset, int capacity) {
+        super(capacity);
+        ByteBuffer region = buffer.duplicate();
+        region.position(offset);
+        region.limit(offset + getStorageSize(capacity));
+        this.buffer = region.slice().order(ByteOrder.nativeOrder());
+        this.capacity = capacity;
+        sizesOffset = HEADER_SIZE + capacity * Double.BYTES;
+        marketMakersOffset = sizesOffset + capacity * Integer.BYTES;
+        setDepth(0);
+    }
+
+    static int getStorageSize(int capacity) {
+        return HEADER_SIZE + capacity * LEVEL_SIZE;
+    }
+
+    @Override
+    public int getDepth() {
+        return buffer.getInt(DEPTH_OFFSET);
+    }
+
+    @Override
+    public double getPrice(int level) {
+        return buffer.getDouble(HEADER_SIZE + level * Double.BYTES);
+    }
+
+    @Override
+    public int getSize(int level) {
+        return buffer.getInt(sizesOffset + level * Integer.BYTES);
+    }
+
+    @Override
+    int getMarketMaker(int level) {
+        return buffer.getInt(marketMakersOffset + level * Integer.BYTES);
+    }
+
+    @Override
+    void copyTo(IbOrderBookSnapshot target, int side, String[] names) {
+        int count = Math.min(getDepth(), Math.min(capacity, target.getCapacity()));
+        for (int i = 0; i < count; i++) {
+            target.setLevel(side, i, getPrice(i), getSize(i), marketMakerName(getMarketMaker(i), names));
+        }
+        target.setDepth(side, Math.max(count, 0));
+    }
+
+    @Override
+    int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    boolean ensureCapacity(int required) {
+        return required <= capacity;
+    }
+
+    @Override
+    void setDepth(int depth) {
+        buffer.putInt(DEPTH_OFFSET, depth);
+    }
+
+    @Override
+    void setLevel(int level, double price, int size, int marketMaker) {
+        buffer.putDouble(HEADER_SIZE + level * Double.BYTES, price);
+        buffer.putInt(sizesOffset + level * Integer.BYTES, size);
+        buffer.putInt(marketMakersOffset + level * Integer.BYTES, marketMaker);
+    }
+
+    @Override
+    void shift(int from, int to, int count) {
+        // Overlapping regions, so copy from the end when moving levels down
+        if (to > from) {
+            for (int i = count - 1; i >= 0; i--) {
+                setLevel(to + i, getPrice(from + i), getSize(from + i), getMarketMaker(from + i));
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                setLevel(to + i, getPrice(from + i), getSize(from + i), getMarketMaker(from + i));
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package lv.sergluka.ib_client.types;
+
+import java.util.Arrays;
+
+/**
+ * Book side kept in primitive arrays, which grow on demand.
+ */
+class HeapBookSide extends BookSide {
+
+    private double[] prices;
+    private int[] sizes;
+    private int[] marketMakers;
+    private int depth;
+
+    HeapBookSide(int capacity) {
+        super(capacity);
+        prices = new double[capacity];
+        sizes = new int[capacity];
+        marketMakers = new int[capacity];
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public double getPrice(int level) {
+        return prices[level];
+    }
+
+    @Override
+    public int getSize(int level) {
+        return sizes[level];
+    }
+
+    @Override
+    int getMarketMaker(int level) {
+        return marketMakers[level];
+    }
+
+    @Override
+    void copyTo(IbOrderBookSnapshot target, int side, String[] names) {
+        // Arrays can be replaced by growth meanwhile, so all indexes are checked against the captured ones
+        double[] levelPrices = prices;
+        int[] levelSizes = sizes;
+        int[] ids = marketMakers;
+
+        int count = Math.min(depth, target.getCapacity());
+        count = Math.min(count, Math.min(levelPrices.length, Math.min(levelSizes.length, ids.length)));
+
+        for (int i = 0; i < count; i++) {
+            target.setLevel(side, i, levelPrices[i], levelSizes[i], marketMakerName(ids[i], names));
+        }
+        target.setDepth(side, Math.max(count, 0));
+    }
+
+    @Override
+    int getCapacity() {
+        return prices.length;
+    }
+
+    @Override
+    boolean ensureCapacity(int capacity) {
+        if (capacity <= prices.length) {
+            return true;
+        }
+        int newCapacity = Math.max(capacity, prices.length * 2);
+        prices = Arrays.copyOf(prices, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        marketMakers = Arrays.copyOf(marketMakers, newCapacity);
+        return true;
+    }
+
+    @Override
+    void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    @Override
+    void setLevel(int level, double price, int size, int marketMaker) {
+        prices[level] = price;
+        sizes[level] = size;
+        marketMakers[level] = marketMaker;
+    }
+
+    @Override
+    void shift(int from, int to, int count) {
+        System.arraycopy(prices, from, prices, to, count);
+        System.arraycopy(sizes, from, sizes, to, count);
+        System.arraycopy(marketMakers, from, marketMakers, to, count);
+    }
+}
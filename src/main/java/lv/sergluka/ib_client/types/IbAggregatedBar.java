@@ -0,0 +1,44 @@
+package lv.sergluka.ib_client.types;
+
+import com.google.common.base.Objects;
+import lv.sergluka.ib_client.IbClient;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bar built on the client side from the trades stream.
+ *
+ * @see IbClient#subscribeOnAggregatedBars
+ */
+public class IbAggregatedBar extends IbBar {
+
+    private final IbClient.BarSize size;
+
+    public IbAggregatedBar(IbClient.BarSize size, LocalDateTime time, double open, double high, double low,
+                           double close, long volume, int count, double wap) {
+        super(time, open, high, low, close, volume, count, wap);
+        this.size = size;
+    }
+
+    public IbClient.BarSize getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return size + super.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof IbAggregatedBar)) {
+            return false;
+        }
+        return size == ((IbAggregatedBar) o).size && super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(super.hashCode(), size);
+    }
+}
@@ -0,0 +1,147 @@
+package lv.sergluka.ib_client.types;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Compact record of an execution with its commission, evicted from the cache to the archive.
+ *
+ * @see lv.sergluka.ib_client.CacheRepository#findArchivedExecutions
+ */
+@SuppressWarnings("unused")
+public class IbArchivedExecution {
+
+    private final String execId;
+    private final int orderId;
+    private final String account;
+    private final int conid;
+    private final String symbol;
+    private final LocalDateTime time;
+    private final String side;
+    private final BigDecimal shares;
+    private final BigDecimal price;
+    private final BigDecimal commission;
+    private final String currency;
+    private final BigDecimal realizedPnl;
+    private final long archivedAt;
+
+    public IbArchivedExecution(String execId, int orderId, String account, int conid, String symbol,
+                               LocalDateTime time, String side, BigDecimal shares, BigDecimal price,
+                               BigDecimal commission, String currency, BigDecimal realizedPnl, long archivedAt) {
+        this.execId = execId;
+        this.orderId = orderId;
+        this.account = account;
+        this.conid = conid;
+        this.symbol = symbol;
+        this.time = time;
+        this.side = side;
+        this.shares = shares;
+        this.price = price;
+        this.commission = commission;
+        this.currency = currency;
+        this.realizedPnl = realizedPnl;
+        this.archivedAt = archivedAt;
+    }
+
+    /**
+     * Makes record of the execution report.
+     *
+     * @param report     Cached report
+     * @param archivedAt Time of eviction, milliseconds since epoch
+     * @return new record
+     */
+    public static IbArchivedExecution of(IbExecutionReport report, long archivedAt) {
+        IbExecution execution = report.getExecution();
+        IbCommissionReport commission = report.getCommission();
+        return new IbArchivedExecution(execution.getExecId(),
+                                       execution.getOrderId(),
+                                       execution.getAcctNumber(),
+                                       report.getContract().getConId(),
+                                       report.getContract().getSymbol(),
+                                       execution.getTime(),
+                                       execution.getSide(),
+                                       execution.getShares(),
+                                       execution.getPrice(),
+                                       commission != null ? commission.getCommission() : null,
+                                       commission != null ? commission.getCurrency() : null,
+                                       commission != null ? commission.getRealizedPnl() : null,
+                                       archivedAt);
+    }
+
+    public String getExecId() {
+        return execId;
+    }
+
+    public int getOrderId() {
+        return orderId;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public int getConid() {
+        return conid;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public LocalDateTime getTime() {
+        return time;
+    }
+
+    public String getSide() {
+        return side;
+    }
+
+    public BigDecimal getShares() {
+        return shares;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public BigDecimal getCommission() {
+        return commission;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public BigDecimal getRealizedPnl() {
+        return realizedPnl;
+    }
+
+    /**
+     * Returns time of eviction from the cache.
+     *
+     * @return milliseconds since epoch
+     */
+    public long getArchivedAt() {
+        return archivedAt;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder("{");
+        buffer.append("execId='").append(execId).append('\'');
+        buffer.append(", orderId=").append(orderId);
+        buffer.append(", account='").append(account).append('\'');
+        buffer.append(", conid=").append(conid);
+        buffer.append(", symbol='").append(symbol).append('\'');
+        buffer.append(", time=").append(time);
+        buffer.append(", side='").append(side).append('\'');
+        buffer.append(", shares=").append(shares);
+        buffer.append(", price=").append(price);
+        buffer.append(", commission=").append(commission);
+        buffer.append(", currency='").append(currency).append('\'');
+        buffer.append(", realizedPnl=").append(realizedPnl);
+        buffer.append(", archivedAt=").append(archivedAt);
+        buffer.append('}');
+        return buffer.toString();
+    }
+}
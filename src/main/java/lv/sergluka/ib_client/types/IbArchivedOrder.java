@@ -0,0 +1,153 @@
+package lv.sergluka.ib_client.types;
+
+import java.math.BigDecimal;
+
+/**
+ * Compact record of a terminal order, evicted from the cache to the archive.
+ *
+ * @see lv.sergluka.ib_client.CacheRepository#findArchivedOrders
+ */
+@SuppressWarnings("unused")
+public class IbArchivedOrder {
+
+    private final int orderId;
+    private final int permId;
+    private final String account;
+    private final int conid;
+    private final String symbol;
+    private final String orderRef;
+    private final String action;
+    private final String orderType;
+    private final double quantity;
+    private final double limitPrice;
+    private final IbOrder.Stage stage;
+    private final BigDecimal filled;
+    private final BigDecimal avgFillPrice;
+    private final long archivedAt;
+
+    public IbArchivedOrder(int orderId, int permId, String account, int conid, String symbol, String orderRef,
+                           String action, String orderType, double quantity, double limitPrice, IbOrder.Stage stage,
+                           BigDecimal filled, BigDecimal avgFillPrice, long archivedAt) {
+        this.orderId = orderId;
+        this.permId = permId;
+        this.account = account;
+        this.conid = conid;
+        this.symbol = symbol;
+        this.orderRef = orderRef;
+        this.action = action;
+        this.orderType = orderType;
+        this.quantity = quantity;
+        this.limitPrice = limitPrice;
+        this.stage = stage;
+        this.filled = filled;
+        this.avgFillPrice = avgFillPrice;
+        this.archivedAt = archivedAt;
+    }
+
+    /**
+     * Makes record of the order and its last status.
+     *
+     * @param order      Cached order
+     * @param archivedAt Time of eviction, milliseconds since epoch
+     * @return new record
+     */
+    public static IbArchivedOrder of(IbOrder order, long archivedAt) {
+        IbOrderStatus status = order.getLastStatus();
+        return new IbArchivedOrder(order.getOrderId(),
+                                   order.getOrder().permId(),
+                                   order.getOrder().account(),
+                                   order.getContract().conid(),
+                                   order.getContract().symbol(),
+                                   order.getOrder().orderRef(),
+                                   order.getOrder().getAction(),
+                                   order.getOrder().getOrderType(),
+                                   order.getOrder().totalQuantity(),
+                                   order.getOrder().lmtPrice(),
+                                   order.getStage(),
+                                   status != null ? status.getFilled() : null,
+                                   status != null ? status.getAvgFillPrice() : null,
+                                   archivedAt);
+    }
+
+    public int getOrderId() {
+        return orderId;
+    }
+
+    public int getPermId() {
+        return permId;
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public int getConid() {
+        return conid;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public String getOrderRef() {
+        return orderRef;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getOrderType() {
+        return orderType;
+    }
+
+    public double getQuantity() {
+        return quantity;
+    }
+
+    public double getLimitPrice() {
+        return limitPrice;
+    }
+
+    public IbOrder.Stage getStage() {
+        return stage;
+    }
+
+    public BigDecimal getFilled() {
+        return filled;
+    }
+
+    public BigDecimal getAvgFillPrice() {
+        return avgFillPrice;
+    }
+
+    /**
+     * Returns time of eviction from the cache.
+     *
+     * @return milliseconds since epoch
+     */
+    public long getArchivedAt() {
+        return archivedAt;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder("{");
+        buffer.append("orderId=").append(orderId);
+        buffer.append(", permId=").append(permId);
+        buffer.append(", account='").append(account).append('\'');
+        buffer.append(", conid=").append(conid);
+        buffer.append(", symbol='").append(symbol).append('\'');
+        buffer.append(", orderRef='").append(orderRef).append('\'');
+        buffer.append(", action='").append(action).append('\'');
+        buffer.append(", orderType='").append(orderType).append('\'');
+        buffer.append(", quantity=").append(quantity);
+        buffer.append(", limitPrice=").append(limitPrice);
+        buffer.append(", stage=").append(stage);
+        buffer.append(", filled=").append(filled);
+        buffer.append(", avgFillPrice=").append(avgFillPrice);
+        buffer.append(", archivedAt=").append(archivedAt);
+        buffer.append('}');
+        return buffer.toString();
+    }
+}
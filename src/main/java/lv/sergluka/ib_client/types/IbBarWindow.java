@@ -0,0 +1,229 @@
+package lv.sergluka.ib_client.types;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Window of the last historical bars of a keepUpToDate subscription, kept up to date by TWS updates.
+ *
+ * <p>Bars are kept in a ring of primitive arrays, so an update doesn't allocate and any bar is accessed by index
+ * without copying. Index 0 is the oldest bar, {@code getSize() - 1} is the latest one, which is still forming.
+ * TWS re-sends the forming bar on every change, it's updated in place; a bar with a later time is appended and
+ * pushes the oldest one out of a full window.
+ *
+ * <p>The window is updated from the reader thread under a seqlock. Getters read the live window, so they are
+ * consistent only in subscribers of the stream, which are called from that thread. Other threads read it
+ * optimistically: take a stamp by {@link #startRead()}, read the bars and retry if {@link #validate} fails. A getter
+ * may throw {@link IndexOutOfBoundsException} while the window is changed, which is retried the same way.
+ *
+ * @see lv.sergluka.ib_client.IbClient#subscribeOnBarWindow
+ */
+@SuppressWarnings("unused")
+public class IbBarWindow {
+
+    private final long[] times;
+    private final double[] opens;
+    private final double[] highs;
+    private final double[] lows;
+    private final double[] closes;
+    private final long[] volumes;
+    private final int[] counts;
+    private final double[] waps;
+
+    private final StampedLock lock = new StampedLock();
+
+    private int start;
+    private int size;
+    private volatile long version;
+
+    /**
+     * Creates window.
+     *
+     * @param capacity Max number of bars
+     */
+    public IbBarWindow(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity should be positive");
+        }
+        times = new long[capacity];
+        opens = new double[capacity];
+        highs = new double[capacity];
+        lows = new double[capacity];
+        closes = new double[capacity];
+        volumes = new long[capacity];
+        counts = new int[capacity];
+        waps = new double[capacity];
+    }
+
+    /**
+     * Applies a bar.
+     *
+     * @param timeSeconds Bar time, see {@link #getTimeSeconds}
+     * @param open        Open price
+     * @param high        High price
+     * @param low         Low price
+     * @param close       Close price
+     * @param volume      Volume
+     * @param count       Number of trades
+     * @param wap         Weighted average price
+     * @return false if the window isn't changed: the bar is the same as the latest one or is older than it
+     */
+    public boolean update(long timeSeconds, double open, double high, double low, double close,
+                          long volume, int count, double wap) {
+        long stamp = lock.writeLock();
+        try {
+            return apply(timeSeconds, open, high, low, close, volume, count, wap);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            start = 0;
+            size = 0;
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Starts an optimistic read of the window.
+     *
+     * @return stamp to pass to {@link #validate}, 0 if the window is being changed
+     */
+    public long startRead() {
+        return lock.tryOptimisticRead();
+    }
+
+    /**
+     * Checks that the window hasn't been changed since the stamp was taken, so the bars read meanwhile are
+     * consistent.
+     *
+     * @param stamp Stamp of {@link #startRead()}
+     * @return false if the bars should be read again
+     */
+    public boolean validate(long stamp) {
+        return stamp != 0 && lock.validate(stamp);
+    }
+
+    public int getCapacity() {
+        return times.length;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    private boolean apply(long timeSeconds, double open, double high, double low, double close,
+                          long volume, int count, double wap) {
+        int index;
+        if (size > 0 && timeSeconds == times[physical(size - 1)]) {
+            index = physical(size - 1);
+            if (opens[index] == open && highs[index] == high && lows[index] == low && closes[index] == close
+                && volumes[index] == volume && counts[index] == count && waps[index] == wap) {
+                return false;
+            }
+        } else if (size > 0 && timeSeconds < times[physical(size - 1)]) {
+            return false;
+        } else if (size < times.length) {
+            index = physical(size);
+            size++;
+        } else {
+            index = start;
+            start = physical(1);
+        }
+
+        times[index] = timeSeconds;
+        opens[index] = open;
+        highs[index] = high;
+        lows[index] = low;
+        closes[index] = close;
+        volumes[index] = volume;
+        counts[index] = count;
+        waps[index] = wap;
+        version++;
+        return true;
+    }
+
+    /**
+     * Returns version of the window, which is incremented by every change.
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns bar time as seconds of its local date-time since epoch.
+     *
+     * @param index Bar index, 0 is the oldest
+     * @return the same as {@link LocalDateTime#toEpochSecond} of {@link #getTime} with UTC offset
+     */
+    public long getTimeSeconds(int index) {
+        return times[checked(index)];
+    }
+
+    public LocalDateTime getTime(int index) {
+        return LocalDateTime.ofEpochSecond(getTimeSeconds(index), 0, ZoneOffset.UTC);
+    }
+
+    public double getOpen(int index) {
+        return opens[checked(index)];
+    }
+
+    public double getHigh(int index) {
+        return highs[checked(index)];
+    }
+
+    public double getLow(int index) {
+        return lows[checked(index)];
+    }
+
+    public double getClose(int index) {
+        return closes[checked(index)];
+    }
+
+    public long getVolume(int index) {
+        return volumes[checked(index)];
+    }
+
+    public int getCount(int index) {
+        return counts[checked(index)];
+    }
+
+    public double getWap(int index) {
+        return waps[checked(index)];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder("{");
+        buffer.append("size=").append(size);
+        buffer.append(", capacity=").append(times.length);
+        buffer.append(", version=").append(version);
+        if (size > 0) {
+            buffer.append(", first=").append(getTime(0));
+            buffer.append(", last=").append(getTime(size - 1));
+            buffer.append(", close=").append(getClose(size - 1));
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    private int checked(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d, size %d", index, size));
+        }
+        return physical(index);
+    }
+
+    private int physical(int index) {
+        int result = start + index;
+        return result < times.length ? result : result - times.length;
+    }
+}
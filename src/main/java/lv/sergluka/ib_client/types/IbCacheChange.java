@@ -0,0 +1,67 @@
+package lv.sergluka.ib_client.types;
+
+/**
+ * Change of an entry of a cache section.
+ *
+ * <p>Version grows with every change of the section, so a consumer can tell whether its view is up to date. Order
+ * books are versioned by themselves, see {@link IbOrderBook#getVersion()}.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ * @see lv.sergluka.ib_client.CacheRepository
+ */
+@SuppressWarnings("unused")
+public class IbCacheChange<K, V> {
+
+    private final Type type;
+    private final K key;
+    private final V value;
+    private final long version;
+
+    public IbCacheChange(Type type, K key, V value, long version) {
+        this.type = type;
+        this.key = key;
+        this.value = value;
+        this.version = version;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns key of the changed entry.
+     *
+     * @return key or null if the section has been cleared
+     */
+    public K getKey() {
+        return key;
+    }
+
+    /**
+     * Returns new value of the entry or the last one, if the entry has been removed.
+     *
+     * @return value or null if the section has been cleared
+     */
+    public V getValue() {
+        return value;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "IbCacheChange{type=" + type + ", key=" + key + ", version=" + version + '}';
+    }
+
+    public enum Type {
+        /** Entry has been added or changed. */
+        UPDATED,
+        /** Entry has been removed. */
+        REMOVED,
+        /** All entries of the section have been removed, e.g. on disconnect. */
+        CLEARED
+    }
+}
@@ -0,0 +1,193 @@
+package lv.sergluka.ib_client.types;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Consistent copy of {@link IbTickColumns}: values of all market data subscriptions at the same moment.
+ *
+ * <p>Every field is a primitive column indexed by the row, rows are in range [0, {@link #getSize()}). Columns are
+ * reused by {@link IbTickColumns#copyTo}, so they are reallocated only when the number of subscriptions grows.
+ * It isn't thread-safe, use {@link #copy()} to keep the values.
+ *
+ * <p>Screening is done by {@link #filter} and {@link #top}, which take a row index and read columns directly, e.g.
+ * rows with a spread wider than 0.1:
+ * <pre>
+ * double[] bids = section.getColumn(Column.BID);
+ * double[] asks = section.getColumn(Column.ASK);
+ * int[] rows = section.filter(row -&gt; asks[row] - bids[row] &gt; 0.1);
+ * </pre>
+ *
+ * <p>Big cross-sections are scanned in parallel by the common fork-join pool, so conditions should be stateless.
+ */
+@SuppressWarnings("unused")
+public class IbCrossSection {
+
+    private static final int PARALLEL_THRESHOLD = 8192;
+    private static final int PARALLEL_CHUNK = 2048;
+
+    private final double[][] columns = new double[IbTickColumns.Column.values().length][0];
+
+    private int[] tickerIds = new int[0];
+    private int[] conids = new int[0];
+    private int size;
+    private long version = -1;
+    private long timeMillis;
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns version of the columns at the moment of copying.
+     *
+     * @return version or -1 if the cross-section hasn't been filled yet
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns time of sampling.
+     *
+     * @return milliseconds since epoch
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Returns subscription IDs of rows.
+     *
+     * @return array, which can be longer than the number of rows
+     */
+    public int[] getTickerIds() {
+        return tickerIds;
+    }
+
+    public int[] getConids() {
+        return conids;
+    }
+
+    /**
+     * Returns values of a field for all rows.
+     *
+     * @param column Field
+     * @return array, which can be longer than the number of rows. Missing values are {@link Double#NaN}
+     */
+    public double[] getColumn(IbTickColumns.Column column) {
+        return columns[column.ordinal()];
+    }
+
+    public double getValue(IbTickColumns.Column column, int row) {
+        return columns[column.ordinal()][row];
+    }
+
+    /**
+     * Finds rows matching the condition.
+     *
+     * @param condition Condition of a row index
+     * @return matching rows in ascending order
+     */
+    public int[] filter(IntPredicate condition) {
+        IntStream rows = IntStream.range(0, size);
+        if (size >= PARALLEL_THRESHOLD) {
+            rows = rows.parallel();
+        }
+        return rows.filter(condition).toArray();
+    }
+
+    /**
+     * Finds rows with the greatest values of the metric, e.g. top movers:
+     * {@code section.top(20, row -> Math.abs(last[row] / close[row] - 1))}.
+     *
+     * @param limit  Max number of rows
+     * @param metric Metric of a row index. Rows with {@link Double#NaN} metric are skipped
+     * @return rows ordered from the greatest metric
+     */
+    public int[] top(int limit, IntToDoubleFunction metric) {
+        if (limit < 0) {
+            throw new IllegalArgumentException(String.format("Unexpected limit: %d", limit));
+        }
+
+        if (size < PARALLEL_THRESHOLD) {
+            return top(limit, metric, 0, size).drain();
+        }
+
+        final int total = size;
+        int chunks = (total + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+        return IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> top(limit, metric, chunk * PARALLEL_CHUNK,
+                                       Math.min(total, (chunk + 1) * PARALLEL_CHUNK)))
+                .reduce(TopRows::merge)
+                .map(TopRows::drain)
+                .orElse(new int[0]);
+    }
+
+    /**
+     * Creates a copy, which isn't changed by further sampling.
+     *
+     * @return new cross-section
+     */
+    public IbCrossSection copy() {
+        IbCrossSection result = new IbCrossSection();
+        result.ensureCapacity(size);
+        System.arraycopy(tickerIds, 0, result.tickerIds, 0, size);
+        System.arraycopy(conids, 0, result.conids, 0, size);
+        for (int i = 0; i < columns.length; i++) {
+            System.arraycopy(columns[i], 0, result.columns[i], 0, size);
+        }
+        result.size = size;
+        result.version = version;
+        result.timeMillis = timeMillis;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder("{");
+        buffer.append("size=").append(size);
+        buffer.append(", version=").append(version);
+        buffer.append(", timeMillis=").append(timeMillis);
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    private static TopRows top(int limit, IntToDoubleFunction metric, int from, int to) {
+        TopRows result = new TopRows(limit);
+        for (int row = from; row < to; row++) {
+            result.offer(row, metric.applyAsDouble(row));
+        }
+        return result;
+    }
+
+    double[] getColumn(int index) {
+        return columns[index];
+    }
+
+    void ensureCapacity(int capacity) {
+        if (capacity <= tickerIds.length) {
+            return;
+        }
+        tickerIds = Arrays.copyOf(tickerIds, capacity);
+        conids = Arrays.copyOf(conids, capacity);
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Arrays.copyOf(columns[i], capacity);
+        }
+    }
+
+    void setSize(int size) {
+        this.size = size;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    void setTimeMillis(long timeMillis) {
+        this.timeMillis = timeMillis;
+    }
+}
@@ -0,0 +1,110 @@
+package lv.sergluka.ib_client.types;
+
+/**
+ * Counters of matching executions with their commission reports.
+ *
+ * @see lv.sergluka.ib_client.CacheRepository#getExecutionJoinStats
+ */
+@SuppressWarnings("unused")
+public class IbExecutionJoinStats {
+
+    private final long matched;
+    private final long commissionFirst;
+    private final long lateCommissions;
+    private final long expiredExecutions;
+    private final long expiredCommissions;
+    private final long duplicates;
+    private final int pendingExecutions;
+    private final int pendingCommissions;
+
+    public IbExecutionJoinStats(long matched, long commissionFirst, long lateCommissions, long expiredExecutions,
+                                long expiredCommissions, long duplicates, int pendingExecutions,
+                                int pendingCommissions) {
+        this.matched = matched;
+        this.commissionFirst = commissionFirst;
+        this.lateCommissions = lateCommissions;
+        this.expiredExecutions = expiredExecutions;
+        this.expiredCommissions = expiredCommissions;
+        this.duplicates = duplicates;
+        this.pendingExecutions = pendingExecutions;
+        this.pendingCommissions = pendingCommissions;
+    }
+
+    /**
+     * Returns number of executions matched with commissions, including late ones.
+     *
+     * @return counter
+     */
+    public long getMatched() {
+        return matched;
+    }
+
+    /**
+     * Returns number of matches, where the commission report arrived before the execution.
+     *
+     * @return counter
+     */
+    public long getCommissionFirst() {
+        return commissionFirst;
+    }
+
+    /**
+     * Returns number of commissions, which arrived after their executions had expired.
+     *
+     * @return counter
+     */
+    public long getLateCommissions() {
+        return lateCommissions;
+    }
+
+    public long getExpiredExecutions() {
+        return expiredExecutions;
+    }
+
+    public long getExpiredCommissions() {
+        return expiredCommissions;
+    }
+
+    /**
+     * Returns number of repeated executions and commissions, which are ignored.
+     *
+     * @return counter
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    public int getPendingExecutions() {
+        return pendingExecutions;
+    }
+
+    public int getPendingCommissions() {
+        return pendingCommissions;
+    }
+
+    /**
+     * Returns share of executions and commissions, which haven't been matched in time.
+     *
+     * @return rate in range [0, 1]
+     */
+    public double getMismatchRate() {
+        long expired = expiredExecutions + expiredCommissions;
+        long total = matched - lateCommissions + expired;
+        return total > 0 ? (double) expired / total : 0;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder("{");
+        buffer.append("matched=").append(matched);
+        buffer.append(", commissionFirst=").append(commissionFirst);
+        buffer.append(", lateCommissions=").append(lateCommissions);
+        buffer.append(", expiredExecutions=").append(expiredExecutions);
+        buffer.append(", expiredCommissions=").append(expiredCommissions);
+        buffer.append(", duplicates=").append(duplicates);
+        buffer.append(", pendingExecutions=").append(pendingExecutions);
+        buffer.append(", pendingCommissions=").append(pendingCommissions);
+        buffer.append('}');
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,156 @@
+package lv.sergluka.ib_client.types;
+
+/**
+ * Option greeks and implied volatility calculated by TWS.
+ *
+ * <p>There is a single instance per ticker and {@link Type}, which is a view of primitive slots of the tick, so
+ * updates allocate nothing. The view is updated from the reader thread: every getter returns the latest value, and
+ * {@link #copy()} returns a consistent set of values, which doesn't change anymore. Absent values are
+ * {@link Double#NaN}
+ */
+@SuppressWarnings("unused")
+public class IbOptionComputation {
+
+    private final Type type;
+    // Source of the view, null for a copy
+    private final OptionGreeks greeks;
+    private final double[] values;
+
+    public IbOptionComputation(Type type, double impliedVolatility, double delta, double optionPrice,
+                               double presentValueDividend, double gamma, double vega, double theta,
+                               double underlyingPrice) {
+        this.type = type;
+        this.greeks = null;
+        this.values = new double[OptionGreeks.FIELDS];
+        values[OptionGreeks.IMPLIED_VOLATILITY] = OptionGreeks.valueOrNaN(impliedVolatility);
+        values[OptionGreeks.DELTA] = OptionGreeks.valueOrNaN(delta);
+        values[OptionGreeks.OPTION_PRICE] = OptionGreeks.valueOrNaN(optionPrice);
+        values[OptionGreeks.PRESENT_VALUE_DIVIDEND] = OptionGreeks.valueOrNaN(presentValueDividend);
+        values[OptionGreeks.GAMMA] = OptionGreeks.valueOrNaN(gamma);
+        values[OptionGreeks.VEGA] = OptionGreeks.valueOrNaN(vega);
+        values[OptionGreeks.THETA] = OptionGreeks.valueOrNaN(theta);
+        values[OptionGreeks.UNDERLYING_PRICE] = OptionGreeks.valueOrNaN(underlyingPrice);
+    }
+
+    IbOptionComputation(Type type, OptionGreeks greeks) {
+        this.type = type;
+        this.greeks = greeks;
+        this.values = null;
+    }
+
+    /**
+     * Returns values at the moment of the call.
+     *
+     * @return copy, which isn't updated anymore
+     */
+    public IbOptionComputation copy() {
+        if (greeks == null) {
+            return this;
+        }
+        double[] copied = new double[OptionGreeks.FIELDS];
+        greeks.copy(type, copied);
+        return new IbOptionComputation(type, copied[OptionGreeks.IMPLIED_VOLATILITY], copied[OptionGreeks.DELTA],
+                                       copied[OptionGreeks.OPTION_PRICE],
+                                       copied[OptionGreeks.PRESENT_VALUE_DIVIDEND], copied[OptionGreeks.GAMMA],
+                                       copied[OptionGreeks.VEGA], copied[OptionGreeks.THETA],
+                                       copied[OptionGreeks.UNDERLYING_PRICE]);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public double getImpliedVolatility() {
+        return get(OptionGreeks.IMPLIED_VOLATILITY);
+    }
+
+    public double getDelta() {
+        return get(OptionGreeks.DELTA);
+    }
+
+    public double getOptionPrice() {
+        return get(OptionGreeks.OPTION_PRICE);
+    }
+
+    public double getPresentValueDividend() {
+        return get(OptionGreeks.PRESENT_VALUE_DIVIDEND);
+    }
+
+    public double getGamma() {
+        return get(OptionGreeks.GAMMA);
+    }
+
+    public double getVega() {
+        return get(OptionGreeks.VEGA);
+    }
+
+    public double getTheta() {
+        return get(OptionGreeks.THETA);
+    }
+
+    public double getUnderlyingPrice() {
+        return get(OptionGreeks.UNDERLYING_PRICE);
+    }
+
+    @Override
+    public String toString() {
+        IbOptionComputation current = copy();
+        final StringBuilder buffer = new StringBuilder("{");
+        buffer.append("type=").append(type);
+        buffer.append(", impliedVolatility=").append(current.getImpliedVolatility());
+        buffer.append(", delta=").append(current.getDelta());
+        buffer.append(", optionPrice=").append(current.getOptionPrice());
+        buffer.append(", presentValueDividend=").append(current.getPresentValueDividend());
+        buffer.append(", gamma=").append(current.getGamma());
+        buffer.append(", vega=").append(current.getVega());
+        buffer.append(", theta=").append(current.getTheta());
+        buffer.append(", underlyingPrice=").append(current.getUnderlyingPrice());
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    private double get(int field) {
+        return greeks != null ? greeks.get(type, field) : values[field];
+    }
+
+    /**
+     * Price the computation is based on.
+     */
+    @SuppressWarnings("MagicNumber")
+    public enum Type {
+        BID(10, 80),
+        ASK(11, 81),
+        LAST(12, 82),
+        MODEL(13, 83);
+
+        private static final Type[] byTickType = new Type[84];
+
+        static {
+            for (Type type : values()) {
+                byTickType[type.tickType] = type;
+                byTickType[type.delayedTickType] = type;
+            }
+        }
+
+        private final int tickType;
+        private final int delayedTickType;
+
+        Type(int tickType, int delayedTickType) {
+            this.tickType = tickType;
+            this.delayedTickType = delayedTickType;
+        }
+
+        /**
+         * Finds type by TWS tick type. Both live and delayed tick types are accepted.
+         *
+         * @param tickType TWS tick type
+         * @return type or null if tick type doesn't contain option computation
+         */
+        public static Type fromTickType(int tickType) {
+            if (tickType < 0 || tickType >= byTickType.length) {
+                return null;
+            }
+            return byTickType[tickType];
+        }
+    }
+}
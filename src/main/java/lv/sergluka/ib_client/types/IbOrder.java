@@ -3,50 +3,133 @@ package lv.sergluka.ib_client.types;
 import com.ib.client.Contract;
 import com.ib.client.Order;
 import com.ib.client.OrderState;
+import com.ib.client.OrderStatus;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Order with its status history.
+ *
+ * <p>History is bounded: the first status, the first terminal one (filled, cancelled or inactive) and the latest
+ * statuses, which fit the history size, are kept. So an order with many partial fills doesn't grow and doesn't slow
+ * down status updates. Repeated statuses are detected by fingerprints of the kept ones.
+ */
 @SuppressWarnings("unused")
 public class IbOrder {
 
+    public static final int DEFAULT_STATUS_HISTORY = 32;
+
     private final int orderId;
     private final Contract contract;
     private final Order order;
     private final OrderState state;
 
-    private final LinkedList<IbOrderStatus> statuses = new LinkedList<>();
+    private final IbOrderStatus[] recent;
+    private final long[] fingerprints;
+    private int start;
+    private int size;
+    private IbOrderStatus first;
+    private IbOrderStatus terminal;
+    private long statusCount;
+    private volatile IbOrderStatus lastStatus;
 
     public IbOrder(int orderId, Contract contract, Order order, OrderState state) {
+        this(orderId, contract, order, state, DEFAULT_STATUS_HISTORY);
+    }
+
+    /**
+     * Creates order.
+     *
+     * @param orderId       Order ID
+     * @param contract      IB contract
+     * @param order         IB order
+     * @param state         IB order state
+     * @param statusHistory Number of the latest statuses to keep
+     */
+    public IbOrder(int orderId, Contract contract, Order order, OrderState state, int statusHistory) {
+        if (statusHistory <= 0) {
+            throw new IllegalArgumentException("Status history size should be positive");
+        }
         this.orderId = orderId;
         this.contract = contract;
         this.order = order;
         this.state = state;
+        recent = new IbOrderStatus[statusHistory];
+        fingerprints = new long[statusHistory];
     }
 
+    /**
+     * Adds status, if it isn't the same as one of the kept statuses.
+     *
+     * @param status New status
+     * @return false if the status is repeated
+     */
     // TODO: Hide
     public synchronized boolean addStatus(IbOrderStatus status) {
-        if (!statuses.contains(status)) {
-            return statuses.add(status);
+        if (contains(status)) {
+            return false;
         }
-
-        return false;
+        append(status);
+        return true;
     }
 
     public synchronized void addStatuses(List<IbOrderStatus> list) {
-        statuses.addAll(list);
+        list.forEach(this::append);
     }
 
     public int getOrderId() {
         return orderId;
     }
 
+    /**
+     * Returns kept statuses.
+     *
+     * @return copy of the history in order of arrival
+     */
     public synchronized List<IbOrderStatus> getStatuses() {
-        return statuses;
+        List<IbOrderStatus> result = new ArrayList<>(size + 2);
+        if (first != null && first != at(0)) {
+            result.add(first);
+        }
+        if (terminal != null && terminal != first && !isRecent(terminal)) {
+            result.add(terminal);
+        }
+        for (int i = 0; i < size; i++) {
+            result.add(at(i));
+        }
+        return result;
     }
 
-    public synchronized IbOrderStatus getLastStatus() {
-        return statuses.getLast();
+    /**
+     * Returns number of all received statuses, including dropped from the history.
+     *
+     * @return number of statuses
+     */
+    public synchronized long getStatusCount() {
+        return statusCount;
+    }
+
+    /**
+     * Returns the latest status without locking.
+     *
+     * @return status or null if there are no statuses yet
+     */
+    public IbOrderStatus getLastStatus() {
+        return lastStatus;
+    }
+
+    /**
+     * Returns stage of the order by its last status, or by the state of the order if there are no statuses yet.
+     *
+     * @return order stage
+     */
+    public Stage getStage() {
+        IbOrderStatus last = lastStatus;
+        if (last != null) {
+            return Stage.of(last.getStatus());
+        }
+        return Stage.of(state != null ? state.status() : null);
     }
 
     public Contract getContract() {
@@ -68,8 +151,89 @@ public class IbOrder {
         buffer.append(", contract=").append(contract);
         buffer.append(", order=").append(order);
         buffer.append(", state=").append(state);
-        buffer.append(", statuses=").append(statuses);
+        buffer.append(", statuses=").append(getStatuses());
         buffer.append('}');
         return buffer.toString();
     }
+
+    private boolean contains(IbOrderStatus status) {
+        long fingerprint = status.getFingerprint();
+        for (int i = size - 1; i >= 0; i--) {
+            int index = physical(i);
+            if (fingerprints[index] == fingerprint && recent[index].equals(status)) {
+                return true;
+            }
+        }
+        return status.equals(first) || status.equals(terminal);
+    }
+
+    private void append(IbOrderStatus status) {
+        if (first == null) {
+            first = status;
+        }
+        if (terminal == null && Stage.of(status.getStatus()) != Stage.WORKING) {
+            terminal = status;
+        }
+
+        int index;
+        if (size < recent.length) {
+            index = physical(size);
+            size++;
+        } else {
+            index = start;
+            start = physical(1);
+        }
+        recent[index] = status;
+        fingerprints[index] = status.getFingerprint();
+        statusCount++;
+        lastStatus = status;
+    }
+
+    private boolean isRecent(IbOrderStatus status) {
+        for (int i = 0; i < size; i++) {
+            if (recent[physical(i)] == status) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private IbOrderStatus at(int index) {
+        return size > index ? recent[physical(index)] : null;
+    }
+
+    private int physical(int index) {
+        int result = start + index;
+        return result < recent.length ? result : result - recent.length;
+    }
+
+    public enum Stage {
+        WORKING,
+        FILLED,
+        CANCELLED,
+        INACTIVE;
+
+        /**
+         * Returns stage of the TWS order status.
+         *
+         * @param status Order status, nullable
+         * @return stage. Unknown status is considered as working, since the order may still be executed
+         */
+        public static Stage of(OrderStatus status) {
+            if (status == null) {
+                return WORKING;
+            }
+            switch (status) {
+                case Filled:
+                    return FILLED;
+                case Cancelled:
+                case ApiCancelled:
+                    return CANCELLED;
+                case Inactive:
+                    return INACTIVE;
+                default:
+                    return WORKING;
+            }
+        }
+    }
 }
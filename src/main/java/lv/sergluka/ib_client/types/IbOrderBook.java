@@ -0,0 +1,538 @@
+package lv.sergluka.ib_client.types;
+
+import com.ib.client.Contract;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Order book of a contract, built from market depth updates.
+ *
+ * <p>Every side is a set of primitive arrays indexed by the level position, so an update doesn't allocate and
+ * levels are read directly, without copying. Market makers are interned to integer IDs.
+ *
+ * <p>Levels can also be kept outside of the heap, in a buffer of a fixed layout, see
+ * {@link #IbOrderBook(Contract, ByteBuffer, int, boolean)}. It's intended for processes with books of hundreds of
+ * contracts, where the heap arrays add to GC work.
+ *
+ * <p>The book is updated in place from the reader thread. Other threads should read it by {@link #copyTo} or
+ * {@link #snapshot}, which give a consistent state of the book along with its version. Updates are published as
+ * a seqlock: readers copy levels optimistically and retry if an update happened meanwhile. Readers never take the
+ * lock, so they never block the reader thread, but a reader yields its time slice between retries while the book
+ * is updated too often. Indexed getters read the live book and are consistent only when used from the reader
+ * thread.
+ *
+ * <p>Smart depth book mixes levels of several venues, so the same price can appear at several positions. Such
+ * book can also be aggregated by price, see {@link #copyAggregatedTo}.
+ *
+ * @see <a href="https://interactivebrokers.github.io/tws-api/market_depth.html">TWS API: Market Depth</a>
+ */
+@SuppressWarnings("unused")
+public class IbOrderBook {
+
+    public static final int OPERATION_INSERT = 0;
+    public static final int OPERATION_UPDATE = 1;
+    public static final int OPERATION_DELETE = 2;
+
+    private static final int NO_MARKET_MAKER = BookSide.NO_MARKET_MAKER;
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 8;
+
+    private final Contract contract;
+    private final BookSide[] sides;
+    private final PriceLadder[] ladders;
+    private final StampedLock lock = new StampedLock();
+
+    private final Map<String, Integer> marketMakerIds = new HashMap<>();
+    private volatile String[] marketMakers = new String[0];
+    private volatile long version;
+    private ByteBuffer storage;
+    private boolean detached;
+
+    public IbOrderBook(Contract contract, int capacity) {
+        this(contract, capacity, false);
+    }
+
+    /**
+     * Creates order book.
+     *
+     * @param contract   IB contract
+     * @param capacity   Initial number of levels per side
+     * @param aggregated Whether to maintain levels aggregated by price
+     */
+    public IbOrderBook(Contract contract, int capacity, boolean aggregated) {
+        this(contract, null, heapSides(capacity), capacity, aggregated);
+    }
+
+    /**
+     * Creates order book, which keeps its levels in the buffer.
+     *
+     * <p>Capacity of the book is fixed: levels beyond it are dropped. Levels aggregated by price are still kept on
+     * the heap.
+     *
+     * @param contract   IB contract
+     * @param storage    Buffer of {@link #getStorageSize} bytes, which is used from its current position
+     * @param capacity   Number of levels per side
+     * @param aggregated Whether to maintain levels aggregated by price
+     * @throws IllegalArgumentException if the buffer is too small
+     * @see #detachStorage()
+     */
+    public IbOrderBook(Contract contract, ByteBuffer storage, int capacity, boolean aggregated) {
+        this(contract, storage, directSides(storage, capacity), capacity, aggregated);
+    }
+
+    private IbOrderBook(Contract contract, ByteBuffer storage, BookSide[] sides, int capacity, boolean aggregated) {
+        this.contract = contract;
+        this.storage = storage;
+        this.sides = sides;
+
+        if (aggregated) {
+            ladders = new PriceLadder[sides.length];
+            ladders[IbMarketDepth.Side.SELL.ordinal()] = new PriceLadder(false, capacity);
+            ladders[IbMarketDepth.Side.BUY.ordinal()] = new PriceLadder(true, capacity);
+        } else {
+            ladders = null;
+        }
+    }
+
+    /**
+     * Returns size of a buffer to keep the book with the capacity.
+     *
+     * @param capacity Number of levels per side
+     * @return size in bytes
+     */
+    public static int getStorageSize(int capacity) {
+        return IbMarketDepth.Side.values().length * DirectBookSide.getStorageSize(capacity);
+    }
+
+    /**
+     * Applies market depth update.
+     *
+     * <p>Position of insert or update beyond the depth of the side is clamped to it, so the level is appended.
+     *
+     * @param position    Level position
+     * @param operation   One of OPERATION_* constants
+     * @param side        TWS side: 0 for asks, 1 for bids
+     * @param price       Level price
+     * @param size        Level size
+     * @param marketMaker Exchange or market maker, nullable
+     * @return last level of the side changed by the update or -1 if the book is detached from its storage. Insert
+     * and delete shift all levels after the position
+     * @throws IllegalArgumentException if position, operation or side are unexpected
+     */
+    public int update(int position, int operation, int side, double price, int size, String marketMaker) {
+        if (side < 0 || side >= sides.length) {
+            throw new IllegalArgumentException(String.format("Unexpected side: %d", side));
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException(String.format("Unexpected position: %d", position));
+        }
+
+        if (operation < OPERATION_INSERT || operation > OPERATION_DELETE) {
+            throw new IllegalArgumentException(String.format("Unexpected operation: %d", operation));
+        }
+
+        int marketMakerId = internMarketMaker(marketMaker);
+
+        long stamp = lock.writeLock();
+        try {
+            if (detached) {
+                return -1;
+            }
+            final BookSide levels = sides[side];
+            final int depthBefore = levels.getDepth();
+            if (ladders != null) {
+                withdraw(side, operation == OPERATION_INSERT ? levels.evictedByInsert(position) : position);
+            }
+            int stored;
+            switch (operation) {
+                case OPERATION_INSERT:
+                    stored = levels.insert(position, price, size, marketMakerId);
+                    break;
+                case OPERATION_UPDATE:
+                    stored = levels.update(position, price, size, marketMakerId);
+                    break;
+                default:
+                    levels.delete(position);
+                    stored = -1;
+            }
+            if (ladders != null && stored >= 0) {
+                ladders[side].add(price, marketMakerId, size);
+            }
+            refreshCumulative(side);
+            version++;
+
+            if (operation == OPERATION_UPDATE) {
+                return Math.min(position, depthBefore);
+            }
+            return Math.max(depthBefore, levels.getDepth()) - 1;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            for (BookSide levels : sides) {
+                levels.clear();
+            }
+            if (ladders != null) {
+                for (PriceLadder ladder : ladders) {
+                    ladder.clear();
+                }
+            }
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies top levels of both sides into the snapshot.
+     *
+     * <p>The snapshot can be reused for every call, so a strategy thread can poll the book without allocations.
+     * Levels that don't fit into the snapshot capacity are skipped.
+     *
+     * @param target Snapshot to fill
+     * @return version of the copied state
+     */
+    public long copyTo(IbOrderBookSnapshot target) {
+        return copy(target, false);
+    }
+
+    /**
+     * Copies top price levels of both sides into the snapshot, where size of every level is summed across venues.
+     *
+     * <p>Market maker of snapshot levels is always null, use {@link #getAggregatedVenueSize} for contributions of
+     * venues.
+     *
+     * @param target Snapshot to fill
+     * @return version of the copied state
+     * @throws IllegalStateException if the book isn't aggregated
+     */
+    public long copyAggregatedTo(IbOrderBookSnapshot target) {
+        if (ladders == null) {
+            throw new IllegalStateException("Order book isn't aggregated");
+        }
+        return copy(target, true);
+    }
+
+    public boolean isAggregated() {
+        return ladders != null;
+    }
+
+    /**
+     * Returns a consistent copy of the whole book.
+     *
+     * @return new snapshot
+     */
+    public IbOrderBookSnapshot snapshot() {
+        IbOrderBookSnapshot result = null;
+        for (int attempt = 0; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                int depth = 0;
+                for (BookSide levels : sides) {
+                    depth = Math.max(depth, levels.getDepth());
+                }
+                // Depth is read inconsistently if the book is changed meanwhile, so it's limited to the capacity
+                depth = Math.max(0, Math.min(depth, capacity()));
+                if (result == null || result.getCapacity() != depth) {
+                    result = new IbOrderBookSnapshot(depth);
+                }
+                copyLevels(result);
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            }
+            waitForUpdate(attempt);
+        }
+    }
+
+    /**
+     * Calculates analytics of the book: mid, spread, microprice, imbalance and average prices to fill a quantity.
+     *
+     * <p>The book keeps running totals of levels, which are updated only from the changed level, so calculation
+     * doesn't scan the book. Aggregated levels are used for the aggregated book.
+     *
+     * @param imbalanceLevels Number of top levels of each side for imbalance calculation
+     * @param fillSize        Quantity to calculate average fill prices for
+     * @return analytics of the current state
+     */
+    public IbOrderBookAnalytics getAnalytics(int imbalanceLevels, double fillSize) {
+        final int ask = IbMarketDepth.Side.SELL.ordinal();
+        final int bid = IbMarketDepth.Side.BUY.ordinal();
+
+        for (int attempt = 0; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                IbOrderBookAnalytics result;
+                try {
+                    PriceLevels asks = analyticsLevels(ask);
+                    PriceLevels bids = analyticsLevels(bid);
+                    int askDepth = asks.getDepth();
+                    int bidDepth = bids.getDepth();
+                    long askTopSize = analyticsCumulative(ask).getSize(Math.min(imbalanceLevels, askDepth));
+                    long bidTopSize = analyticsCumulative(bid).getSize(Math.min(imbalanceLevels, bidDepth));
+
+                    result = new IbOrderBookAnalytics(
+                            version,
+                            bidDepth > 0 ? bids.getPrice(0) : Double.NaN,
+                            bidDepth > 0 ? bids.getSize(0) : 0,
+                            askDepth > 0 ? asks.getPrice(0) : Double.NaN,
+                            askDepth > 0 ? asks.getSize(0) : 0,
+                            bidTopSize,
+                            askTopSize,
+                            analyticsCumulative(bid).getFillPrice(bids, fillSize),
+                            analyticsCumulative(ask).getFillPrice(asks, fillSize));
+                } catch (RuntimeException e) {
+                    // Inconsistent state may point out of the arrays, it's fine only if the book has been changed
+                    if (lock.validate(stamp)) {
+                        throw e;
+                    }
+                    result = null;
+                }
+                if (result != null && lock.validate(stamp)) {
+                    return result;
+                }
+            }
+            waitForUpdate(attempt);
+        }
+    }
+
+    /**
+     * Returns version of the book, which is incremented by every update.
+     *
+     * @return version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Contract getContract() {
+        return contract;
+    }
+
+    /**
+     * Detaches the book from its buffer, so the buffer can be reused by another book. The book becomes empty and
+     * ignores further updates.
+     *
+     * @return buffer given to the constructor or null if the book is kept on the heap
+     */
+    public ByteBuffer detachStorage() {
+        long stamp = lock.writeLock();
+        try {
+            ByteBuffer result = storage;
+            if (result != null) {
+                for (int i = 0; i < sides.length; i++) {
+                    sides[i] = new HeapBookSide(0);
+                }
+                if (ladders != null) {
+                    for (PriceLadder ladder : ladders) {
+                        ladder.clear();
+                    }
+                }
+                storage = null;
+                detached = true;
+                version++;
+            }
+            return result;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns size of a venue at the aggregated price level. Reads the live book, see class description.
+     *
+     * @param side        Book side
+     * @param level       Aggregated level position
+     * @param marketMaker Venue
+     * @return size or 0 if the venue doesn't have orders at the level
+     * @throws IllegalStateException if the book isn't aggregated
+     */
+    public int getAggregatedVenueSize(IbMarketDepth.Side side, int level, String marketMaker) {
+        if (ladders == null) {
+            throw new IllegalStateException("Order book isn't aggregated");
+        }
+        // Interning map belongs to the reader thread, so the published array is scanned instead
+        String[] names = marketMakers;
+        for (int id = 0; id < names.length; id++) {
+            if (names[id].equals(marketMaker)) {
+                return ladders[side.ordinal()].getVenueSize(level, id);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns number of levels of the side.
+     *
+     * @param side Book side
+     * @return number of levels
+     */
+    public int getDepth(IbMarketDepth.Side side) {
+        return sides[side.ordinal()].getDepth();
+    }
+
+    public double getPrice(IbMarketDepth.Side side, int level) {
+        return sides[side.ordinal()].getPrice(level);
+    }
+
+    public int getSize(IbMarketDepth.Side side, int level) {
+        return sides[side.ordinal()].getSize(level);
+    }
+
+    /**
+     * Returns exchange or market maker of the level.
+     *
+     * @param side  Book side
+     * @param level Level position
+     * @return market maker or null if TWS doesn't provide it for the book
+     */
+    public String getMarketMaker(IbMarketDepth.Side side, int level) {
+        int id = sides[side.ordinal()].getMarketMaker(level);
+        return id == NO_MARKET_MAKER ? null : marketMakers[id];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder("{");
+        buffer.append("contract=").append(contract != null ? contract.conid() : null);
+        for (IbMarketDepth.Side side : IbMarketDepth.Side.values()) {
+            buffer.append(", ").append(side).append("=[");
+            for (int i = 0; i < getDepth(side); i++) {
+                if (i > 0) {
+                    buffer.append(", ");
+                }
+                buffer.append(getSize(side, i)).append('@').append(getPrice(side, i));
+            }
+            buffer.append(']');
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    private long copy(IbOrderBookSnapshot target, boolean aggregated) {
+        for (int attempt = 0; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                copyLevels(target, aggregated);
+                if (lock.validate(stamp)) {
+                    return target.getVersion();
+                }
+            }
+            waitForUpdate(attempt);
+        }
+    }
+
+    // The book is updated too often, so the reader gives way to the writer instead of spinning
+    private static void waitForUpdate(int attempt) {
+        if (attempt >= OPTIMISTIC_READ_ATTEMPTS) {
+            Thread.yield();
+        }
+    }
+
+    private int capacity() {
+        int result = 0;
+        for (BookSide levels : sides) {
+            result = Math.max(result, levels.getCapacity());
+        }
+        return result;
+    }
+
+    private static BookSide[] heapSides(int capacity) {
+        BookSide[] result = new BookSide[IbMarketDepth.Side.values().length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new HeapBookSide(capacity);
+        }
+        return result;
+    }
+
+    private static BookSide[] directSides(ByteBuffer storage, int capacity) {
+        if (storage.remaining() < getStorageSize(capacity)) {
+            throw new IllegalArgumentException(String.format(
+                    "Buffer of %d bytes is too small for %d levels", storage.remaining(), capacity));
+        }
+
+        BookSide[] result = new BookSide[IbMarketDepth.Side.values().length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new DirectBookSide(storage, storage.position() + i * DirectBookSide.getStorageSize(capacity),
+                                           capacity);
+        }
+        return result;
+    }
+
+    private void refreshCumulative(int side) {
+        analyticsCumulative(side).refresh(analyticsLevels(side));
+    }
+
+    private PriceLevels analyticsLevels(int side) {
+        return ladders != null ? ladders[side] : sides[side];
+    }
+
+    private CumulativeDepth analyticsCumulative(int side) {
+        return ladders != null ? ladders[side].getCumulative() : sides[side].getCumulative();
+    }
+
+    // Removes contribution of the row, which is replaced, deleted or pushed out of the book, from its price
+    private void withdraw(int side, int row) {
+        BookSide levels = sides[side];
+        if (row >= 0 && row < levels.getDepth()) {
+            ladders[side].add(levels.getPrice(row), levels.getMarketMaker(row), -levels.getSize(row));
+        }
+    }
+
+    private void copyLevels(IbOrderBookSnapshot target, boolean aggregated) {
+        if (aggregated) {
+            copyAggregatedLevels(target);
+        } else {
+            copyLevels(target);
+        }
+    }
+
+    private void copyAggregatedLevels(IbOrderBookSnapshot target) {
+        for (int side = 0; side < ladders.length; side++) {
+            PriceLadder ladder = ladders[side];
+            double[] prices = ladder.getPrices();
+            int[] sizes = ladder.getSizes();
+
+            int depth = Math.min(ladder.getDepth(), target.getCapacity());
+            depth = Math.min(depth, Math.min(prices.length, sizes.length));
+
+            for (int i = 0; i < depth; i++) {
+                target.setLevel(side, i, prices[i], sizes[i], null);
+            }
+            target.setDepth(side, Math.max(depth, 0));
+        }
+        target.setVersion(version);
+    }
+
+    // Can be called with inconsistent state at optimistic read, the result is discarded by the caller in that case
+    private void copyLevels(IbOrderBookSnapshot target) {
+        String[] names = marketMakers;
+        for (int side = 0; side < sides.length; side++) {
+            sides[side].copyTo(target, side, names);
+        }
+        target.setVersion(version);
+    }
+
+    private int internMarketMaker(String marketMaker) {
+        if (marketMaker == null) {
+            return NO_MARKET_MAKER;
+        }
+
+        Integer id = marketMakerIds.get(marketMaker);
+        if (id == null) {
+            id = marketMakers.length;
+            String[] extended = Arrays.copyOf(marketMakers, id + 1);
+            extended[id] = marketMaker;
+            marketMakers = extended;
+            marketMakerIds.put(marketMaker, id);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,129 @@
+package lv.sergluka.ib_client.types;
+
+/**
+ * Metrics of {@link IbOrderBook} state.
+ *
+ * <p>Prices of an empty side are {@link Double#NaN}, so are all metrics depending on them.
+ *
+ * @see IbOrderBook#getAnalytics
+ */
+@SuppressWarnings("unused")
+public class IbOrderBookAnalytics {
+
+    private final long version;
+    private final double bidPrice;
+    private final int bidSize;
+    private final double askPrice;
+    private final int askSize;
+    private final long bidTopSize;
+    private final long askTopSize;
+    private final double bidFillPrice;
+    private final double askFillPrice;
+
+    public IbOrderBookAnalytics(long version, double bidPrice, int bidSize, double askPrice, int askSize,
+                                long bidTopSize, long askTopSize, double bidFillPrice, double askFillPrice) {
+        this.version = version;
+        this.bidPrice = bidPrice;
+        this.bidSize = bidSize;
+        this.askPrice = askPrice;
+        this.askSize = askSize;
+        this.bidTopSize = bidTopSize;
+        this.askTopSize = askTopSize;
+        this.bidFillPrice = bidFillPrice;
+        this.askFillPrice = askFillPrice;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public double getBidPrice() {
+        return bidPrice;
+    }
+
+    public int getBidSize() {
+        return bidSize;
+    }
+
+    public double getAskPrice() {
+        return askPrice;
+    }
+
+    public int getAskSize() {
+        return askSize;
+    }
+
+    public double getMid() {
+        return (bidPrice + askPrice) / 2;
+    }
+
+    public double getSpread() {
+        return askPrice - bidPrice;
+    }
+
+    /**
+     * Returns mid price weighted by sizes of the best levels, so it's closer to the side with less size.
+     *
+     * @return microprice
+     */
+    public double getMicroprice() {
+        long total = (long) bidSize + askSize;
+        if (total == 0) {
+            return getMid();
+        }
+        return (bidPrice * askSize + askPrice * bidSize) / total;
+    }
+
+    /**
+     * Returns imbalance of the top levels: (bid size - ask size) / (bid size + ask size).
+     *
+     * @return imbalance in range [-1, 1] or {@link Double#NaN} if the book is empty
+     */
+    public double getImbalance() {
+        long total = bidTopSize + askTopSize;
+        if (total == 0) {
+            return Double.NaN;
+        }
+        return (double) (bidTopSize - askTopSize) / total;
+    }
+
+    public long getBidTopSize() {
+        return bidTopSize;
+    }
+
+    public long getAskTopSize() {
+        return askTopSize;
+    }
+
+    /**
+     * Returns average price of selling the requested quantity into bids.
+     *
+     * @return price or {@link Double#NaN} if bids don't have enough size
+     */
+    public double getBidFillPrice() {
+        return bidFillPrice;
+    }
+
+    /**
+     * Returns average price of buying the requested quantity from asks.
+     *
+     * @return price or {@link Double#NaN} if asks don't have enough size
+     */
+    public double getAskFillPrice() {
+        return askFillPrice;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder("{");
+        buffer.append("version=").append(version);
+        buffer.append(", bid=").append(bidSize).append('@').append(bidPrice);
+        buffer.append(", ask=").append(askSize).append('@').append(askPrice);
+        buffer.append(", microprice=").append(getMicroprice());
+        buffer.append(", imbalance=").append(getImbalance());
+        buffer.append(", bidFillPrice=").append(bidFillPrice);
+        buffer.append(", askFillPrice=").append(askFillPrice);
+        buffer.append('}');
+        return buffer.toString();
+    }
+}
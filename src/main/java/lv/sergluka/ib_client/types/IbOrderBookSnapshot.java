@@ -0,0 +1,93 @@
+package lv.sergluka.ib_client.types;
+
+/**
+ * Consistent copy of top levels of {@link IbOrderBook}.
+ *
+ * <p>Snapshot has a fixed capacity and can be refilled by {@link IbOrderBook#copyTo} again and again. It isn't
+ * thread-safe, every reader thread should have its own instance.
+ */
+@SuppressWarnings("unused")
+public class IbOrderBookSnapshot {
+
+    private static final int SIDES = IbMarketDepth.Side.values().length;
+
+    private final int capacity;
+    private final int[] depths = new int[SIDES];
+    private final double[][] prices;
+    private final int[][] sizes;
+    private final String[][] marketMakers;
+
+    private long version = -1;
+
+    public IbOrderBookSnapshot(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(String.format("Unexpected capacity: %d", capacity));
+        }
+
+        this.capacity = capacity;
+        prices = new double[SIDES][capacity];
+        sizes = new int[SIDES][capacity];
+        marketMakers = new String[SIDES][capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns version of the book at the moment of copying.
+     *
+     * @return book version or -1 if the snapshot hasn't been filled yet
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getDepth(IbMarketDepth.Side side) {
+        return depths[side.ordinal()];
+    }
+
+    public double getPrice(IbMarketDepth.Side side, int level) {
+        return prices[side.ordinal()][level];
+    }
+
+    public int getSize(IbMarketDepth.Side side, int level) {
+        return sizes[side.ordinal()][level];
+    }
+
+    public String getMarketMaker(IbMarketDepth.Side side, int level) {
+        return marketMakers[side.ordinal()][level];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder("{");
+        buffer.append("version=").append(version);
+        for (IbMarketDepth.Side side : IbMarketDepth.Side.values()) {
+            buffer.append(", ").append(side).append("=[");
+            for (int i = 0; i < getDepth(side); i++) {
+                if (i > 0) {
+                    buffer.append(", ");
+                }
+                buffer.append(getSize(side, i)).append('@').append(getPrice(side, i));
+            }
+            buffer.append(']');
+        }
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    void setLevel(int side, int level, double price, int size, String marketMaker) {
+        prices[side][level] = price;
+        sizes[side][level] = size;
+        marketMakers[side][level] = marketMaker;
+    }
+
+    void setDepth(int side, int depth) {
+        depths[side] = depth;
+    }
+
+    void setVersion(long newVersion) {
+        version = newVersion;
+    }
+}
@@ -0,0 +1,136 @@
+package lv.sergluka.ib_client.types;
+
+import com.ib.client.Contract;
+
+import java.util.List;
+
+/**
+ * Notification that {@link IbOrderBook} has been changed by one or more market depth updates.
+ *
+ * <p>Changed levels of every side are given as an inclusive range, which is -1..-1 if the side hasn't been
+ * changed.
+ *
+ * @see lv.sergluka.ib_client.IbClient#subscribeOnOrderBookUpdates
+ */
+@SuppressWarnings("unused")
+public class IbOrderBookUpdate {
+
+    public static final int NO_LEVEL = -1;
+
+    private final IbOrderBook book;
+    private final long version;
+    private final int updates;
+    private final int bidChangedFrom;
+    private final int bidChangedTo;
+    private final int askChangedFrom;
+    private final int askChangedTo;
+
+    public IbOrderBookUpdate(IbOrderBook book, long version, int updates, int bidChangedFrom, int bidChangedTo,
+                             int askChangedFrom, int askChangedTo) {
+        this.book = book;
+        this.version = version;
+        this.updates = updates;
+        this.bidChangedFrom = bidChangedFrom;
+        this.bidChangedTo = bidChangedTo;
+        this.askChangedFrom = askChangedFrom;
+        this.askChangedTo = askChangedTo;
+    }
+
+    /**
+     * Combines consecutive notifications of the same book into one.
+     *
+     * @param notifications Notifications in order of arrival, not empty
+     * @return combined notification
+     */
+    public static IbOrderBookUpdate merge(List<IbOrderBookUpdate> notifications) {
+        IbOrderBookUpdate last = notifications.get(notifications.size() - 1);
+        if (notifications.size() == 1) {
+            return last;
+        }
+
+        int updates = 0;
+        int bidFrom = NO_LEVEL;
+        int bidTo = NO_LEVEL;
+        int askFrom = NO_LEVEL;
+        int askTo = NO_LEVEL;
+        for (IbOrderBookUpdate notification : notifications) {
+            updates += notification.updates;
+            bidFrom = minLevel(bidFrom, notification.bidChangedFrom);
+            bidTo = Math.max(bidTo, notification.bidChangedTo);
+            askFrom = minLevel(askFrom, notification.askChangedFrom);
+            askTo = Math.max(askTo, notification.askChangedTo);
+        }
+        return new IbOrderBookUpdate(last.book, last.version, updates, bidFrom, bidTo, askFrom, askTo);
+    }
+
+    /**
+     * Returns the changed book. It's the live book, which may already have newer updates.
+     *
+     * @return order book
+     * @see IbOrderBook#copyTo
+     */
+    public IbOrderBook getBook() {
+        return book;
+    }
+
+    public Contract getContract() {
+        return book.getContract();
+    }
+
+    /**
+     * Returns version of the book after the last update.
+     *
+     * @return book version
+     * @see IbOrderBook#getVersion()
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns number of market depth updates combined into the notification.
+     *
+     * @return number of updates
+     */
+    public int getUpdates() {
+        return updates;
+    }
+
+    public int getBidChangedFrom() {
+        return bidChangedFrom;
+    }
+
+    public int getBidChangedTo() {
+        return bidChangedTo;
+    }
+
+    public int getAskChangedFrom() {
+        return askChangedFrom;
+    }
+
+    public int getAskChangedTo() {
+        return askChangedTo;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder("{");
+        buffer.append("conid=").append(book.getContract() != null ? book.getContract().conid() : null);
+        buffer.append(", version=").append(version);
+        buffer.append(", updates=").append(updates);
+        buffer.append(", bid=").append(bidChangedFrom).append("..").append(bidChangedTo);
+        buffer.append(", ask=").append(askChangedFrom).append("..").append(askChangedTo);
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+    private static int minLevel(int left, int right) {
+        if (left == NO_LEVEL) {
+            return right;
+        }
+        if (right == NO_LEVEL) {
+            return left;
+        }
+        return Math.min(left, right);
+    }
+}
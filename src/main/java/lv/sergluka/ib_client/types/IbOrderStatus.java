@@ -7,6 +7,9 @@ import java.util.Objects;
 
 @SuppressWarnings("unused")
 public class IbOrderStatus {
+
+    private static final long FINGERPRINT_MULTIPLIER = 31;
+
     private final int orderId;
     private final OrderStatus status;
     private final BigDecimal filled;
@@ -18,6 +21,7 @@ public class IbOrderStatus {
     private final int clientId;
     private final String whyHeld;
     private final BigDecimal mktCapPrice;
+    private final long fingerprint;
 
     public IbOrderStatus(final int orderId,
                          final String status,
@@ -41,6 +45,7 @@ public class IbOrderStatus {
         this.clientId = clientId;
         this.whyHeld = whyHeld;
         this.mktCapPrice = mktCapPrice;
+        this.fingerprint = computeFingerprint();
     }
 
     public int getOrderId() {
@@ -130,8 +135,7 @@ public class IbOrderStatus {
 
     @Override
     public int hashCode() {
-        return Objects.hash(orderId, status, filled, remaining, avgFillPrice, permId, parentId, lastFillPrice, clientId,
-                            whyHeld, mktCapPrice);
+        return Long.hashCode(fingerprint);
     }
 
     public boolean isCanceled() {
@@ -149,4 +153,33 @@ public class IbOrderStatus {
     public boolean isActive() {
         return status.isActive();
     }
+
+    /**
+     * Returns hash of all fields, which is equal for equal statuses. Decimals are hashed by their values, so unlike
+     * {@link BigDecimal#hashCode()} it doesn't depend on the scale.
+     *
+     * @return 64-bit hash
+     */
+    long getFingerprint() {
+        return fingerprint;
+    }
+
+    private long computeFingerprint() {
+        long result = orderId;
+        result = result * FINGERPRINT_MULTIPLIER + Objects.hashCode(status);
+        result = result * FINGERPRINT_MULTIPLIER + hash(filled);
+        result = result * FINGERPRINT_MULTIPLIER + hash(remaining);
+        result = result * FINGERPRINT_MULTIPLIER + hash(avgFillPrice);
+        result = result * FINGERPRINT_MULTIPLIER + permId;
+        result = result * FINGERPRINT_MULTIPLIER + parentId;
+        result = result * FINGERPRINT_MULTIPLIER + hash(lastFillPrice);
+        result = result * FINGERPRINT_MULTIPLIER + clientId;
+        result = result * FINGERPRINT_MULTIPLIER + Objects.hashCode(whyHeld);
+        result = result * FINGERPRINT_MULTIPLIER + hash(mktCapPrice);
+        return result;
+    }
+
+    private static long hash(BigDecimal value) {
+        return value != null ? Double.doubleToLongBits(value.doubleValue()) : 0;
+    }
 }
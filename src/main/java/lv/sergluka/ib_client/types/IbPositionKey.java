@@ -0,0 +1,69 @@
+package lv.sergluka.ib_client.types;
+
+import java.util.Objects;
+
+/**
+ * Identity of a position: account and contract.
+ *
+ * @see lv.sergluka.ib_client.CacheRepository#positionChanges
+ */
+public class IbPositionKey {
+    // Multiplier of the account hash, the same as Objects.hash uses for a field
+    private static final int HASH_MULTIPLIER = 31;
+
+    private final String account;
+    private final int contractId;
+    private final int hash;
+
+    public IbPositionKey(String account, int contractId) {
+        this.account = account;
+        this.contractId = contractId;
+        this.hash = hash(account, contractId);
+    }
+
+    /**
+     * Calculates hash of the key without creating it.
+     *
+     * @param account    Account
+     * @param contractId Contract ID
+     * @return same value as {@link #hashCode()} of the key
+     */
+    public static int hash(String account, int contractId) {
+        return HASH_MULTIPLIER * Objects.hashCode(account) + contractId;
+    }
+
+    public boolean matches(String otherAccount, int otherContractId) {
+        return contractId == otherContractId && Objects.equals(account, otherAccount);
+    }
+
+    public String getAccount() {
+        return account;
+    }
+
+    public int getContractId() {
+        return contractId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        IbPositionKey that = (IbPositionKey) o;
+        return contractId == that.contractId &&
+                Objects.equals(account, that.account);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return account + ":" + contractId;
+    }
+}
@@ -0,0 +1,150 @@
+package lv.sergluka.ib_client.types;
+
+import com.ib.client.PriceIncrement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Valid prices of a contract: a market rule, which defines the price increment per price band, or a single minimal
+ * tick.
+ *
+ * <p>Bands are kept in primitive arrays sorted by the low edge, so rounding is a binary search and a division without
+ * allocation. Increments like 0.01 are applied as a division by their inverse, which gives the closest double to the
+ * decimal price, e.g. 0.3 rather than 0.30000000000000004.
+ *
+ * @see lv.sergluka.ib_client.CacheRepository#roundToTick
+ */
+@SuppressWarnings("unused")
+public final class IbPriceGrid {
+
+    // Prices, which differ from a tick by less than this part of the increment, are treated as already rounded
+    private static final double EPSILON = 1e-9;
+    private static final double HALF = 0.5;
+
+    private final double[] lowEdges;
+    private final double[] increments;
+    private final double[] inverses;
+
+    private IbPriceGrid(double[] lowEdges, double[] increments) {
+        this.lowEdges = lowEdges;
+        this.increments = increments;
+        this.inverses = new double[increments.length];
+        for (int i = 0; i < increments.length; i++) {
+            double inverse = Math.rint(1 / increments[i]);
+            inverses[i] = increments[i] < 1 && Math.abs(inverse * increments[i] - 1) < EPSILON ? inverse : Double.NaN;
+        }
+    }
+
+    /**
+     * Creates grid of the market rule.
+     *
+     * @param priceIncrements Price bands, as they are returned by {@link lv.sergluka.ib_client.IbClient#reqMarketRule}
+     * @return grid
+     */
+    public static IbPriceGrid of(List<PriceIncrement> priceIncrements) {
+        if (priceIncrements.isEmpty()) {
+            throw new IllegalArgumentException("Market rule should have at least one price increment");
+        }
+
+        PriceIncrement[] sorted = priceIncrements.toArray(new PriceIncrement[0]);
+        Arrays.sort(sorted, (left, right) -> Double.compare(left.lowEdge(), right.lowEdge()));
+        double[] lowEdges = new double[sorted.length];
+        double[] increments = new double[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i].increment() <= 0) {
+                throw new IllegalArgumentException("Price increment should be positive");
+            }
+            lowEdges[i] = sorted[i].lowEdge();
+            increments[i] = sorted[i].increment();
+        }
+        return new IbPriceGrid(lowEdges, increments);
+    }
+
+    /**
+     * Creates grid with the same increment for all prices.
+     *
+     * @param minTick Minimal tick of the contract
+     * @return grid
+     */
+    public static IbPriceGrid ofTick(double minTick) {
+        if (!(minTick > 0)) {
+            throw new IllegalArgumentException("Minimal tick should be positive");
+        }
+        return new IbPriceGrid(new double[]{0}, new double[]{minTick});
+    }
+
+    /**
+     * Rounds the price to a valid one.
+     *
+     * @param price     Price
+     * @param direction Rounding direction
+     * @return closest valid price in the direction
+     */
+    public double round(double price, Direction direction) {
+        final int band = band(price);
+        final double ticks = price / increments[band];
+
+        double rounded;
+        switch (direction) {
+            case DOWN:
+                rounded = Math.floor(ticks + EPSILON);
+                break;
+            case UP:
+                rounded = Math.ceil(ticks - EPSILON);
+                break;
+            case NEAREST:
+                rounded = Math.floor(ticks + HALF + EPSILON);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown direction: " + direction);
+        }
+
+        return Double.isNaN(inverses[band]) ? rounded * increments[band] : rounded / inverses[band];
+    }
+
+    /**
+     * Returns increment of the price band, which contains the price.
+     *
+     * @param price Price
+     * @return price increment
+     */
+    public double getIncrement(double price) {
+        return increments[band(price)];
+    }
+
+    public List<PriceIncrement> getPriceIncrements() {
+        List<PriceIncrement> result = new ArrayList<>(lowEdges.length);
+        for (int i = 0; i < lowEdges.length; i++) {
+            result.add(new PriceIncrement(lowEdges[i], increments[i]));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder("IbPriceGrid{");
+        for (int i = 0; i < lowEdges.length; i++) {
+            buffer.append(i > 0 ? ", " : "").append(lowEdges[i]).append(':').append(increments[i]);
+        }
+        return buffer.append('}').toString();
+    }
+
+    private int band(double price) {
+        int index = Arrays.binarySearch(lowEdges, price);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return Math.max(index, 0);
+    }
+
+    public enum Direction {
+        /** Towards lower price, e.g. for buy limit orders. */
+        DOWN,
+        /** Towards higher price, e.g. for sell limit orders. */
+        UP,
+        /** To the closest price, half of the increment is rounded up. */
+        NEAREST
+    }
+}
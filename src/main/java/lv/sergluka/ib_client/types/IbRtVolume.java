@@ -0,0 +1,78 @@
+package lv.sergluka.ib_client.types;
+
+/**
+ * Parsed value of RT_VOLUME or RT_TRADE_VOLUME tick.
+ *
+ * <p>There is a single instance per ticker and tick type, which is updated in place with every TWS message, so
+ * consumer has to copy the values if they are needed after the next update. Absent price and VWAP are
+ * {@link Double#NaN}, absent sizes are 0.
+ *
+ * @see <a href="https://interactivebrokers.github.io/tws-api/tick_types.html">TWS API: Tick types</a>
+ */
+@SuppressWarnings("unused")
+public class IbRtVolume {
+
+    private double lastPrice = Double.NaN;
+    private long lastSize;
+    private long lastTime;
+    private long totalVolume;
+    private double vwap = Double.NaN;
+    private boolean singleTrade;
+
+    public void update(double newLastPrice, long newLastSize, long newLastTime, long newTotalVolume,
+                       double newVwap, boolean newSingleTrade) {
+        lastPrice = newLastPrice;
+        lastSize = newLastSize;
+        lastTime = newLastTime;
+        totalVolume = newTotalVolume;
+        vwap = newVwap;
+        singleTrade = newSingleTrade;
+    }
+
+    public double getLastPrice() {
+        return lastPrice;
+    }
+
+    public long getLastSize() {
+        return lastSize;
+    }
+
+    /**
+     * Returns time of the last trade.
+     *
+     * @return milliseconds since epoch
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    public long getTotalVolume() {
+        return totalVolume;
+    }
+
+    public double getVwap() {
+        return vwap;
+    }
+
+    /**
+     * Returns whether the last trade was filled by a single market maker.
+     *
+     * @return true if the trade was filled by a single market maker
+     */
+    public boolean isSingleTrade() {
+        return singleTrade;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder buffer = new StringBuilder("{");
+        buffer.append("lastPrice=").append(lastPrice);
+        buffer.append(", lastSize=").append(lastSize);
+        buffer.append(", lastTime=").append(lastTime);
+        buffer.append(", totalVolume=").append(totalVolume);
+        buffer.append(", vwap=").append(vwap);
+        buffer.append(", singleTrade=").append(singleTrade);
+        buffer.append('}');
+        return buffer.toString();
+    }
+}
@@ -78,5 +78,37 @@ public interface IbTick {
     String getLastExchange();
     String getLastRegulatoryTime();
 
+    /**
+     * Returns option computation.
+     *
+     * @param type Price the computation is based on
+     * @return live view of the latest computation or null if TWS didn't send it yet
+     */
+    IbOptionComputation getOptionComputation(IbOptionComputation.Type type);
+
+    /**
+     * Returns RT_VOLUME tick parsed into primitive fields.
+     *
+     * @return parsed value or null if TWS didn't send it yet
+     * @see #getRtVolume()
+     */
+    IbRtVolume getParsedRtVolume();
+
+    /**
+     * Returns RT_TRADE_VOLUME tick parsed into primitive fields.
+     *
+     * @return parsed value or null if TWS didn't send it yet
+     * @see #getRtTradeVolume()
+     */
+    IbRtVolume getParsedRtTradeVolume();
+
+    /**
+     * Returns LAST_TIMESTAMP tick parsed as a number.
+     *
+     * @return seconds since epoch or 0 if TWS didn't send it yet
+     * @see #getLastTimestamp()
+     */
+    long getLastTimestampSeconds();
+
     LocalDateTime getUpdateTime();
 }
@@ -0,0 +1,277 @@
+package lv.sergluka.ib_client.types;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Top of book, last trade and daily prices of all market data subscriptions, kept as primitive columns with a row
+ * per subscription.
+ *
+ * <p>Rows are dense: a removed row is replaced by the last one, so a cross-section is a plain copy of the first
+ * rows of every column. Values, which haven't been received yet, are {@link Double#NaN}.
+ *
+ * <p>Columns are updated from the reader thread and published as a seqlock, like {@link IbOrderBook}: readers
+ * copy them optimistically by {@link #copyTo} and retry if an update happened meanwhile, so they never block the
+ * reader thread. Rows are found by an open addressing index of row numbers, so a tick doesn't box its ticker ID.
+ *
+ * @see lv.sergluka.ib_client.IbClient#subscribeOnCrossSection
+ */
+@SuppressWarnings("unused")
+public class IbTickColumns {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int MIN_INDEX_CAPACITY = 128;
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 8;
+    private static final int[] COLUMN_BY_TICK_TYPE = columnByTickType();
+
+    private final StampedLock lock = new StampedLock();
+
+    private final double[][] columns = new double[Column.values().length][INITIAL_CAPACITY];
+
+    private int[] tickerIds = new int[INITIAL_CAPACITY];
+    private int[] conids = new int[INITIAL_CAPACITY];
+    // Row number + 1 by the hash of ticker ID, 0 is a free slot
+    private int[] index = new int[MIN_INDEX_CAPACITY];
+    private int size;
+    private long version;
+
+    /**
+     * Adds row of a market data subscription.
+     *
+     * @param tickerId Subscription ID
+     * @param conid    Contract ID
+     */
+    public void add(int tickerId, int conid) {
+        long stamp = lock.writeLock();
+        try {
+            if (findRow(tickerId) >= 0) {
+                return;
+            }
+            ensureCapacity(size + 1);
+            tickerIds[size] = tickerId;
+            conids[size] = conid;
+            for (double[] column : columns) {
+                column[size] = Double.NaN;
+            }
+            size++;
+            if (size * 2 > index.length) {
+                reindex();
+            } else {
+                insert(index, tickerId, size - 1);
+            }
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(int tickerId) {
+        long stamp = lock.writeLock();
+        try {
+            int row = findRow(tickerId);
+            if (row < 0) {
+                return;
+            }
+            int last = size - 1;
+            if (row != last) {
+                tickerIds[row] = tickerIds[last];
+                conids[row] = conids[last];
+                for (double[] column : columns) {
+                    column[row] = column[last];
+                }
+            }
+            size--;
+            // Subscriptions are removed rarely, so the index is rebuilt rather than patched
+            reindex();
+            version++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Applies price or size tick.
+     *
+     * @param tickerId Subscription ID
+     * @param tickType TWS tick type, ticks without a column are ignored
+     * @param value    Tick value
+     */
+    public void update(int tickerId, int tickType, double value) {
+        if (tickType < 0 || tickType >= COLUMN_BY_TICK_TYPE.length || COLUMN_BY_TICK_TYPE[tickType] < 0) {
+            return;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            int row = findRow(tickerId);
+            if (row >= 0) {
+                columns[COLUMN_BY_TICK_TYPE[tickType]][row] = value;
+                version++;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies all rows into the cross-section, which grows if needed.
+     *
+     * @param target Cross-section to fill
+     * @return version of the copied state
+     */
+    public long copyTo(IbCrossSection target) {
+        for (int attempt = 0; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                copyRows(target);
+                if (lock.validate(stamp)) {
+                    target.setTimeMillis(System.currentTimeMillis());
+                    return target.getVersion();
+                }
+            }
+            waitForUpdate(attempt);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns contract of the subscription.
+     *
+     * @param tickerId Subscription ID
+     * @return conid or 0 if there is no such subscription
+     */
+    public int getConid(int tickerId) {
+        for (int attempt = 0; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                int[] contracts = conids;
+                int row = findRow(tickerId);
+                int result = row >= 0 && row < contracts.length ? contracts[row] : 0;
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            }
+            waitForUpdate(attempt);
+        }
+    }
+
+    // Columns are updated too often, so the reader gives way to the writer instead of spinning
+    private static void waitForUpdate(int attempt) {
+        if (attempt >= OPTIMISTIC_READ_ATTEMPTS) {
+            Thread.yield();
+        }
+    }
+
+    // Can be called with inconsistent state at optimistic read, so probes are bounded and rows are checked against
+    // the captured array
+    private int findRow(int tickerId) {
+        int[] slots = index;
+        int[] ids = tickerIds;
+        int mask = slots.length - 1;
+        for (int i = tickerId & mask, probes = 0; probes < slots.length; i = (i + 1) & mask, probes++) {
+            int row = slots[i] - 1;
+            if (row < 0) {
+                return -1;
+            }
+            if (row < ids.length && ids[row] == tickerId) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    // Rebuilds the index with load factor not above 0.5
+    private void reindex() {
+        int capacity = MIN_INDEX_CAPACITY;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        int[] result = new int[capacity];
+        for (int row = 0; row < size; row++) {
+            insert(result, tickerIds[row], row);
+        }
+        index = result;
+    }
+
+    private static void insert(int[] slots, int tickerId, int row) {
+        int mask = slots.length - 1;
+        int i = tickerId & mask;
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = row + 1;
+    }
+
+    // Can be called with inconsistent state at optimistic read, so all indexes are checked against captured arrays.
+    // The result is discarded by the caller in that case.
+    private void copyRows(IbCrossSection target) {
+        int[] ids = tickerIds;
+        int[] contracts = conids;
+        int count = Math.min(size, Math.min(ids.length, contracts.length));
+        for (double[] column : columns) {
+            count = Math.min(count, column.length);
+        }
+        count = Math.max(count, 0);
+
+        target.ensureCapacity(count);
+        System.arraycopy(ids, 0, target.getTickerIds(), 0, count);
+        System.arraycopy(contracts, 0, target.getConids(), 0, count);
+        for (int i = 0; i < columns.length; i++) {
+            System.arraycopy(columns[i], 0, target.getColumn(i), 0, count);
+        }
+        target.setSize(count);
+        target.setVersion(version);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= tickerIds.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, tickerIds.length * 2);
+        tickerIds = Arrays.copyOf(tickerIds, newCapacity);
+        conids = Arrays.copyOf(conids, newCapacity);
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = Arrays.copyOf(columns[i], newCapacity);
+        }
+    }
+
+    private static int[] columnByTickType() {
+        int max = 0;
+        for (Column column : Column.values()) {
+            max = Math.max(max, column.tickType.getValue());
+        }
+        int[] result = new int[max + 1];
+        Arrays.fill(result, -1);
+        for (Column column : Column.values()) {
+            result[column.tickType.getValue()] = column.ordinal();
+        }
+        return result;
+    }
+
+    public enum Column {
+        BID(IbTickImpl.Types.BID),
+        ASK(IbTickImpl.Types.ASK),
+        LAST(IbTickImpl.Types.LAST),
+        BID_SIZE(IbTickImpl.Types.BID_SIZE),
+        ASK_SIZE(IbTickImpl.Types.ASK_SIZE),
+        LAST_SIZE(IbTickImpl.Types.LAST_SIZE),
+        OPEN(IbTickImpl.Types.OPEN_TICK),
+        HIGH(IbTickImpl.Types.HIGH),
+        LOW(IbTickImpl.Types.LOW),
+        CLOSE(IbTickImpl.Types.CLOSE_PRICE),
+        VOLUME(IbTickImpl.Types.VOLUME);
+
+        private final IbTickImpl.Types tickType;
+
+        Column(IbTickImpl.Types tickType) {
+            this.tickType = tickType;
+        }
+
+        public IbTickImpl.Types getTickType() {
+            return tickType;
+        }
+    }
+}
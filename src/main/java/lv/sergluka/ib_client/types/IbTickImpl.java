@@ -1,6 +1,7 @@
 package lv.sergluka.ib_client.types;
 
 import com.ib.client.TickAttrib;
+import lv.sergluka.ib_client.impl.utils.TickStringParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +29,10 @@ public class IbTickImpl implements IbTick {
         LOW(7),
         VOLUME(8),
         CLOSE_PRICE(9),
+        BID_OPTION_COMPUTATION(10),
+        ASK_OPTION_COMPUTATION(11),
+        LAST_OPTION_COMPUTATION(12),
+        MODEL_OPTION_COMPUTATION(13),
         OPEN_TICK(14),
         LOW13_WEEKS(15),
         HIGH13_WEEKS(16),
@@ -196,6 +201,13 @@ public class IbTickImpl implements IbTick {
     private BigDecimal volumeRate;
     private BigDecimal rtHistoricalVolatility;
 
+    // Created with the first option computation, since most tickers aren't options
+    private volatile OptionGreeks optionGreeks;
+
+    private IbRtVolume parsedRtVolume;
+    private IbRtVolume parsedRtTradeVolume;
+    private long lastTimestampSeconds;
+
     private LocalDateTime updateTime;
 
     public IbTickImpl() {
@@ -396,9 +408,14 @@ public class IbTickImpl implements IbTick {
                     break;
                 case LAST_TIMESTAMP:
                     lastTimestamp = value;
+                    parseLastTimestamp(tickerId, value);
                     break;
                 case RT_VOLUME:
                     rtVolume = value;
+                    if (parsedRtVolume == null) {
+                        parsedRtVolume = new IbRtVolume();
+                    }
+                    parseRtVolume(tickerId, value, parsedRtVolume);
                     break;
                 case IB_DIVIDENDS:
                     ibDividends = value;
@@ -408,6 +425,10 @@ public class IbTickImpl implements IbTick {
                     break;
                 case RT_TRADE_VOLUME:
                     rtTradeVolume = value;
+                    if (parsedRtTradeVolume == null) {
+                        parsedRtTradeVolume = new IbRtVolume();
+                    }
+                    parseRtVolume(tickerId, value, parsedRtTradeVolume);
                     break;
                 case LAST_EXCHANGE:
                     lastExchange = value;
@@ -462,10 +483,44 @@ public class IbTickImpl implements IbTick {
         });
     }
 
+    public IbOptionComputation setOptionComputation(IbOptionComputation.Type type,
+                                                    double impliedVolatility,
+                                                    double delta,
+                                                    double optionPrice,
+                                                    double presentValueDividend,
+                                                    double gamma,
+                                                    double vega,
+                                                    double theta,
+                                                    double underlyingPrice) {
+        OptionGreeks greeks = optionGreeks;
+        if (greeks == null) {
+            greeks = new OptionGreeks();
+            optionGreeks = greeks;
+        }
+        return greeks.update(type, impliedVolatility, delta, optionPrice, presentValueDividend, gamma, vega, theta,
+                             underlyingPrice);
+    }
+
     public void refreshUpdateTime() {
         updateTime = LocalDateTime.now();
     }
 
+    private void parseRtVolume(int tickerId, String value, IbRtVolume target) {
+        try {
+            TickStringParser.parseRtVolume(value, target);
+        } catch (NumberFormatException e) {
+            log.warn("Malformed RT volume for {}: '{}': {}", tickerId, value, e.getMessage());
+        }
+    }
+
+    private void parseLastTimestamp(int tickerId, String value) {
+        try {
+            lastTimestampSeconds = TickStringParser.parseTimestamp(value);
+        } catch (NumberFormatException e) {
+            log.warn("Malformed last timestamp for {}: '{}': {}", tickerId, value, e.getMessage());
+        }
+    }
+
     @Override
     public Integer getBidSize() {
         return bidSize;
@@ -816,6 +871,27 @@ public class IbTickImpl implements IbTick {
         return rtHistoricalVolatility;
     }
 
+    @Override
+    public IbOptionComputation getOptionComputation(IbOptionComputation.Type type) {
+        OptionGreeks greeks = optionGreeks;
+        return greeks != null ? greeks.get(type) : null;
+    }
+
+    @Override
+    public IbRtVolume getParsedRtVolume() {
+        return parsedRtVolume;
+    }
+
+    @Override
+    public IbRtVolume getParsedRtTradeVolume() {
+        return parsedRtTradeVolume;
+    }
+
+    @Override
+    public long getLastTimestampSeconds() {
+        return lastTimestampSeconds;
+    }
+
     @Override
     public LocalDateTime getUpdateTime() {
         return updateTime;
@@ -0,0 +1,110 @@
+package lv.sergluka.ib_client.types;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Option computations of a ticker, kept in primitive slots per {@link IbOptionComputation.Type}.
+ *
+ * <p>Slots are written by the reader thread under a seqlock, like {@link IbTickColumns}, so an update allocates
+ * nothing and readers get a consistent set of values of a type without blocking the writer. Every type has a single
+ * view, which is emitted with every update of it.
+ */
+final class OptionGreeks {
+
+    static final int IMPLIED_VOLATILITY = 0;
+    static final int DELTA = 1;
+    static final int OPTION_PRICE = 2;
+    static final int PRESENT_VALUE_DIVIDEND = 3;
+    static final int GAMMA = 4;
+    static final int VEGA = 5;
+    static final int THETA = 6;
+    static final int UNDERLYING_PRICE = 7;
+    static final int FIELDS = 8;
+
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 8;
+    private static final IbOptionComputation.Type[] TYPES = IbOptionComputation.Type.values();
+
+    private final StampedLock lock = new StampedLock();
+    private final double[] values = new double[TYPES.length * FIELDS];
+    private final IbOptionComputation[] views = new IbOptionComputation[TYPES.length];
+    // Bit per type, which has been received
+    private volatile int received;
+
+    OptionGreeks() {
+        Arrays.fill(values, Double.NaN);
+        for (IbOptionComputation.Type type : TYPES) {
+            views[type.ordinal()] = new IbOptionComputation(type, this);
+        }
+    }
+
+    IbOptionComputation update(IbOptionComputation.Type type, double impliedVolatility, double delta,
+                               double optionPrice, double presentValueDividend, double gamma, double vega,
+                               double theta, double underlyingPrice) {
+        final int offset = type.ordinal() * FIELDS;
+        long stamp = lock.writeLock();
+        try {
+            values[offset + IMPLIED_VOLATILITY] = valueOrNaN(impliedVolatility);
+            values[offset + DELTA] = valueOrNaN(delta);
+            values[offset + OPTION_PRICE] = valueOrNaN(optionPrice);
+            values[offset + PRESENT_VALUE_DIVIDEND] = valueOrNaN(presentValueDividend);
+            values[offset + GAMMA] = valueOrNaN(gamma);
+            values[offset + VEGA] = valueOrNaN(vega);
+            values[offset + THETA] = valueOrNaN(theta);
+            values[offset + UNDERLYING_PRICE] = valueOrNaN(underlyingPrice);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        received |= 1 << type.ordinal();
+        return views[type.ordinal()];
+    }
+
+    /**
+     * Returns view of the type.
+     *
+     * @param type Price the computation is based on
+     * @return view or null if the type hasn't been received yet
+     */
+    IbOptionComputation get(IbOptionComputation.Type type) {
+        return (received & (1 << type.ordinal())) != 0 ? views[type.ordinal()] : null;
+    }
+
+    double get(IbOptionComputation.Type type, int field) {
+        final int index = type.ordinal() * FIELDS + field;
+        for (int attempt = 0; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                double value = values[index];
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            }
+            waitForUpdate(attempt);
+        }
+    }
+
+    void copy(IbOptionComputation.Type type, double[] target) {
+        final int offset = type.ordinal() * FIELDS;
+        for (int attempt = 0; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                System.arraycopy(values, offset, target, 0, FIELDS);
+                if (lock.validate(stamp)) {
+                    return;
+                }
+            }
+            waitForUpdate(attempt);
+        }
+    }
+
+    private static void waitForUpdate(int attempt) {
+        if (attempt >= OPTIMISTIC_READ_ATTEMPTS) {
+            Thread.yield();
+        }
+    }
+
+    // TWS API describes that double equals Double.MAX_VALUE should be threaded as unset
+    static double valueOrNaN(double value) {
+        return value == Double.MAX_VALUE ? Double.NaN : value;
+    }
+}
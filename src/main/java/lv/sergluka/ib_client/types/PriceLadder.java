@@ -0,0 +1,166 @@
+package lv.sergluka.ib_client.types;
+
+import java.util.Arrays;
+
+/**
+ * One side of order book aggregated by price: total size per price level along with contribution of every venue.
+ *
+ * <p>Levels are sorted from the best price. Changes are applied as size deltas, so a depth update costs a binary
+ * search plus a shift when a price level appears or disappears. Rows of venue sizes are recycled, so the ladder
+ * doesn't allocate once it has reached its usual depth.
+ */
+class PriceLadder implements PriceLevels {
+
+    private final boolean descending;
+    private final CumulativeDepth cumulative;
+
+    private double[] prices;
+    private int[] sizes;
+    private int[][] venueSizes;
+    private int depth;
+
+    PriceLadder(boolean descending, int capacity) {
+        this.descending = descending;
+        prices = new double[capacity];
+        sizes = new int[capacity];
+        venueSizes = new int[capacity + 1][];
+        cumulative = new CumulativeDepth(capacity);
+    }
+
+    /**
+     * Applies size change of a venue at a price level.
+     *
+     * @param price Price level
+     * @param venue Interned venue ID, negative if unknown
+     * @param delta Size change
+     */
+    void add(double price, int venue, int delta) {
+        if (delta == 0 || Double.isNaN(price)) {
+            return;
+        }
+
+        int index = find(price);
+        if (index < 0) {
+            if (delta < 0) {
+                return;
+            }
+            index = -index - 1;
+            insert(index, price);
+        }
+
+        sizes[index] += delta;
+        cumulative.markChanged(index);
+        if (venue >= 0) {
+            int[] row = venueSizes[index];
+            if (venue >= row.length) {
+                row = Arrays.copyOf(row, venue + 1);
+                venueSizes[index] = row;
+            }
+            row[venue] += delta;
+        }
+
+        if (sizes[index] <= 0) {
+            remove(index);
+        }
+    }
+
+    void clear() {
+        depth = 0;
+        cumulative.markChanged(0);
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public double getPrice(int level) {
+        return prices[level];
+    }
+
+    @Override
+    public int getSize(int level) {
+        return sizes[level];
+    }
+
+    double[] getPrices() {
+        return prices;
+    }
+
+    int[] getSizes() {
+        return sizes;
+    }
+
+    CumulativeDepth getCumulative() {
+        return cumulative;
+    }
+
+    int getVenueSize(int level, int venue) {
+        int[] row = venueSizes[level];
+        return venue >= 0 && venue < row.length ? row[venue] : 0;
+    }
+
+    // Returns index of the price or (-(insertion point) - 1) like Arrays.binarySearch
+    private int find(double price) {
+        double key = descending ? -price : price;
+        int low = 0;
+        int high = depth - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            double value = descending ? -prices[middle] : prices[middle];
+            if (value < key) {
+                low = middle + 1;
+            } else if (value > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insert(int index, double price) {
+        ensureCapacity(depth + 1);
+
+        int[] row = venueSizes[depth];
+        if (row == null) {
+            row = new int[0];
+        } else {
+            Arrays.fill(row, 0);
+        }
+
+        int tail = depth - index;
+        System.arraycopy(prices, index, prices, index + 1, tail);
+        System.arraycopy(sizes, index, sizes, index + 1, tail);
+        System.arraycopy(venueSizes, index, venueSizes, index + 1, tail);
+
+        prices[index] = price;
+        sizes[index] = 0;
+        venueSizes[index] = row;
+        depth++;
+    }
+
+    private void remove(int index) {
+        int[] row = venueSizes[index];
+
+        int tail = depth - index - 1;
+        System.arraycopy(prices, index + 1, prices, index, tail);
+        System.arraycopy(sizes, index + 1, sizes, index, tail);
+        System.arraycopy(venueSizes, index + 1, venueSizes, index, tail);
+        depth--;
+
+        // Keep the row to reuse it for the next inserted level
+        venueSizes[depth] = row;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= prices.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, prices.length * 2);
+        prices = Arrays.copyOf(prices, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        venueSizes = Arrays.copyOf(venueSizes, newCapacity + 1);
+    }
+}
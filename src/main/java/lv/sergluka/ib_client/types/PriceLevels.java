@@ -0,0 +1,13 @@
+package lv.sergluka.ib_client.types;
+
+/**
+ * Read access to price levels of a book side, sorted from the best one.
+ */
+interface PriceLevels {
+
+    int getDepth();
+
+    double getPrice(int level);
+
+    int getSize(int level);
+}
@@ -0,0 +1,87 @@
+package lv.sergluka.ib_client.types;
+
+/**
+ * Rows with the greatest values, kept in a bounded min-heap of primitive arrays.
+ */
+class TopRows {
+
+    private final int[] rows;
+    private final double[] values;
+    private int size;
+
+    TopRows(int limit) {
+        rows = new int[limit];
+        values = new double[limit];
+    }
+
+    void offer(int row, double value) {
+        if (Double.isNaN(value) || rows.length == 0) {
+            return;
+        }
+
+        if (size < rows.length) {
+            siftUp(size, row, value);
+            size++;
+        } else if (value > values[0]) {
+            siftDown(0, row, value);
+        }
+    }
+
+    TopRows merge(TopRows other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.rows[i], other.values[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Returns rows ordered from the greatest value. The heap is emptied.
+     *
+     * @return rows
+     */
+    int[] drain() {
+        int[] result = new int[size];
+        while (size > 0) {
+            result[size - 1] = rows[0];
+            size--;
+            if (size > 0) {
+                siftDown(0, rows[size], values[size]);
+            }
+        }
+        return result;
+    }
+
+    private void siftUp(int index, int row, double value) {
+        int child = index;
+        while (child > 0) {
+            int parent = (child - 1) >>> 1;
+            if (values[parent] <= value) {
+                break;
+            }
+            rows[child] = rows[parent];
+            values[child] = values[parent];
+            child = parent;
+        }
+        rows[child] = row;
+        values[child] = value;
+    }
+
+    private void siftDown(int index, int row, double value) {
+        int parent = index;
+        int half = size >>> 1;
+        while (parent < half) {
+            int child = 2 * parent + 1;
+            if (child + 1 < size && values[child + 1] < values[child]) {
+                child++;
+            }
+            if (value <= values[child]) {
+                break;
+            }
+            rows[parent] = rows[child];
+            values[parent] = values[child];
+            parent = child;
+        }
+        rows[parent] = row;
+        values[parent] = value;
+    }
+}
@@ -650,6 +650,39 @@ class IbClientTest extends Specification {
         MONTH_1 | _
     }
 
+    def "Subscribe to real time bars"() {
+
+        given:
+        def bars = client.subscribeOnRealtimeBars(createContractEUR(), IbClient.Type.MIDPOINT,
+                                                  IbClient.TradingHours.Outside)
+
+        expect:
+        StepVerifier.create(bars)
+                .assertNext { IbBar bar ->
+                    assert bar.time.second % 5 == 0
+                    assert bar.open
+                    assert bar.high
+                    assert bar.low
+                    assert bar.close
+                }
+                .thenCancel()
+                .verify(Duration.ofSeconds(15))
+    }
+
+    def "Real time bars subscriptions should share the same request"() {
+
+        given:
+        def contract = createContractEUR()
+        def first = client.subscribeOnRealtimeBars(contract, IbClient.Type.MIDPOINT, IbClient.TradingHours.Outside)
+        def second = client.subscribeOnRealtimeBars(contract, IbClient.Type.MIDPOINT, IbClient.TradingHours.Outside)
+
+        expect:
+        StepVerifier.create(Flux.zip(first, second))
+                .assertNext { assert it.t1 == it.t2 }
+                .thenCancel()
+                .verify(Duration.ofSeconds(15))
+    }
+
     def "Get all accounts summary after few calls"() {
 
         given:
@@ -0,0 +1,139 @@
+package lv.sergluka.ib_client.impl.bars
+
+import lv.sergluka.ib_client.types.IbAggregatedBar
+import reactor.core.publisher.Flux
+import spock.lang.Specification
+
+import java.time.LocalDateTime
+import java.util.function.Consumer
+import java.util.function.Function
+import java.util.function.LongSupplier
+
+import static lv.sergluka.ib_client.IbClient.BarSize.*
+
+class BarAggregatorTest extends Specification {
+
+    def bars = []
+    def aggregator = new BarAggregator({ Flux.never() } as Function, { 0L } as LongSupplier)
+
+    void setup() {
+        aggregator.bind({ bars.add(it) } as Consumer<IbAggregatedBar>)
+    }
+
+    def "Trades without subscribers shouldn't produce bars"() {
+        when:
+        aggregator.onTrade(1_000, 10.0, 1)
+        aggregator.onTrade(6_000, 10.0, 1)
+
+        then:
+        bars.isEmpty()
+    }
+
+    def "Bar should be emitted by the first trade of the next bar"() {
+        given:
+        def subscription = aggregator.subscribe(EnumSet.of(SEC_5, MIN_1)).subscribe()
+
+        when:
+        aggregator.onTrade(1_000, 10.0, 1)
+        aggregator.onTrade(2_000, 12.0, 3)
+        aggregator.onTrade(4_999, 9.0, 1)
+        aggregator.onTrade(5_000, 11.0, 2)
+
+        then:
+        bars.size() == 1
+        with(bars[0] as IbAggregatedBar) {
+            size == SEC_5
+            time == LocalDateTime.of(1970, 1, 1, 0, 0, 0)
+            open == 10.0
+            high == 12.0
+            low == 9.0
+            close == 9.0
+            volume == 5
+            count == 3
+            wap == 11.0
+        }
+
+        when:
+        aggregator.onTrade(61_000, 11.0, 2)
+
+        then:
+        bars.size() == 3
+        bars[1].size == SEC_5
+        bars[2].size == MIN_1
+        bars[2].volume == 7
+
+        cleanup:
+        subscription.dispose()
+    }
+
+    def "LAST_SIZE tick should be combined with the preceding LAST price"() {
+        given:
+        def subscription = aggregator.subscribe(EnumSet.of(SEC_1)).subscribe()
+
+        when:
+        aggregator.onLastSize(1_000, 5)
+        aggregator.onLastPrice(3.0)
+        aggregator.onLastSize(1_000, 5)
+        aggregator.onLastSize(2_000, 1)
+
+        then:
+        bars.size() == 1
+        bars[0].volume == 5
+        bars[0].count == 1
+
+        cleanup:
+        subscription.dispose()
+    }
+
+    def "Bar should be emitted by the timer once its period is over"() {
+        given:
+        def subscription = aggregator.subscribe(EnumSet.of(SEC_5)).subscribe()
+
+        when:
+        aggregator.onTrade(1_000, 10.0, 1)
+        aggregator.flush(5_500)
+
+        then:
+        bars.isEmpty()
+
+        when:
+        aggregator.flush(6_000)
+        aggregator.flush(7_000)
+
+        then:
+        bars.size() == 1
+        bars[0].volume == 1
+
+        when: "late trade of the emitted bar"
+        aggregator.onTrade(4_000, 12.0, 2)
+        aggregator.flush(11_000)
+
+        then:
+        bars.size() == 2
+        bars[1].time == LocalDateTime.of(1970, 1, 1, 0, 0, 5)
+        bars[1].volume == 2
+
+        cleanup:
+        subscription.dispose()
+    }
+
+    def "Partial bar of a previous subscription shouldn't be emitted"() {
+        given:
+        def subscription = aggregator.subscribe(EnumSet.of(SEC_5)).subscribe()
+        aggregator.onTrade(1_000, 10.0, 1)
+        subscription.dispose()
+
+        when:
+        subscription = aggregator.subscribe(EnumSet.of(SEC_5)).subscribe()
+        aggregator.onTrade(31_000, 11.0, 2)
+        aggregator.onTrade(36_000, 12.0, 3)
+
+        then:
+        bars.size() == 1
+        bars[0].time == LocalDateTime.of(1970, 1, 1, 0, 0, 30)
+        bars[0].volume == 2
+
+        cleanup:
+        subscription.dispose()
+    }
+}
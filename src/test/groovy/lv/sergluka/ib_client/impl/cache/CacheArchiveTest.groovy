@@ -0,0 +1,55 @@
+package lv.sergluka.ib_client.impl.cache
+
+import lv.sergluka.ib_client.types.IbArchivedExecution
+import lv.sergluka.ib_client.types.IbArchivedOrder
+import lv.sergluka.ib_client.types.IbOrder
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.StandardOpenOption
+import java.time.LocalDateTime
+
+class CacheArchiveTest extends Specification {
+
+    def file = Files.createTempFile("archive", ".tsv")
+    def archive = new CacheArchive(file)
+
+    def cleanup() {
+        archive.close()
+        Files.deleteIfExists(file)
+    }
+
+    def "Records should be read back with escaped fields"() {
+        given:
+        archive.append(new IbArchivedOrder(1, 2, "DU1", 100, "A\tB", "", "BUY", "LMT", 10, 1.5,
+                                           IbOrder.Stage.FILLED, 10.0G, 1.50G, 1000))
+        archive.append(new IbArchivedExecution("0001.01", 1, "DU1", 100, "A\\B", LocalDateTime.of(2020, 1, 2, 3, 4),
+                                               "BOT", 10.0G, 1.5G, null, "USD", 0G, 1000))
+
+        when:
+        def orders = archive.findOrders({ true })
+        def executions = archive.findExecutions({ it.orderId == 1 })
+
+        then:
+        orders.size() == 1
+        orders[0].symbol == "A\tB"
+        orders[0].orderRef == ""
+        orders[0].stage == IbOrder.Stage.FILLED
+        orders[0].avgFillPrice == 1.50G
+        executions.size() == 1
+        executions[0].symbol == "A\\B"
+        executions[0].time == LocalDateTime.of(2020, 1, 2, 3, 4)
+        executions[0].commission == null
+    }
+
+    def "Malformed records should be skipped"() {
+        given:
+        archive.append(new IbArchivedOrder(1, 2, "DU1", 100, "A", "ref", "BUY", "LMT", 10, 1.5,
+                                           IbOrder.Stage.CANCELLED, 0G, 0G, 1000))
+        archive.flush()
+        Files.write(file, "O\t1\tbroken\n".bytes, StandardOpenOption.APPEND)
+
+        expect:
+        archive.findOrders({ true })*.orderId == [1]
+    }
+}
@@ -1,8 +1,25 @@
 package lv.sergluka.ib_client.impl.cache
 
+import com.ib.client.CommissionReport
 import com.ib.client.Contract
+import com.ib.client.Execution
+import com.ib.client.Order
+import com.ib.client.OrderState
+import com.ib.client.OrderStatus
+import lv.sergluka.ib_client.params.IbClientOptions
+import lv.sergluka.ib_client.types.IbCacheChange
+import lv.sergluka.ib_client.types.IbCommissionReport
+import lv.sergluka.ib_client.types.IbContract
+import lv.sergluka.ib_client.types.IbExecution
+import lv.sergluka.ib_client.types.IbOrder
+import lv.sergluka.ib_client.types.IbOrderStatus
+import lv.sergluka.ib_client.types.IbPosition
+import lv.sergluka.ib_client.types.IbPositionKey
 import spock.lang.Specification
 
+import java.nio.file.Files
+import java.time.Duration
+
 class CacheRepositoryTest extends Specification {
 
     def cache = new CacheRepositoryImpl()
@@ -18,4 +35,218 @@ class CacheRepositoryTest extends Specification {
         then:
         position == null
     }
+
+    def "Positions should be indexed and unchanged ones should be detected"() {
+        given:
+        def stock = new Contract()
+        stock.conid(1)
+        stock.symbol("IBM")
+        def option = new Contract()
+        option.conid(2)
+        option.symbol("IBM")
+
+        expect:
+        cache.updatePosition(new IbPosition("DU1", stock, 10G, 1G))
+        cache.updatePosition(new IbPosition("DU1", option, 1G, 2G))
+        cache.updatePosition(new IbPosition("DU2", stock, 5G, 1G))
+        !cache.updatePosition(new IbPosition("DU2", stock, 5.00G, 1G))
+        cache.updatePosition(new IbPosition("DU2", stock, 5G, 1.5G))
+
+        cache.getPosition("DU2", stock).avgCost == 1.5G
+        cache.getPositionsByAccount("DU1")*.contract*.conid().sort() == [1, 2]
+        cache.getPositionsByContract(stock)*.account.sort() == ["DU1", "DU2"]
+        cache.getPositionsByUnderlying("IBM").size() == 3
+    }
+
+    def "Order book of the latest depth subscription should be returned"() {
+        given:
+        def contract = new Contract()
+        contract.conid(1234)
+
+        when:
+        def first = cache.bindOrderBook(10, contract, 5, false, {}, null)
+        def second = cache.bindOrderBook(11, contract, 20, false, {}, null)
+
+        then:
+        cache.getDepthBinding(10).is(first)
+        cache.getOrderBook(contract).is(second.book)
+
+        when:
+        cache.unbindOrderBook(11)
+
+        then:
+        cache.getDepthBinding(11) == null
+        cache.getOrderBook(contract).is(first.book)
+    }
+
+    def "Clear should drop order book bindings"() {
+        given:
+        def contract = new Contract()
+        contract.conid(1234)
+        cache.bindOrderBook(10, contract, 5, false, {}, null)
+
+        when:
+        cache.clear()
+
+        then:
+        cache.getDepthBinding(10) == null
+        cache.getOrderBook(contract) == null
+    }
+
+    def "Order indexes should follow status updates"() {
+        given:
+        def contract = new Contract()
+        contract.conid(1234)
+        def order = new Order()
+        order.account("DU1")
+        order.orderRef("ref")
+        cache.addOrder(new IbOrder(7, contract, order, new OrderState()))
+        def working = cache.getOrders(IbOrder.Stage.WORKING)
+        def filled = cache.getOrders(IbOrder.Stage.FILLED)
+
+        expect:
+        working*.orderId == [7]
+        filled.isEmpty()
+        cache.getOrder(7).is(cache.getOrders()[7])
+        cache.getOrdersByAccount("DU1")*.orderId == [7]
+        cache.getOrdersByContract(contract)*.orderId == [7]
+        cache.getOrdersByRef("ref")*.orderId == [7]
+
+        when:
+        cache.addNewStatus(status(7, "Filled"))
+
+        then: "views are live"
+        working.isEmpty()
+        filled*.orderId == [7]
+
+        when:
+        cache.clear()
+
+        then:
+        filled.isEmpty()
+        cache.getOrdersByAccount("DU1").isEmpty()
+        cache.getOrders().isEmpty()
+    }
+
+    def "Terminal orders out of retention should be moved to the archive"() {
+        given:
+        def file = Files.createTempFile("archive", ".tsv")
+        def archive = new CacheArchive(file)
+        def cache = new CacheRepositoryImpl(null, IbOrder.DEFAULT_STATUS_HISTORY,
+                                            new CacheRetention(1, Duration.ofMinutes(1), archive),
+                                            IbClientOptions.DEFAULT_EXECUTION_JOIN_TIMEOUT)
+        (1..3).each {
+            def contract = new Contract()
+            contract.conid(100 + it)
+            cache.addOrder(new IbOrder(it, contract, new Order(), null))
+            cache.addNewStatus(status(it, it == 3 ? "Submitted" : "Filled"))
+        }
+
+        when:
+        cache.evictExpired(System.currentTimeMillis())
+
+        then: "only the oldest one is over the count"
+        cache.getOrders().keySet() == [2, 3] as Set
+        cache.findArchivedOrders({ true })*.orderId == [1]
+
+        when:
+        cache.evictExpired(System.currentTimeMillis() + Duration.ofMinutes(2).toMillis())
+
+        then: "working order is kept"
+        cache.getOrders().keySet() == [3] as Set
+        cache.getOrders(IbOrder.Stage.FILLED).isEmpty()
+        cache.findArchivedOrders({ it.conid == 102 })*.orderId == [2]
+
+        cleanup:
+        archive.close()
+        Files.deleteIfExists(file)
+    }
+
+    def "Execution without commission should stay out of retention until the commission arrives"() {
+        given:
+        def file = Files.createTempFile("archive", ".tsv")
+        def archive = new CacheArchive(file)
+        def cache = new CacheRepositoryImpl(null, IbOrder.DEFAULT_STATUS_HISTORY,
+                                            new CacheRetention(1, Duration.ofMinutes(1), archive),
+                                            Duration.ofSeconds(1))
+        def execution = new Execution()
+        execution.execId("1")
+        execution.time("20200101  10:00:00")
+        cache.addExecutionReport(new IbContract(new Contract()), new IbExecution(execution))
+        def later = System.currentTimeMillis() + Duration.ofMinutes(2).toMillis()
+
+        when: "the join times out"
+        cache.evictExpired(later)
+        cache.evictExpired(later + Duration.ofMinutes(2).toMillis())
+
+        then: "the unmatched execution is kept"
+        cache.getExecutionReports()*.execution*.execId == ["1"]
+        cache.findArchivedExecutions({ true }).isEmpty()
+
+        when:
+        def commission = new CommissionReport()
+        commission.execId("1")
+        cache.updateExecutionReport(new IbCommissionReport(commission))
+        cache.evictExpired(System.currentTimeMillis() + Duration.ofMinutes(2).toMillis())
+
+        then:
+        cache.getExecutionReports().isEmpty()
+        cache.findArchivedExecutions({ true })*.execId == ["1"]
+
+        cleanup:
+        archive.close()
+        Files.deleteIfExists(file)
+    }
+
+    def "Changes should be published with the key and the section version"() {
+        given:
+        def contract = new Contract()
+        contract.conid(1234)
+        def orderChanges = []
+        def positionChanges = []
+        cache.orderChanges().subscribe { orderChanges << it }
+        cache.positionChanges().subscribe { positionChanges << it }
+
+        when:
+        cache.addOrder(new IbOrder(7, contract, new Order(), null))
+        cache.addNewStatus(status(7, "Submitted"))
+        cache.addNewStatus(status(7, "Submitted"))
+        cache.updatePosition(new IbPosition("DU1", contract, 5G, 1G))
+        cache.clear()
+
+        then: "repeated status doesn't change the order"
+        orderChanges*.type == [IbCacheChange.Type.UPDATED, IbCacheChange.Type.UPDATED, IbCacheChange.Type.CLEARED]
+        orderChanges*.key == [7, 7, null]
+        orderChanges[1].value.lastStatus.status == OrderStatus.Submitted
+        orderChanges*.version == orderChanges*.version.sort(false)
+        positionChanges[0].key == new IbPositionKey("DU1", 1234)
+        positionChanges*.type == [IbCacheChange.Type.UPDATED, IbCacheChange.Type.CLEARED]
+    }
+
+    def "Changes published by several threads should all be delivered"() {
+        given:
+        def received = Collections.synchronizedList([])
+        cache.positionChanges().subscribe { received << it.key }
+
+        when:
+        def threads = (0..<4).collect { thread ->
+            Thread.start {
+                (1..1000).each {
+                    def contract = new Contract()
+                    contract.conid(thread * 1000 + it)
+                    cache.updatePosition(new IbPosition("DU1", contract, 1G, 1G))
+                }
+            }
+        }
+        threads*.join()
+
+        then:
+        received.size() == 4000
+        received*.contractId.toSet().size() == 4000
+    }
+
+    private static IbOrderStatus status(int orderId, String status) {
+        new IbOrderStatus(orderId, status, BigDecimal.ONE, BigDecimal.ZERO, BigDecimal.ONE, 1, 0, BigDecimal.ONE, 0,
+                          "", BigDecimal.ZERO)
+    }
 }
@@ -0,0 +1,153 @@
+package lv.sergluka.ib_client.impl.cache
+
+import com.ib.client.CommissionReport
+import com.ib.client.Contract
+import com.ib.client.Execution
+import com.ib.client.Order
+import lv.sergluka.ib_client.types.IbCommissionReport
+import lv.sergluka.ib_client.types.IbContract
+import lv.sergluka.ib_client.types.IbExecution
+import lv.sergluka.ib_client.types.IbOrder
+import lv.sergluka.ib_client.types.IbOrderStatus
+import lv.sergluka.ib_client.types.IbPosition
+import lv.sergluka.ib_client.types.IbTickColumns
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.StandardOpenOption
+import java.time.Duration
+import java.time.LocalDateTime
+
+class CacheSnapshotTest extends Specification {
+
+    def file = Files.createTempFile("snapshot", ".bin")
+    def snapshot = new CacheSnapshot(file)
+    def cache = new CacheRepositoryImpl()
+
+    def setup() {
+        Files.delete(file)
+        (1..2).each {
+            def order = new Order()
+            order.account("DU1")
+            order.orderRef("ref" + it)
+            order.lmtPrice(1.5)
+            cache.addOrder(new IbOrder(it, contract(100 + it), order, null))
+            cache.addNewStatus(status(it, it == 1 ? "Filled" : "Submitted"))
+        }
+        cache.updatePosition(new IbPosition("DU1", contract(101), 5G, 1.25G))
+
+        def execution = new Execution()
+        execution.execId("0001")
+        execution.time("20200101  10:00:00")
+        cache.addExecutionReport(new IbContract(contract(101)), new IbExecution(execution))
+        def commission = new CommissionReport()
+        commission.execId("0001")
+        commission.commission(0.5)
+        cache.updateExecutionReport(new IbCommissionReport(commission))
+
+        cache.tickColumns.add(7, 101)
+        cache.tickColumns.update(7, IbTickColumns.Column.BID.tickType.value, 99.5)
+    }
+
+    def cleanup() {
+        snapshot.close()
+        Files.deleteIfExists(file)
+    }
+
+    def "Only changed cache should be written"() {
+        given:
+        snapshot.start(cache, Duration.ofHours(1))
+
+        expect:
+        snapshot.write()
+        !snapshot.write()
+
+        when:
+        cache.addNewStatus(status(2, "PreSubmitted"))
+
+        then:
+        snapshot.write()
+    }
+
+    def "Cache should be restored and reconciled"() {
+        given:
+        snapshot.start(cache, Duration.ofHours(1))
+        snapshot.stop()
+        def restored = new CacheRepositoryImpl()
+
+        when:
+        snapshot.load(restored, LocalDateTime.of(2020, 1, 1, 0, 0))
+
+        then:
+        restored.orders.keySet() == [1, 2] as Set
+        restored.getOrder(1).stage == IbOrder.Stage.FILLED
+        restored.getOrder(2).order.orderRef() == "ref2"
+        restored.getPosition("DU1", contract(101)).avgCost == 1.25G
+        restored.executionReports*.commission*.commission == [0.5G]
+        restored.restoredTicks.getValue(IbTickColumns.Column.BID, 0) == 99.5d
+        !restored.isReconciled()
+
+        when: "TWS doesn't confirm the working order and the position"
+        restored.reconcileOrders()
+        restored.reconcilePositions()
+
+        then:
+        restored.orders.keySet() == [1] as Set
+        restored.positions.isEmpty()
+        restored.isReconciled()
+    }
+
+    def "Entries of a previous session should not be restored"() {
+        given:
+        snapshot.start(cache, Duration.ofHours(1))
+        snapshot.stop()
+        def restored = new CacheRepositoryImpl()
+
+        when:
+        snapshot.load(restored, LocalDateTime.now().plusDays(1))
+
+        then: "only the working order is left for reconciliation"
+        restored.orders.keySet() == [2] as Set
+        restored.executionReports.isEmpty()
+        restored.getPosition("DU1", contract(101)) != null
+    }
+
+    def "Order with ID of a restored one should replace it"() {
+        given:
+        snapshot.start(cache, Duration.ofHours(1))
+        snapshot.stop()
+        def restored = new CacheRepositoryImpl()
+        snapshot.load(restored, LocalDateTime.of(2020, 1, 1, 0, 0))
+        def order = new Order()
+        order.orderRef("new")
+
+        when:
+        restored.addOrder(new IbOrder(1, contract(101), order, null))
+
+        then:
+        restored.getOrder(1).order.orderRef() == "new"
+        restored.getOrder(1).statuses.isEmpty()
+    }
+
+    def "Broken snapshot should be ignored"() {
+        given:
+        snapshot.start(cache, Duration.ofHours(1))
+        snapshot.stop()
+        Files.write(file, [1, 2, 3] as byte[], StandardOpenOption.APPEND)
+
+        expect:
+        !snapshot.load(new CacheRepositoryImpl())
+    }
+
+    private static Contract contract(int conid) {
+        def contract = new Contract()
+        contract.conid(conid)
+        contract.symbol("S" + conid)
+        contract
+    }
+
+    private static IbOrderStatus status(int orderId, String status) {
+        new IbOrderStatus(orderId, status, BigDecimal.ONE, BigDecimal.ZERO, BigDecimal.ONE, 1, 0, BigDecimal.ONE, 0,
+                          "", BigDecimal.ZERO)
+    }
+}
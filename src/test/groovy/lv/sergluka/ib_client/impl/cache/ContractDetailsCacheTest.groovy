@@ -0,0 +1,155 @@
+package lv.sergluka.ib_client.impl.cache
+
+import com.ib.client.Contract
+import com.ib.client.ContractDetails
+import com.ib.client.TagValue
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.StandardOpenOption
+import java.time.Duration
+
+class ContractDetailsCacheTest extends Specification {
+
+    static final long TTL = Duration.ofHours(1).toMillis()
+
+    def file = Files.createTempFile("contracts", ".bin")
+
+    def setup() {
+        Files.delete(file)
+    }
+
+    def cleanup() {
+        Files.deleteIfExists(file)
+    }
+
+    def "Details should be found by the normalized spec and by conid"() {
+        given:
+        def cache = new ContractDetailsCache(null, Duration.ofMillis(TTL))
+        cache.put(spec(" ibm ", "smart"), [details(8314, "IBM")], 1000)
+
+        expect:
+        cache.get(spec("IBM", "SMART"), 1000).get()*.conid() == [8314]
+        !cache.get(spec("IBM", "NYSE"), 1000).isPresent()
+        cache.get(conid(8314), 1000).get()*.contract()*.symbol() == ["IBM"]
+        !cache.get(conid(1), 1000).isPresent()
+    }
+
+    def "Expired details should be missed"() {
+        given:
+        def cache = new ContractDetailsCache(null, Duration.ofMillis(TTL))
+        cache.put(spec("IBM", "SMART"), [details(8314, "IBM")], 1000)
+
+        expect:
+        cache.get(spec("IBM", "SMART"), 1000 + TTL - 1).isPresent()
+        !cache.get(spec("IBM", "SMART"), 1000 + TTL).isPresent()
+        !cache.get(8314, 1000 + TTL).isPresent()
+    }
+
+    def "Presence should be checked without decoding and expired entries should be pruned"() {
+        given:
+        def cache = new ContractDetailsCache(null, Duration.ofMillis(TTL))
+        cache.put(spec("IBM", "SMART"), [details(8314, "IBM")], 1000)
+        cache.put(spec("MSFT", "SMART"), [details(272093, "MSFT")], 1000 + TTL)
+
+        expect:
+        cache.contains(spec("IBM", "SMART"), 1000)
+        cache.contains(conid(8314), 1000)
+        cache.contains(8314, 1000)
+        !cache.contains(spec("IBM", "NYSE"), 1000)
+
+        when:
+        cache.prune(1000 + TTL)
+
+        then:
+        cache.size() == 1
+        !cache.contains(8314, 1000)
+        cache.contains(272093, 1000 + TTL)
+    }
+
+    def "Cache should survive restart"() {
+        given:
+        def now = System.currentTimeMillis()
+        def cache = new ContractDetailsCache(file, Duration.ofMillis(TTL))
+        def ibm = details(8314, "IBM")
+        ibm.minTick(0.01)
+        ibm.tradingHours("20200101:0930-20200101:1600")
+        ibm.secIdList([new TagValue("ISIN", "US4592001014")])
+        cache.put(spec("IBM", "SMART"), [ibm, details(8315, "IBM")], now)
+        cache.put(conid(1), [details(1, "OLD")], now - TTL)
+
+        when:
+        cache.save()
+        def restored = new ContractDetailsCache(file, Duration.ofMillis(TTL))
+
+        then:
+        restored.size() == 2
+        with(restored.get(spec("IBM", "SMART"), now).get()) {
+            it*.conid() == [8314, 8315]
+            it[0].minTick() == 0.01d
+            it[0].tradingHours() == "20200101:0930-20200101:1600"
+            it[0].secIdList()*.m_value == ["US4592001014"]
+            it[0].contract().exchange() == "SMART"
+        }
+    }
+
+    def "Reply with a conid for several exchanges should be kept as a whole"() {
+        given:
+        def cache = new ContractDetailsCache(null, Duration.ofMillis(TTL))
+        cache.put(spec("IBM", ""), [details(8314, "IBM", "NYSE"), details(8314, "IBM", "ARCA")], 1000)
+
+        expect:
+        cache.get(spec("IBM", ""), 1000).get()*.contract()*.exchange() == ["NYSE", "ARCA"]
+        !cache.get(conid(8314), 1000).isPresent()
+        cache.size() == 1
+    }
+
+    def "Cached details should be copies"() {
+        given:
+        def cache = new ContractDetailsCache(null, Duration.ofMillis(TTL))
+        def ibm = details(8314, "IBM")
+        cache.put(spec("IBM", "SMART"), [ibm], 1000)
+
+        when:
+        ibm.longName("changed")
+        cache.get(spec("IBM", "SMART"), 1000).get()[0].contract().symbol("changed")
+
+        then:
+        cache.get(spec("IBM", "SMART"), 1000).get()[0].longName() == null
+        cache.get(spec("IBM", "SMART"), 1000).get()[0].contract().symbol() == "IBM"
+    }
+
+    def "Broken file should be ignored"() {
+        given:
+        def cache = new ContractDetailsCache(file, Duration.ofMillis(TTL))
+        cache.put(spec("IBM", "SMART"), [details(8314, "IBM")], System.currentTimeMillis())
+        cache.save()
+        Files.write(file, [1, 2, 3] as byte[], StandardOpenOption.APPEND)
+
+        expect:
+        new ContractDetailsCache(file, Duration.ofMillis(TTL)).size() == 0
+    }
+
+    private static Contract spec(String symbol, String exchange) {
+        def contract = new Contract()
+        contract.symbol(symbol)
+        contract.secType("STK")
+        contract.exchange(exchange)
+        contract.currency("USD")
+        contract
+    }
+
+    private static Contract conid(int conid) {
+        def contract = new Contract()
+        contract.conid(conid)
+        contract
+    }
+
+    private static ContractDetails details(int conid, String symbol, String exchange = "SMART") {
+        def contract = spec(symbol, exchange)
+        contract.conid(conid)
+        def details = new ContractDetails()
+        details.contract(contract)
+        details
+    }
+}
@@ -0,0 +1,71 @@
+package lv.sergluka.ib_client.impl.cache
+
+import com.ib.client.Contract
+import lv.sergluka.ib_client.types.IbOrderBook
+import lv.sergluka.ib_client.types.IbOrderBookUpdate
+import spock.lang.Specification
+
+import static lv.sergluka.ib_client.types.IbOrderBook.OPERATION_DELETE
+import static lv.sergluka.ib_client.types.IbOrderBook.OPERATION_INSERT
+
+class DepthBindingTest extends Specification {
+
+    def book = new IbOrderBook(new Contract(), 5)
+    def updates = []
+    def binding = new DepthBinding(1, book.contract, book, null, { updates << it })
+
+    def "Burst of updates should be emitted as a single notification"() {
+        when:
+        def first = apply(0, OPERATION_INSERT, 1, 10.0)
+        def second = apply(0, OPERATION_INSERT, 1, 10.5)
+        def third = apply(0, OPERATION_INSERT, 0, 11.0)
+
+        then:
+        first
+        !second
+        !third
+        updates.isEmpty()
+
+        when:
+        binding.flush()
+        binding.flush()
+
+        then:
+        updates.size() == 1
+        with(updates[0] as IbOrderBookUpdate) {
+            it.updates == 3
+            version == book.version
+            bidChangedFrom == 0
+            bidChangedTo == 1
+            askChangedFrom == 0
+            askChangedTo == 0
+        }
+    }
+
+    def "Notifications should be merged into one"() {
+        given:
+        apply(0, OPERATION_INSERT, 1, 10.0)
+        apply(1, OPERATION_INSERT, 1, 9.5)
+        binding.flush()
+        apply(1, OPERATION_DELETE, 1, 9.5)
+        binding.flush()
+        apply(0, OPERATION_INSERT, 0, 11.0)
+        binding.flush()
+
+        when:
+        def merged = IbOrderBookUpdate.merge(updates)
+
+        then:
+        merged.updates == 4
+        merged.version == book.version
+        merged.bidChangedFrom == 0
+        merged.bidChangedTo == 1
+        merged.askChangedFrom == 0
+        merged.askChangedTo == 0
+    }
+
+    private boolean apply(int position, int operation, int side, double price) {
+        int lastChanged = book.update(position, operation, side, price, 100, null)
+        return binding.onUpdate(side, position, lastChanged)
+    }
+}
@@ -0,0 +1,66 @@
+package lv.sergluka.ib_client.impl.cache
+
+import com.ib.client.Contract
+import spock.lang.Specification
+
+class DepthBindingsTest extends Specification {
+
+    def bindings = new DepthBindings()
+
+    def "Bindings should be found by ticker ID after table growth"() {
+        given:
+        def ids = (1..40).collect { it * 8 }
+
+        when:
+        ids.each { bindings.put(binding(it)) }
+
+        then:
+        ids.every { bindings.get(it).tickerId == it }
+        bindings.get(1) == null
+    }
+
+    def "Removed binding shouldn't hide colliding ones"() {
+        given:
+        bindings.put(binding(8))
+        bindings.put(binding(16))
+        bindings.put(binding(24))
+
+        when:
+        bindings.remove(16)
+
+        then:
+        bindings.get(16) == null
+        bindings.get(8).tickerId == 8
+        bindings.get(24).tickerId == 24
+    }
+
+    def "Latest binding of the contract should be found by conid"() {
+        given:
+        bindings.put(binding(8, 100))
+        bindings.put(binding(16, 100))
+        bindings.put(binding(24, 200))
+
+        expect:
+        bindings.getByConid(100).tickerId == 16
+        bindings.getByConid(200).tickerId == 24
+        bindings.getByConid(300) == null
+
+        when:
+        bindings.remove(16)
+
+        then:
+        bindings.getByConid(100).tickerId == 8
+
+        when:
+        bindings.remove(8)
+
+        then:
+        bindings.getByConid(100) == null
+    }
+
+    private static DepthBinding binding(int tickerId, int conid = 0) {
+        def contract = new Contract()
+        contract.conid(conid)
+        new DepthBinding(tickerId, contract, null, null, null)
+    }
+}
@@ -0,0 +1,49 @@
+package lv.sergluka.ib_client.impl.cache
+
+import com.ib.client.Contract
+import lv.sergluka.ib_client.types.IbOrderBook
+import spock.lang.Specification
+
+import static lv.sergluka.ib_client.types.IbMarketDepth.Side.BUY
+import static lv.sergluka.ib_client.types.IbOrderBook.OPERATION_INSERT
+
+class DirectBookStoreTest extends Specification {
+
+    def store = new DirectBookStore(5)
+
+    def "Released slot should be reused by the next book"() {
+        given:
+        def first = store.create(new Contract(), false)
+        def second = store.create(new Contract(), true)
+        first.update(0, OPERATION_INSERT, 1, 10.0, 100, null)
+        second.update(0, OPERATION_INSERT, 1, 20.0, 200, "ARCA")
+        def allocated = store.allocatedBytes
+
+        when:
+        store.release(first)
+        def third = store.create(new Contract(), false)
+
+        then:
+        first.getDepth(BUY) == 0
+        third.getDepth(BUY) == 0
+        second.getPrice(BUY, 0) == 20.0d
+        store.allocatedBytes == allocated
+
+        when:
+        third.update(0, OPERATION_INSERT, 1, 30.0, 300, null)
+
+        then:
+        first.getDepth(BUY) == 0
+        second.getPrice(BUY, 0) == 20.0d
+    }
+
+    def "Store should grow by slabs"() {
+        when:
+        def books = (1..100).collect { store.create(new Contract(), false) }
+
+        then:
+        store.allocatedBytes == 2 * 64 * IbOrderBook.getStorageSize(5)
+        store.freeSlots == 28
+        books.every { it.getDepth(BUY) == 0 }
+    }
+}
@@ -0,0 +1,105 @@
+package lv.sergluka.ib_client.impl.cache
+
+import com.ib.client.CommissionReport
+import com.ib.client.Contract
+import com.ib.client.Execution
+import lv.sergluka.ib_client.types.IbCommissionReport
+import lv.sergluka.ib_client.types.IbContract
+import lv.sergluka.ib_client.types.IbExecution
+import lv.sergluka.ib_client.types.IbExecutionReport
+import spock.lang.Specification
+
+import java.time.Duration
+
+class ExecutionJoinTest extends Specification {
+
+    def now = 1_000_000L
+    def join = new ExecutionJoin(Duration.ofSeconds(10), now)
+
+    def "Execution should be matched with commission in any order"() {
+        expect:
+        join.onExecution(execution("1"), now) == null
+        join.onCommission(commission("1"), now).commission.commission == 1.5G
+
+        join.onCommission(commission("2"), now) == null
+        join.onExecution(execution("2"), now).commission.commission == 1.5G
+
+        with(join.stats) {
+            matched == 2
+            commissionFirst == 1
+            pendingExecutions == 0
+            pendingCommissions == 0
+        }
+    }
+
+    def "Unmatched halves should expire after the timeout"() {
+        given:
+        def expired = []
+        join.onExecution(execution("1"), now)
+        join.onCommission(commission("2"), now)
+        join.onExecution(execution("3"), now)
+        join.onCommission(commission("3"), now)
+
+        when:
+        join.expire(now + 9_000, { expired << it })
+
+        then:
+        expired.isEmpty()
+        join.stats.pendingExecutions == 1
+
+        when:
+        join.expire(now + 10_000, { expired << it })
+
+        then:
+        expired*.execution*.execId == ["1"]
+        with(join.stats) {
+            expiredExecutions == 1
+            expiredCommissions == 1
+            mismatchRate == 2d / 3
+        }
+    }
+
+    def "Timeout longer than a turn of the wheel should be kept"() {
+        given:
+        def join = new ExecutionJoin(Duration.ofMinutes(5), now)
+        def expired = []
+        join.onExecution(execution("1"), now)
+
+        when:
+        join.expire(now + Duration.ofMinutes(1).toMillis(), { expired << it })
+        join.expire(now + Duration.ofMinutes(2).toMillis(), { expired << it })
+
+        then:
+        expired.isEmpty()
+
+        when:
+        join.expire(now + Duration.ofMinutes(5).toMillis(), { expired << it })
+
+        then:
+        expired.size() == 1
+    }
+
+    def "Repeated halves should be counted and ignored"() {
+        when:
+        join.onExecution(execution("1"), now)
+        join.onExecution(execution("1"), now)
+
+        then:
+        join.stats.duplicates == 1
+        join.stats.pendingExecutions == 1
+    }
+
+    private static IbExecutionReport execution(String execId) {
+        def execution = new Execution()
+        execution.execId(execId)
+        execution.time("20200101  10:00:00")
+        new IbExecutionReport(new IbContract(new Contract()), new IbExecution(execution))
+    }
+
+    private static IbCommissionReport commission(String execId) {
+        def report = new CommissionReport()
+        report.execId(execId)
+        report.commission(1.5)
+        new IbCommissionReport(report)
+    }
+}
@@ -0,0 +1,49 @@
+package lv.sergluka.ib_client.impl.cache
+
+import com.ib.client.Contract
+import com.ib.client.Order
+import com.ib.client.OrderState
+import lv.sergluka.ib_client.types.IbOrder
+import spock.lang.Specification
+
+class OrderIndexTest extends Specification {
+
+    def index = new OrderIndex<String>({ it.order.account() })
+
+    def "Query of an unknown key shouldn't create a bucket"() {
+        when:
+        def view = index.get("DU1")
+
+        then:
+        view.isEmpty()
+        index.buckets.isEmpty()
+
+        when:
+        index.update(order(1, "DU1"))
+
+        then: "the view follows the bucket created later"
+        view*.orderId == [1]
+    }
+
+    def "Bucket should be dropped with its last order"() {
+        given:
+        index.update(order(1, "DU1"))
+        index.update(order(2, "DU1"))
+        def view = index.get("DU1")
+
+        when:
+        index.update(order(1, "DU2"))
+        index.remove(2)
+
+        then:
+        view.isEmpty()
+        index.buckets.keySet() == ["DU2"] as Set
+        index.get("DU2")*.orderId == [1]
+    }
+
+    private static IbOrder order(int orderId, String account) {
+        def order = new Order()
+        order.account(account)
+        new IbOrder(orderId, new Contract(), order, new OrderState())
+    }
+}
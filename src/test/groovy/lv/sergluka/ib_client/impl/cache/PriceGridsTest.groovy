@@ -0,0 +1,39 @@
+package lv.sergluka.ib_client.impl.cache
+
+import com.ib.client.PriceIncrement
+import lv.sergluka.ib_client.types.IbPriceGrid
+import spock.lang.Specification
+
+class PriceGridsTest extends Specification {
+
+    def grids = new PriceGrids()
+
+    def "Grids should be found by conid after table growth"() {
+        given:
+        def conids = (1..40).collect { it * 16 }
+
+        when:
+        conids.each { grids.setMinTick(it, IbPriceGrid.ofTick(it / 1000d)) }
+
+        then:
+        conids.every { grids.get(it).getIncrement(1) == it / 1000d }
+        grids.get(1) == null
+    }
+
+    def "Market rule should override the minimal tick in any order of arrival"() {
+        given:
+        def rule = IbPriceGrid.of([new PriceIncrement(0, 0.01)])
+        grids.setMinTick(1, IbPriceGrid.ofTick(0.05))
+        grids.setMinTick(2, IbPriceGrid.ofTick(0.05))
+
+        when:
+        grids.setMarketRule(1, 26)
+        grids.addMarketRule(26, rule)
+        grids.setMarketRule(2, 26)
+
+        then:
+        grids.get(1).is(rule)
+        grids.get(2).is(rule)
+        grids.getMarketRule(26).is(rule)
+    }
+}
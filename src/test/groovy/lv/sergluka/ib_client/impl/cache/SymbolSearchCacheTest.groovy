@@ -0,0 +1,63 @@
+package lv.sergluka.ib_client.impl.cache
+
+import com.ib.client.Contract
+import com.ib.client.ContractDescription
+import lv.sergluka.ib_client.types.IbContractDescription
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.time.Duration
+
+class SymbolSearchCacheTest extends Specification {
+
+    static final long TTL = Duration.ofHours(1).toMillis()
+
+    def file = Files.createTempFile("symbols", ".bin")
+
+    def setup() {
+        Files.delete(file)
+    }
+
+    def cleanup() {
+        Files.deleteIfExists(file)
+    }
+
+    def "Only the same pattern should be answered"() {
+        given:
+        def cache = new SymbolSearchCache(null, Duration.ofMillis(TTL))
+        cache.put("ap", [description(1, "APD"), description(2, "APPL"), description(3, "APPN")], 1000)
+
+        expect:
+        cache.get(" AP ", 1000).get()*.contract*.symbol == ["APD", "APPL", "APPN"]
+        !cache.get("APP", 1000).isPresent()
+        !cache.get("A", 1000).isPresent()
+        !cache.get("AP", 1000 + TTL).isPresent()
+    }
+
+    def "Cache should be preloaded from the file"() {
+        given:
+        def now = System.currentTimeMillis()
+        def cache = new SymbolSearchCache(file, Duration.ofMillis(TTL))
+        cache.put("IB", [description(8314, "IBM")], now)
+        cache.put("OLD", [description(1, "OLD")], now - TTL)
+
+        when:
+        cache.save()
+        def restored = new SymbolSearchCache(file, Duration.ofMillis(TTL))
+
+        then:
+        restored.size() == 1
+        with(restored.get("ib", now).get()[0]) {
+            contract.conId == 8314
+            derivativeSecTypes*.apiString == ["OPT"]
+        }
+    }
+
+    private static IbContractDescription description(int conid, String symbol) {
+        def contract = new Contract()
+        contract.conid(conid)
+        contract.symbol(symbol)
+        contract.secType("STK")
+        new IbContractDescription(new ContractDescription(contract, ["OPT"] as String[]))
+    }
+}
@@ -0,0 +1,48 @@
+package lv.sergluka.ib_client.impl.cache
+
+import spock.lang.Specification
+
+class TickerTableTest extends Specification {
+
+    def table = new TickerTable<String>()
+
+    def "Values should be found by ticker ID after table growth"() {
+        given:
+        def ids = (1..40).collect { it * 8 }
+
+        when:
+        ids.each { table.put(it, "v" + it) }
+
+        then:
+        ids.every { table.get(it) == "v" + it }
+        table.get(1) == null
+        table.values().size() == 40
+    }
+
+    def "Removed value shouldn't hide colliding ones"() {
+        given:
+        table.put(8, "a")
+        table.put(16, "b")
+        table.put(24, "c")
+
+        when:
+        def removed = table.remove(16)
+
+        then:
+        removed == "b"
+        table.get(16) == null
+        table.get(8) == "a"
+        table.get(24) == "c"
+    }
+
+    def "Put should replace the value of the same ticker"() {
+        when:
+        table.put(0, "a")
+        def prev = table.put(0, "b")
+
+        then:
+        prev == "a"
+        table.get(0) == "b"
+        table.values() == ["b"]
+    }
+}
@@ -89,6 +89,35 @@ class RequestRepositoryTest extends Specification {
         registerCalled.await()
     }
 
+    def "Request with fields should receive only updates of that fields"() {
+        given:
+        2 * client.isConnected() >> true
+        0 * idGenerator._
+        0 * client._
+
+        def fields = new BitSet()
+        fields.set(1)
+        fields.set(2)
+
+        def observer = repository.builder()
+                .type(RequestRepository.Type.EVENT_MARKET_DATA)
+                .register({} as Runnable)
+                .fields(fields)
+                .subscribe()
+
+        expect:
+        StepVerifier.create(observer)
+                .then {
+                    repository.onNext(RequestRepository.Type.EVENT_MARKET_DATA, null, "Bid", 1, true)
+                    repository.onNext(RequestRepository.Type.EVENT_MARKET_DATA, null, "Volume", 8, true)
+                    repository.onNext(RequestRepository.Type.EVENT_MARKET_DATA, null, "Unknown", -1, true)
+                    repository.onNext(RequestRepository.Type.EVENT_MARKET_DATA, null, "Ask", 2, true)
+                }
+                .expectNext("Bid", "Ask")
+                .thenCancel()
+                .verify(Duration.ofSeconds(5))
+    }
+
     def "Duplicated request with same type should raise error"() {
         given:
         2 * client.isConnected() >> true
@@ -160,4 +189,29 @@ class RequestRepositoryTest extends Specification {
         registerCalled.await()
         unregisterCalled.await()
     }
+
+    def "Release should be called on dispose without connection"() {
+        given:
+        def releaseCalled = new AsyncConditions()
+        def unregistered = false
+
+        1 * idGenerator.nextId() >> 111
+        2 * client.isConnected() >>> [true, false]
+        0 * idGenerator._
+        0 * client._
+
+        when:
+        def disposable = repository.builder()
+                .type(RequestRepository.Type.EVENT_MARKET_DATA)
+                .register({ id -> } as Consumer<Integer>)
+                .unregister({ id -> unregistered = true } as Consumer<Integer>)
+                .release({ id -> releaseCalled.evaluate { assert id == 111 } } as Consumer<Integer>)
+                .subscribe()
+                .subscribe()
+        disposable.dispose()
+
+        then:
+        releaseCalled.await()
+        !unregistered
+    }
 }
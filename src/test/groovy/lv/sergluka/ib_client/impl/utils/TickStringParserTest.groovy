@@ -0,0 +1,85 @@
+package lv.sergluka.ib_client.impl.utils
+
+import lv.sergluka.ib_client.types.IbRtVolume
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+
+class TickStringParserTest extends Specification {
+
+    def "RT_VOLUME should be parsed"() {
+        given:
+        def volume = new IbRtVolume()
+
+        when:
+        TickStringParser.parseRtVolume("701.28;1;1348075471534;67854;701.46918464;true", volume)
+
+        then:
+        volume.lastPrice == 701.28d
+        volume.lastSize == 1
+        volume.lastTime == 1348075471534
+        volume.totalVolume == 67854
+        volume.vwap == 701.46918464d
+        volume.singleTrade
+    }
+
+    def "RT_VOLUME without a trade should have no price"() {
+        given:
+        def volume = new IbRtVolume()
+
+        when:
+        TickStringParser.parseRtVolume(";0;1348075471534;67854;701.46918464;false", volume)
+
+        then:
+        Double.isNaN(volume.lastPrice)
+        volume.lastSize == 0
+        volume.totalVolume == 67854
+        !volume.singleTrade
+    }
+
+    def "Malformed RT_VOLUME shouldn't change the value"() {
+        given:
+        def volume = new IbRtVolume()
+        TickStringParser.parseRtVolume("10.5;2;1000;20;10.1;false", volume)
+
+        when:
+        TickStringParser.parseRtVolume(value, volume)
+
+        then:
+        thrown(NumberFormatException)
+        volume.lastPrice == 10.5d
+        volume.totalVolume == 20
+
+        where:
+        value << ["10.5;2;1000", "abc;2;1000;20;10.1;false", "10.5;2;1000;2x;10.1;false"]
+    }
+
+    @Unroll
+    def "Number '#value' should be parsed as String.parseDouble does"() {
+        expect:
+        TickStringParser.parseDouble(value, 0, value.length()) == Double.parseDouble(value)
+
+        where:
+        value << ["0", "1", "-1", "0.1", "701.28", "-0.0001", "123456789.123456", "1.5E3", "0.30000000000000004",
+                  "12345678901234567890.5"]
+    }
+
+    def "Timestamp should be parsed"() {
+        expect:
+        TickStringParser.parseTimestamp("1348075471") == 1348075471
+    }
+
+    @Unroll
+    def "Bar time '#value' should be parsed"() {
+        expect:
+        TickStringParser.parseBarTime(value) == expected.toEpochSecond(ZoneOffset.UTC)
+
+        where:
+        value                | expected
+        "20200512"           | LocalDateTime.of(2020, 5, 12, 0, 0)
+        "20200512  09:30:05" | LocalDateTime.of(2020, 5, 12, 9, 30, 5)
+        "19991231 23:59:59"  | LocalDateTime.of(1999, 12, 31, 23, 59, 59)
+    }
+}
@@ -0,0 +1,70 @@
+package lv.sergluka.ib_client.types
+
+import spock.lang.Specification
+
+class IbBarWindowTest extends Specification {
+
+    def window = new IbBarWindow(3)
+
+    def "Unfinished bar should be updated in place"() {
+        given:
+        window.update(100, 1.0, 1.5, 0.5, 1.2, 10, 1, 1.1)
+
+        when:
+        def changed = window.update(100, 1.0, 1.6, 0.5, 1.6, 20, 2, 1.3)
+        def repeated = window.update(100, 1.0, 1.6, 0.5, 1.6, 20, 2, 1.3)
+
+        then:
+        changed
+        !repeated
+        window.size == 1
+        window.version == 2
+        window.getHigh(0) == 1.6d
+        window.getVolume(0) == 20
+    }
+
+    def "Full window should push out the oldest bar"() {
+        when:
+        (1..5).each { window.update(it * 5, it, it, it, it, it, it, it) }
+
+        then:
+        window.size == 3
+        (0..2).collect { window.getTimeSeconds(it) } == [15L, 20L, 25L]
+        window.getClose(2) == 5.0d
+
+        when:
+        def older = window.update(10, 0, 0, 0, 0, 0, 0, 0)
+
+        then:
+        !older
+        window.getClose(0) == 3.0d
+    }
+
+    def "Optimistic read should fail validation after an update"() {
+        given:
+        window.update(100, 1.0, 1.5, 0.5, 1.2, 10, 1, 1.1)
+        def stamp = window.startRead()
+
+        expect:
+        window.getClose(0) == 1.2d
+        window.validate(stamp)
+
+        when:
+        window.update(100, 1.0, 1.5, 0.5, 1.3, 11, 2, 1.1)
+
+        then:
+        !window.validate(stamp)
+        window.validate(window.startRead())
+    }
+
+    def "Index out of the window should raise error"() {
+        given:
+        window.update(100, 1.0, 1.5, 0.5, 1.2, 10, 1, 1.1)
+
+        when:
+        window.getClose(1)
+
+        then:
+        thrown(IndexOutOfBoundsException)
+    }
+}
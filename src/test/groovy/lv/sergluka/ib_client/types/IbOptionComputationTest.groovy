@@ -0,0 +1,25 @@
+package lv.sergluka.ib_client.types
+
+import spock.lang.Specification
+
+class IbOptionComputationTest extends Specification {
+
+    def tick = new IbTickImpl()
+
+    def "Computation should be a view, which is updated in place"() {
+        when:
+        def first = tick.setOptionComputation(IbOptionComputation.Type.BID, 0.2, 0.5, 1.5, 0, 0.1, 0.2, -0.05, 100)
+        def copy = first.copy()
+        def second = tick.setOptionComputation(IbOptionComputation.Type.BID, 0.3, 0.6, 1.6, 0, 0.1, 0.2, -0.05,
+                                               Double.MAX_VALUE)
+
+        then:
+        second.is(first)
+        tick.getOptionComputation(IbOptionComputation.Type.BID).is(first)
+        first.delta == 0.6d
+        Double.isNaN(first.underlyingPrice)
+        copy.delta == 0.5d
+        copy.underlyingPrice == 100d
+        tick.getOptionComputation(IbOptionComputation.Type.ASK) == null
+    }
+}
@@ -0,0 +1,216 @@
+package lv.sergluka.ib_client.types
+
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+
+import static lv.sergluka.ib_client.types.IbMarketDepth.Side.BUY
+import static lv.sergluka.ib_client.types.IbMarketDepth.Side.SELL
+import static lv.sergluka.ib_client.types.IbOrderBook.*
+
+class IbOrderBookTest extends Specification {
+
+    def book = new IbOrderBook(null, 2)
+
+    def "Insert should shift levels down"() {
+        when:
+        book.update(0, OPERATION_INSERT, 1, 10.0, 100, "ARCA")
+        book.update(0, OPERATION_INSERT, 1, 10.5, 200, "NSDQ")
+        book.update(1, OPERATION_INSERT, 1, 10.2, 300, "ARCA")
+
+        then:
+        book.getDepth(BUY) == 3
+        book.getDepth(SELL) == 0
+        levels(BUY) == [[10.5d, 200, "NSDQ"], [10.2d, 300, "ARCA"], [10.0d, 100, "ARCA"]]
+    }
+
+    def "Update should replace the level"() {
+        given:
+        book.update(0, OPERATION_INSERT, 0, 11.0, 100, null)
+        book.update(1, OPERATION_INSERT, 0, 11.5, 100, null)
+
+        when:
+        book.update(1, OPERATION_UPDATE, 0, 11.4, 50, null)
+
+        then:
+        levels(SELL) == [[11.0d, 100, null], [11.4d, 50, null]]
+    }
+
+    def "Update beyond the depth should append the level without a gap"() {
+        given:
+        book.update(0, OPERATION_INSERT, 0, 11.0, 100, null)
+
+        when:
+        def changed = book.update(1_000_000, OPERATION_UPDATE, 0, 11.5, 50, null)
+
+        then:
+        changed == 1
+        levels(SELL) == [[11.0d, 100, null], [11.5d, 50, null]]
+    }
+
+    def "Delete should shift levels up"() {
+        given:
+        book.update(0, OPERATION_INSERT, 0, 11.0, 100, null)
+        book.update(1, OPERATION_INSERT, 0, 11.5, 200, null)
+        book.update(2, OPERATION_INSERT, 0, 12.0, 300, null)
+
+        when:
+        book.update(1, OPERATION_DELETE, 0, 0, 0, null)
+
+        then:
+        levels(SELL) == [[11.0d, 100, null], [12.0d, 300, null]]
+    }
+
+    def "Snapshot should contain top levels and version of the book"() {
+        given:
+        book.update(0, OPERATION_INSERT, 1, 10.0, 100, "ARCA")
+        book.update(1, OPERATION_INSERT, 1, 9.5, 200, "NSDQ")
+        book.update(0, OPERATION_INSERT, 0, 10.5, 300, "ARCA")
+        def snapshot = new IbOrderBookSnapshot(1)
+
+        when:
+        def version = book.copyTo(snapshot)
+
+        then:
+        version == 3
+        snapshot.version == 3
+        snapshot.getDepth(BUY) == 1
+        snapshot.getPrice(BUY, 0) == 10.0d
+        snapshot.getMarketMaker(BUY, 0) == "ARCA"
+        snapshot.getDepth(SELL) == 1
+        snapshot.getSize(SELL, 0) == 300
+
+        when:
+        book.update(0, OPERATION_DELETE, 1, 0, 0, null)
+        book.copyTo(snapshot)
+
+        then:
+        snapshot.version == 4
+        snapshot.getPrice(BUY, 0) == 9.5d
+        book.snapshot().getDepth(BUY) == 1
+    }
+
+    def "Smart depth levels should be aggregated by price"() {
+        given:
+        def smartBook = new IbOrderBook(null, 2, true)
+        def snapshot = new IbOrderBookSnapshot(10)
+
+        when:
+        smartBook.update(0, OPERATION_INSERT, 1, 10.0, 100, "ARCA")
+        smartBook.update(1, OPERATION_INSERT, 1, 10.0, 200, "NSDQ")
+        smartBook.update(2, OPERATION_INSERT, 1, 9.5, 300, "ARCA")
+        smartBook.update(1, OPERATION_UPDATE, 1, 10.0, 50, "NSDQ")
+        smartBook.copyAggregatedTo(snapshot)
+
+        then:
+        snapshot.getDepth(BUY) == 2
+        snapshot.getPrice(BUY, 0) == 10.0d
+        snapshot.getSize(BUY, 0) == 150
+        smartBook.getAggregatedVenueSize(BUY, 0, "ARCA") == 100
+        smartBook.getAggregatedVenueSize(BUY, 0, "NSDQ") == 50
+        snapshot.getPrice(BUY, 1) == 9.5d
+
+        when:
+        smartBook.update(0, OPERATION_DELETE, 1, 0, 0, null)
+        smartBook.update(0, OPERATION_DELETE, 1, 0, 0, null)
+        smartBook.copyAggregatedTo(snapshot)
+
+        then:
+        snapshot.getDepth(BUY) == 1
+        snapshot.getPrice(BUY, 0) == 9.5d
+        snapshot.getSize(BUY, 0) == 300
+    }
+
+    def "Analytics should follow book changes"() {
+        given:
+        book.update(0, OPERATION_INSERT, 1, 10.0, 100, null)
+        book.update(1, OPERATION_INSERT, 1, 9.0, 300, null)
+        book.update(0, OPERATION_INSERT, 0, 11.0, 300, null)
+        book.update(1, OPERATION_INSERT, 0, 12.0, 100, null)
+
+        when:
+        def analytics = book.getAnalytics(1, 200)
+
+        then:
+        analytics.version == 4
+        analytics.mid == 10.5d
+        analytics.spread == 1.0d
+        analytics.microprice == 10.25d
+        analytics.imbalance == -0.5d
+        analytics.bidFillPrice == 9.5d
+        analytics.askFillPrice == 11.0d
+
+        when:
+        book.update(0, OPERATION_DELETE, 1, 0, 0, null)
+        analytics = book.getAnalytics(2, 500)
+
+        then:
+        analytics.bidPrice == 9.0d
+        analytics.imbalance == -0.25d
+        Double.isNaN(analytics.bidFillPrice)
+    }
+
+    def "Book in direct memory should drop levels beyond its capacity"() {
+        given:
+        def storage = ByteBuffer.allocateDirect(IbOrderBook.getStorageSize(2))
+        book = new IbOrderBook(null, storage, 2, false)
+
+        when:
+        book.update(0, OPERATION_INSERT, 1, 10.0, 100, "ARCA")
+        book.update(0, OPERATION_INSERT, 1, 10.5, 200, "NSDQ")
+        book.update(0, OPERATION_INSERT, 1, 11.0, 300, "ARCA")
+        book.update(3, OPERATION_UPDATE, 1, 9.0, 300, "ARCA")
+
+        then:
+        levels(BUY) == [[11.0d, 300, "ARCA"], [10.5d, 200, "NSDQ"]]
+        book.getAnalytics(2, 100).bidFillPrice == 11.0d
+
+        when:
+        def detached = book.detachStorage()
+
+        then:
+        detached.is(storage)
+        book.getDepth(BUY) == 0
+        book.snapshot().getDepth(BUY) == 0
+
+        expect: "the detached book ignores updates"
+        book.update(0, OPERATION_INSERT, 1, 10.0, 100, "ARCA") == -1
+        book.getDepth(BUY) == 0
+    }
+
+    def "Levels pushed out of direct memory should leave the aggregated book"() {
+        given:
+        def storage = ByteBuffer.allocateDirect(IbOrderBook.getStorageSize(2))
+        def smartBook = new IbOrderBook(null, storage, 2, true)
+        def snapshot = new IbOrderBookSnapshot(10)
+
+        when:
+        smartBook.update(0, OPERATION_INSERT, 1, 10.0, 100, "ARCA")
+        smartBook.update(1, OPERATION_INSERT, 1, 9.5, 200, "NSDQ")
+        smartBook.update(0, OPERATION_INSERT, 1, 10.5, 300, "ARCA")
+        smartBook.update(2, OPERATION_INSERT, 1, 9.0, 400, "ARCA")
+        smartBook.update(3, OPERATION_UPDATE, 1, 8.5, 500, "ARCA")
+        smartBook.copyAggregatedTo(snapshot)
+
+        then:
+        snapshot.getDepth(BUY) == 2
+        snapshot.getPrice(BUY, 0) == 10.5d
+        snapshot.getSize(BUY, 0) == 300
+        snapshot.getPrice(BUY, 1) == 10.0d
+        snapshot.getSize(BUY, 1) == 100
+    }
+
+    def "Unexpected side should raise error"() {
+        when:
+        book.update(0, OPERATION_INSERT, 2, 11.0, 100, null)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private List levels(IbMarketDepth.Side side) {
+        (0..<book.getDepth(side)).collect {
+            [book.getPrice(side, it), book.getSize(side, it), book.getMarketMaker(side, it)]
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package lv.sergluka.ib_client.types
+
+import com.ib.client.Contract
+import com.ib.client.Order
+import spock.lang.Specification
+
+class IbOrderTest extends Specification {
+
+    def "Repeated status should be skipped, regardless of decimal scale"() {
+        given:
+        def order = new IbOrder(1, new Contract(), new Order(), null, 4)
+
+        expect:
+        order.addStatus(status("Submitted", 0))
+        !order.addStatus(status("Submitted", 0))
+        !order.addStatus(new IbOrderStatus(1, "Submitted", new BigDecimal("0.00"), BigDecimal.TEN, BigDecimal.ZERO, 1,
+                                           0, BigDecimal.ZERO, 0, "", BigDecimal.ZERO))
+        order.addStatus(status("Submitted", 1))
+        order.statuses.size() == 2
+    }
+
+    def "History should keep the first, the terminal and the latest statuses"() {
+        given:
+        def order = new IbOrder(1, new Contract(), new Order(), null, 3)
+        def submitted = status("Submitted", 0)
+        def filled = status("Filled", 10)
+
+        when:
+        order.addStatus(submitted)
+        (1..5).each { order.addStatus(status("Submitted", it)) }
+        order.addStatus(filled)
+        (1..3).each { order.addStatus(status("Filled", 10 + it)) }
+
+        then:
+        order.statusCount == 10
+        order.lastStatus.filled == 13
+        order.stage == IbOrder.Stage.FILLED
+        order.statuses*.filled == [0, 10, 11, 12, 13]
+        order.statuses[1].is(filled)
+
+        and: "a dropped status isn't detected as repeated, but the first one is"
+        order.addStatus(status("Submitted", 1))
+        !order.addStatus(status("Submitted", 0))
+    }
+
+    def "Last status should be null for a new order"() {
+        expect:
+        new IbOrder(1, new Contract(), new Order(), null).lastStatus == null
+    }
+
+    private static IbOrderStatus status(String status, long filled) {
+        new IbOrderStatus(1, status, BigDecimal.valueOf(filled), BigDecimal.TEN, BigDecimal.ZERO, 1, 0,
+                          BigDecimal.ZERO, 0, "", BigDecimal.ZERO)
+    }
+}
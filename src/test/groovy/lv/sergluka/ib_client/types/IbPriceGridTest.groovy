@@ -0,0 +1,40 @@
+package lv.sergluka.ib_client.types
+
+import com.ib.client.PriceIncrement
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static lv.sergluka.ib_client.types.IbPriceGrid.Direction.*
+
+class IbPriceGridTest extends Specification {
+
+    static def grid = IbPriceGrid.of([new PriceIncrement(1, 0.01), new PriceIncrement(0, 0.0001),
+                                      new PriceIncrement(1000, 5)])
+
+    @Unroll
+    def "Price #price should be rounded to #down, #up and #nearest"() {
+        expect:
+        grid.round(price, DOWN) == down
+        grid.round(price, UP) == up
+        grid.round(price, NEAREST) == nearest
+
+        where:
+        price   | down   | up     | nearest
+        0.3d    | 0.3d   | 0.3d   | 0.3d
+        0.12345 | 0.1234 | 0.1235 | 0.1235
+        0.99995 | 0.9999 | 1d     | 1d
+        1.005d  | 1d     | 1.01d  | 1.01d
+        2.567d  | 2.56d  | 2.57d  | 2.57d
+        1003d   | 1000d  | 1005d  | 1005d
+    }
+
+    def "Minimal tick should be applied to any price"() {
+        given:
+        def grid = IbPriceGrid.ofTick(0.25)
+
+        expect:
+        grid.round(10.1d, UP) == 10.25d
+        grid.round(10.1d, DOWN) == 10d
+        grid.getIncrement(1000) == 0.25d
+    }
+}
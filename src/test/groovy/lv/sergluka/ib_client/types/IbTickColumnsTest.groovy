@@ -0,0 +1,81 @@
+package lv.sergluka.ib_client.types
+
+import spock.lang.Specification
+
+import static lv.sergluka.ib_client.types.IbTickColumns.Column.ASK
+import static lv.sergluka.ib_client.types.IbTickColumns.Column.BID
+import static lv.sergluka.ib_client.types.IbTickColumns.Column.CLOSE
+import static lv.sergluka.ib_client.types.IbTickColumns.Column.LAST
+import static lv.sergluka.ib_client.types.IbTickColumns.Column.LAST_SIZE
+
+class IbTickColumnsTest extends Specification {
+
+    def columns = new IbTickColumns()
+    def section = new IbCrossSection()
+
+    def "Cross-section should contain values of all subscriptions"() {
+        given:
+        (1..100).each { columns.add(it, it * 10) }
+
+        when:
+        columns.update(1, IbTickImpl.Types.BID.value, 10.5)
+        columns.update(100, IbTickImpl.Types.LAST_SIZE.value, 300)
+        columns.update(100, IbTickImpl.Types.HIGH.value, 11.0)
+        columns.update(101, IbTickImpl.Types.BID.value, 12.0)
+        columns.copyTo(section)
+
+        then:
+        section.size == 100
+        section.tickerIds[0] == 1
+        section.conids[99] == 1000
+        section.getColumn(BID)[0] == 10.5d
+        Double.isNaN(section.getColumn(ASK)[0])
+        section.getColumn(LAST_SIZE)[99] == 300d
+    }
+
+    def "Removed row should be replaced by the last one"() {
+        given:
+        (1..3).each {
+            columns.add(it, 0)
+            columns.update(it, IbTickImpl.Types.ASK.value, it)
+        }
+
+        when:
+        columns.remove(1)
+        columns.update(3, IbTickImpl.Types.BID.value, 2.5)
+        columns.copyTo(section)
+        def copy = section.copy()
+        columns.remove(3)
+        columns.copyTo(section)
+
+        then:
+        copy.size == 2
+        copy.tickerIds[0..1] == [3, 2]
+        copy.getColumn(ASK)[0..1] == [3d, 2d]
+        copy.getColumn(BID)[0] == 2.5d
+        section.size == 1
+        section.tickerIds[0] == 2
+    }
+
+    def "Screening should find rows by condition and top rows by metric"() {
+        given:
+        [[10.0, 10.2, 10.1, 10.0], [20.0, 20.1, 22.0, 20.0], [5.0, 5.5, 4.0, 5.0], [1.0, 1.1, Double.NaN, 1.0]]
+                .eachWithIndex { values, row ->
+                    columns.add(row, 0)
+                    columns.update(row, IbTickImpl.Types.BID.value, values[0])
+                    columns.update(row, IbTickImpl.Types.ASK.value, values[1])
+                    columns.update(row, IbTickImpl.Types.LAST.value, values[2])
+                    columns.update(row, IbTickImpl.Types.CLOSE_PRICE.value, values[3])
+                }
+        columns.copyTo(section)
+        def bids = section.getColumn(BID)
+        def asks = section.getColumn(ASK)
+        def last = section.getColumn(LAST)
+        def close = section.getColumn(CLOSE)
+
+        expect:
+        section.filter { asks[it] - bids[it] > 0.15 } == [0, 2] as int[]
+        section.top(2) { Math.abs(last[it] / close[it] - 1) } == [2, 1] as int[]
+        section.top(10) { last[it] } == [1, 0, 2] as int[]
+    }
+}